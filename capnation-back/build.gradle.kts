@@ -1,7 +1,9 @@
 plugins {
 	java
+	`java-test-fixtures`
 	id("org.springframework.boot") version "3.5.5"
 	id("io.spring.dependency-management") version "1.1.7"
+	id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.machines"
@@ -20,14 +22,37 @@ repositories {
 
 dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-web")
+	implementation("org.springframework.boot:spring-boot-starter-actuator")
+	runtimeOnly("io.micrometer:micrometer-registry-prometheus")
 	developmentOnly("org.springframework.boot:spring-boot-devtools")
 	testImplementation("org.springframework.boot:spring-boot-starter-test")
 	testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 
     // https://mvnrepository.com/artifact/org.junit.jupiter/junit-jupiter-api
     testImplementation("org.junit.jupiter:junit-jupiter-api:5.13.4")
+
+	// the repository builder and the cap factory of src/testFixtures, shared by the tests and the benchmarks
+	testFixturesImplementation("org.springframework:spring-test")
+	testFixturesImplementation("org.springframework:spring-core")
+	jmh(testFixtures(project))
+	jmh("org.springframework:spring-test")
+	// the registry of production, for the benchmark of the meters
+	jmh("io.micrometer:micrometer-registry-prometheus")
 }
 
 tasks.withType<Test> {
 	useJUnitPlatform()
 }
+
+// ./gradlew jmh runs the JMH benchmarks of src/jmh over generated catalogs, -PjmhIncludes=<regex> selects some of them.
+// The results are written as JSON to build/reports/jmh/results.json to compare them between releases
+jmh {
+	jmhVersion = "1.37"
+	resultFormat = "JSON"
+	resultsFile = layout.buildDirectory.file("reports/jmh/results.json")
+	jvmArgs = listOf("-Xms2g", "-Xmx8g")
+	fork = 1
+	warmupIterations = 3
+	iterations = 5
+	(findProperty("jmhIncludes") as String?)?.let { includes = listOf(it) }
+}
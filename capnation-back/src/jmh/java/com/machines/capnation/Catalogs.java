@@ -0,0 +1,77 @@
+package com.machines.capnation;
+
+import com.machines.capnation.formatter.CapFormatter;
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStyle;
+import com.machines.capnation.model.Gender;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/***
+ * Generated catalogs of the benchmarks, the cap of an id is always the same and the caps are spread over BRANDS brands
+ */
+public final class Catalogs {
+    public static final int BRANDS = 1000;
+    // number of caps used by the benchmarks that don't need the whole catalog
+    public static final int SAMPLE_SIZE = 1 << 16;
+    private static final CapFormatter CAP_FORMATTER = new CapFormatter();
+    private static final String[] COLORS = {"Negro", "Blanco", "Rojo", "Azul", "Verde", "Gris", "Beige", "Marr\u00f3n"};
+
+    private Catalogs() {
+    }
+
+    public static String brand(int brand) {
+        return "brand" + brand;
+    }
+
+    // the image url has the id, so no two caps are similar and the repository accepts all of them
+    public static Cap cap(long id) {
+        return new Cap.CapBuilder(CapStyle.values()[(int) (id % CapStyle.values().length)], COLORS[(int) (id % COLORS.length)],
+                brand((int) (id % BRANDS)), 10 + (id % 9_000) / 100.0, CapSize.values()[(int) (id % CapSize.values().length)], (int) (id % 50))
+                .setId(id)
+                .setCollaboration(id % 7 == 0 ? "collab" + id % 13 : null)
+                .setGender(id % 3 == 0 ? null : Gender.values()[(int) (id % 2)])
+                .setImageUrl("https://images.capnation.com/caps/" + id + ".jpg")
+                .build();
+    }
+
+    // caps of ids spread over the catalog, so their ids are as long as the ones of the whole catalog
+    public static Cap[] sample(int catalogSize) {
+        int size = Math.min(catalogSize, SAMPLE_SIZE);
+        long step = catalogSize / size;
+        var caps = new Cap[size];
+        for (int i = 0; i < size; i++) {
+            caps[i] = cap(1 + i * step);
+        }
+        return caps;
+    }
+
+    /***
+     * Writes the heap (caps.txt) of a catalog with the ids 1 to size in the directory, the repository builds its
+     * indexes when it finds them behind the heap
+     */
+    public static void writeHeap(Path directory, int size) throws IOException {
+        var buffer = new StringBuilder(256);
+        try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve("caps.txt"), StandardCharsets.UTF_8)) {
+            for (long id = 1; id <= size; id++) {
+                buffer.setLength(0);
+                writer.append(CAP_FORMATTER.appendCap(cap(id), buffer)).append('\n');
+            }
+        }
+    }
+
+    public static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
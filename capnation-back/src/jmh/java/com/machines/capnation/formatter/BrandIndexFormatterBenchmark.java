@@ -0,0 +1,65 @@
+package com.machines.capnation.formatter;
+
+import com.machines.capnation.Catalogs;
+import com.machines.capnation.model.index.BrandIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Lines of the brand index of a catalog, every brand has catalogSize / Catalogs.BRANDS caps
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BrandIndexFormatterBenchmark {
+    private static final int BRANDS = 64;
+
+    @Param({"10000", "1000000", "10000000"})
+    int catalogSize;
+
+    private final BrandIndexFormatter formatter = new BrandIndexFormatter();
+    private final StringBuilder buffer = new StringBuilder();
+    private BrandIndex[] brandIndexes;
+    private String[] lines;
+    private int next;
+
+    @Setup
+    public void generate() {
+        brandIndexes = new BrandIndex[BRANDS];
+        lines = new String[BRANDS];
+        for (int brand = 0; brand < BRANDS; brand++) {
+            var brandIndex = new BrandIndex.BrandIndexBuilder()
+                    .setBrand(Catalogs.brand(brand))
+                    .build();
+            for (long id = brand == 0 ? Catalogs.BRANDS : brand; id <= catalogSize; id += Catalogs.BRANDS) {
+                brandIndex.appendCap(id);
+            }
+            brandIndexes[brand] = brandIndex;
+            lines[brand] = formatter.brandIndexToText(brandIndex);
+        }
+    }
+
+    private int next() {
+        next = (next + 1) % BRANDS;
+        return next;
+    }
+
+    @Benchmark
+    public StringBuilder appendBrandIndex() {
+        buffer.setLength(0);
+        return formatter.appendBrandIndex(brandIndexes[next()], buffer);
+    }
+
+    @Benchmark
+    public BrandIndex textToBrandIndex() {
+        return formatter.textToBrandIndex(lines[next()]);
+    }
+}
@@ -0,0 +1,79 @@
+package com.machines.capnation.formatter;
+
+import com.machines.capnation.Catalogs;
+import com.machines.capnation.model.Cap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Round trips of the caps through the text format, over a sample of the catalog (see Catalogs.sample)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CapFormatterBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    int catalogSize;
+
+    private final CapFormatter formatter = new CapFormatter();
+    private final StringBuilder buffer = new StringBuilder(256);
+    private Cap[] caps;
+    private String[] lines;
+    private byte[][] bytes;
+    private int next;
+
+    @Setup
+    public void generate() {
+        caps = Catalogs.sample(catalogSize);
+        lines = new String[caps.length];
+        bytes = new byte[caps.length][];
+        for (int i = 0; i < caps.length; i++) {
+            lines[i] = formatter.capToText(caps[i]);
+            bytes[i] = lines[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private int next() {
+        if (++next == caps.length) {
+            next = 0;
+        }
+        return next;
+    }
+
+    @Benchmark
+    public String capToText() {
+        return formatter.capToText(caps[next()]);
+    }
+
+    @Benchmark
+    public StringBuilder appendCap() {
+        buffer.setLength(0);
+        return formatter.appendCap(caps[next()], buffer);
+    }
+
+    // the split parser of the write-ahead log, the baseline of the scanning one of the heap files
+    @Benchmark
+    public Cap textToCap() {
+        return formatter.TextToCap(lines[next()]);
+    }
+
+    @Benchmark
+    public Cap bytesToCap() {
+        var line = bytes[next()];
+        return formatter.bytesToCap(line, 0, line.length);
+    }
+
+    @Benchmark
+    public Cap roundTrip() {
+        return formatter.TextToCap(formatter.capToText(caps[next()]));
+    }
+}
@@ -0,0 +1,56 @@
+package com.machines.capnation.model;
+
+import com.machines.capnation.Catalogs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Lines of the text cap index (id,position) of a sample of the catalog
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IndexBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    int catalogSize;
+
+    private Index[] indexes;
+    private String[] lines;
+    private int next;
+
+    @Setup
+    public void generate() {
+        var caps = Catalogs.sample(catalogSize);
+        indexes = new Index[caps.length];
+        lines = new String[caps.length];
+        for (int i = 0; i < caps.length; i++) {
+            indexes[i] = new Index(caps[i].getId(), (int) caps[i].getId() - 1);
+            lines[i] = indexes[i].toLine();
+        }
+    }
+
+    private int next() {
+        if (++next == indexes.length) {
+            next = 0;
+        }
+        return next;
+    }
+
+    @Benchmark
+    public String toLine() {
+        return indexes[next()].toLine();
+    }
+
+    @Benchmark
+    public Index fromLine() {
+        return Index.fromLine(lines[next()]);
+    }
+}
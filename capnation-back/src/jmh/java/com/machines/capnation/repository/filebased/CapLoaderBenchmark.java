@@ -0,0 +1,64 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.Catalogs;
+import com.machines.capnation.formatter.CapFormatter;
+import com.machines.capnation.model.Cap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Load of the text heap (caps.txt) of a generated catalog: line by line with a BufferedReader, as before
+ * ParallelCapLoader, and in memory-mapped chunks parsed in parallel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CapLoaderBenchmark {
+    private static final CapFormatter CAP_FORMATTER = new CapFormatter();
+
+    // the ten million caps take a few GB of heap, the jmh block of the build gives the forks 8GB
+    @Param({"1000000", "10000000"})
+    int catalogSize;
+
+    private Path directory;
+    private Path heap;
+
+    @Setup
+    public void generate() throws IOException {
+        directory = Files.createTempDirectory("capnation-jmh");
+        Catalogs.writeHeap(directory, catalogSize);
+        heap = directory.resolve("caps.txt");
+    }
+
+    @TearDown
+    public void delete() throws IOException {
+        Catalogs.delete(directory);
+    }
+
+    @Benchmark
+    public List<Cap> sequential() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(heap, StandardCharsets.UTF_8)) {
+            return reader.lines().filter(line -> !line.isBlank()).map(CAP_FORMATTER::TextToCap).toList();
+        }
+    }
+
+    @Benchmark
+    public List<Cap> parallel() {
+        return ParallelCapLoader.load(heap);
+    }
+}
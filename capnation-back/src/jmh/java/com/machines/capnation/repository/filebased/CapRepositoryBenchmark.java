@@ -0,0 +1,73 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.Catalogs;
+import com.machines.capnation.model.Cap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Reads of a repository loaded with a generated catalog in a temporary directory
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CapRepositoryBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    int catalogSize;
+
+    @Param({"OBJECTS", "COLUMNAR", "LAZY"})
+    TextCapHeap.Storage storage;
+
+    private Path directory;
+    private CapRepositoryFileBasedImpl repository;
+
+    @Setup
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("capnation-jmh");
+        Catalogs.writeHeap(directory, catalogSize);
+        repository = TestRepository.openForBenchmark(directory, CapWriteAheadLog.Durability.ASYNC);
+        ReflectionTestUtils.setField(repository, "heapStorage", storage);
+        repository.findById(1L); // loads the heap and builds the indexes
+    }
+
+    @TearDown
+    public void close() throws IOException {
+        repository.close();
+        Catalogs.delete(directory);
+    }
+
+    @Benchmark
+    public Cap findById() {
+        return repository.findById(ThreadLocalRandom.current().nextLong(1, catalogSize + 1L));
+    }
+
+    @Benchmark
+    public List<Cap> findByBrand() {
+        return repository.findByBrand(Catalogs.brand(ThreadLocalRandom.current().nextInt(Catalogs.BRANDS)));
+    }
+
+    // findAll returns a view that decodes the caps while iterating, so the benchmark reads all of them
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void findAll(Blackhole blackhole) {
+        for (Cap cap : repository.findAll()) {
+            blackhole.consume(cap);
+        }
+    }
+}
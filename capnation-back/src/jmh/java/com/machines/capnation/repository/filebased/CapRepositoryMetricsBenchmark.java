@@ -0,0 +1,76 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.Catalogs;
+import com.machines.capnation.model.Cap;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Cost of the meters of CapMetrics on the hot paths: the same reads and saves without a registry, where the meters
+ * record nothing like in the other benchmarks, and with the Prometheus registry that Spring Boot adds in production
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CapRepositoryMetricsBenchmark {
+    @Param({"1000000"})
+    int catalogSize;
+
+    @Param({"false", "true"})
+    boolean metrics;
+
+    private PrometheusMeterRegistry registry;
+    private Path directory;
+    private CapRepositoryFileBasedImpl repository;
+    private AtomicLong nextId;
+
+    @Setup
+    public void open() throws IOException {
+        if (metrics) {
+            registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+            Metrics.addRegistry(registry);
+        }
+        directory = Files.createTempDirectory("capnation-jmh");
+        Catalogs.writeHeap(directory, catalogSize);
+        repository = TestRepository.openForBenchmark(directory, CapWriteAheadLog.Durability.ASYNC);
+        repository.findById(1L); // loads the heap and builds the indexes
+        nextId = new AtomicLong(catalogSize);
+    }
+
+    @TearDown
+    public void close() throws IOException {
+        repository.close();
+        Catalogs.delete(directory);
+        if (registry != null) {
+            Metrics.removeRegistry(registry);
+            registry.close();
+        }
+    }
+
+    @Benchmark
+    public Cap findById() {
+        return repository.findById(ThreadLocalRandom.current().nextLong(1, catalogSize + 1L));
+    }
+
+    @Benchmark
+    public Cap save() {
+        return repository.save(Catalogs.cap(nextId.incrementAndGet()));
+    }
+}
@@ -0,0 +1,78 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.Catalogs;
+import com.machines.capnation.model.Cap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Reads by id with one thread and with one per core while a writer keeps saving. The reads don't take any lock,
+ * so the throughput of all the threads should be close to the one of a thread times the cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CapRepositoryReadScalingBenchmark {
+    @Param({"50000", "1000000"})
+    int catalogSize;
+
+    private Path directory;
+    private CapRepositoryFileBasedImpl repository;
+    private volatile boolean saving;
+    private Thread writer;
+
+    @Setup
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("capnation-jmh");
+        Catalogs.writeHeap(directory, catalogSize);
+        repository = TestRepository.openForBenchmark(directory, CapWriteAheadLog.Durability.ASYNC);
+        repository.findById(1L); // loads the heap and builds the indexes
+        var nextId = new AtomicLong(catalogSize);
+        saving = true;
+        writer = new Thread(() -> {
+            while (saving) {
+                repository.save(Catalogs.cap(nextId.incrementAndGet()));
+            }
+        });
+        writer.start();
+    }
+
+    @TearDown
+    public void close() throws IOException, InterruptedException {
+        saving = false;
+        writer.join();
+        repository.close();
+        Catalogs.delete(directory);
+    }
+
+    private Cap findRandom() {
+        return repository.findById(ThreadLocalRandom.current().nextLong(1, catalogSize + 1L));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Cap findByIdOneThread() {
+        return findRandom();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Cap findByIdAllThreads() {
+        return findRandom();
+    }
+}
@@ -0,0 +1,57 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.Catalogs;
+import com.machines.capnation.model.Cap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Saves of new caps in a repository loaded with a generated catalog, with both durabilities of the write-ahead log
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CapRepositorySaveBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    int catalogSize;
+
+    @Param({"SYNC", "ASYNC"})
+    CapWriteAheadLog.Durability durability;
+
+    private Path directory;
+    private CapRepositoryFileBasedImpl repository;
+    private AtomicLong nextId;
+
+    @Setup
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("capnation-jmh");
+        Catalogs.writeHeap(directory, catalogSize);
+        repository = TestRepository.openForBenchmark(directory, durability);
+        repository.findById(1L); // loads the heap and builds the indexes
+        nextId = new AtomicLong(catalogSize);
+    }
+
+    @TearDown
+    public void close() throws IOException {
+        repository.close();
+        Catalogs.delete(directory);
+    }
+
+    @Benchmark
+    public Cap save() {
+        return repository.save(Catalogs.cap(nextId.incrementAndGet()));
+    }
+}
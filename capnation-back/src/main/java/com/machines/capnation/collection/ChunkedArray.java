@@ -0,0 +1,47 @@
+package com.machines.capnation.collection;
+
+import java.util.Arrays;
+
+/***
+ * Append only list stored in chunks of fixed size that are never moved or copied.
+ * One thread adds the elements and any thread can read them: once the writer publishes the size
+ * (for example through a volatile snapshot) the elements before it are visible and never change,
+ * growing only copies the directory of chunks, which is replaced atomically.
+ */
+public class ChunkedArray<E> {
+    static final int CHUNK_SHIFT = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile Object[][] chunks = new Object[0][];
+    private int size;
+
+    public void add(E element) {
+        int chunk = size >>> CHUNK_SHIFT;
+        var current = chunks;
+        if (chunk == current.length) {
+            current = Arrays.copyOf(current, Math.max(4, current.length << 1));
+        }
+        if (current[chunk] == null) {
+            current[chunk] = new Object[CHUNK_SIZE];
+            chunks = current;
+        }
+        current[chunk][size & CHUNK_MASK] = element;
+        size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        var current = chunks;
+        int chunk = index >>> CHUNK_SHIFT;
+        if (index < 0 || chunk >= current.length || current[chunk] == null) {
+            throw new IndexOutOfBoundsException(String.format("index %d out of bounds", index));
+        }
+        return (E) current[chunk][index & CHUNK_MASK];
+    }
+
+    // number of elements added, it must be read by the writer thread only
+    public int size() {
+        return size;
+    }
+}
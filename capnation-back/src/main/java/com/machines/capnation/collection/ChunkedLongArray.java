@@ -0,0 +1,44 @@
+package com.machines.capnation.collection;
+
+import java.util.Arrays;
+
+/***
+ * Primitive long version of ChunkedArray: append only, written by one thread and read by any thread
+ * up to the size published by the writer.
+ */
+public class ChunkedLongArray {
+    private static final int CHUNK_SHIFT = ChunkedArray.CHUNK_SHIFT;
+    private static final int CHUNK_SIZE = ChunkedArray.CHUNK_SIZE;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile long[][] chunks = new long[0][];
+    private int size;
+
+    public void add(long value) {
+        int chunk = size >>> CHUNK_SHIFT;
+        var current = chunks;
+        if (chunk == current.length) {
+            current = Arrays.copyOf(current, Math.max(4, current.length << 1));
+        }
+        if (current[chunk] == null) {
+            current[chunk] = new long[CHUNK_SIZE];
+            chunks = current;
+        }
+        current[chunk][size & CHUNK_MASK] = value;
+        size++;
+    }
+
+    public long get(int index) {
+        var current = chunks;
+        int chunk = index >>> CHUNK_SHIFT;
+        if (index < 0 || chunk >= current.length || current[chunk] == null) {
+            throw new IndexOutOfBoundsException(String.format("index %d out of bounds", index));
+        }
+        return current[chunk][index & CHUNK_MASK];
+    }
+
+    // number of values added, it must be read by the writer thread only
+    public int size() {
+        return size;
+    }
+}
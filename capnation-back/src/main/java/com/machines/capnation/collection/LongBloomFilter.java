@@ -0,0 +1,126 @@
+package com.machines.capnation.collection;
+
+import java.util.Arrays;
+
+/***
+ * Scalable Bloom filter of long keys: mightContain never misses a key that was added, and it answers true for a key
+ * that wasn't added with a probability close to the configured false positive rate.
+ * The bits are in layers: when the last layer is full a new one is added with twice the capacity and half the
+ * false positive rate, so the filter grows without the keys and the rate of all the layers stays under the
+ * configured one (the first layer takes half of it, the next ones a quarter, an eighth...).
+ * Every layer sets k bits per key with double hashing over a power of two number of bits.
+ * It isn't thread safe, the owner serializes the calls.
+ */
+public class LongBloomFilter {
+    private static final int MIN_CAPACITY = 1024;
+
+    private final double falsePositiveRate;
+    private Layer[] layers = new Layer[0];
+    private long size;
+
+    private static final class Layer {
+        final long[] words;
+        final int mask; // number of bits - 1
+        final int hashes;
+        final long capacity;
+        long size;
+
+        Layer(long capacity, double falsePositiveRate) {
+            // optimal bits: -n ln(p) / ln(2)^2, rounded up to a power of two so the bit is found with a mask
+            double bits = -capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+            int length = (int) Math.min(1L << 31, Long.highestOneBit((long) Math.ceil(bits) - 1) << 1);
+            this.words = new long[Math.max(length >>> 6, 1)];
+            this.mask = words.length * 64 - 1;
+            this.hashes = (int) Math.max(1, Math.round(-Math.log(falsePositiveRate) / Math.log(2)));
+            this.capacity = capacity;
+        }
+
+        void add(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                int bit = (int) (h1 + i * h2) & mask;
+                words[bit >>> 6] |= 1L << bit;
+            }
+            size++;
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                int bit = (int) (h1 + i * h2) & mask;
+                if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /***
+     * @param expectedKeys capacity of the first layer
+     * @param falsePositiveRate upper bound of the false positive rate, between 0 and 1 (both excluded)
+     */
+    public LongBloomFilter(long expectedKeys, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException(String.format("The false positive rate must be between 0 and 1: %s", falsePositiveRate));
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        addLayer(Math.max(expectedKeys, MIN_CAPACITY), falsePositiveRate / 2);
+    }
+
+    public void add(long key) {
+        var last = layers[layers.length - 1];
+        if (last.size == last.capacity) {
+            last = addLayer(last.capacity * 2, falsePositiveRate / Math.pow(2, layers.length + 1));
+        }
+        long h1 = mix(key);
+        last.add(h1, secondHash(h1));
+        size++;
+    }
+
+    public boolean mightContain(long key) {
+        long h1 = mix(key);
+        long h2 = secondHash(h1);
+        for (Layer layer : layers) {
+            if (layer.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // number of keys added, the repeated ones included
+    public long size() {
+        return size;
+    }
+
+    public int layers() {
+        return layers.length;
+    }
+
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Layer layer : layers) {
+            bytes += (long) layer.words.length * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    private Layer addLayer(long capacity, double layerFalsePositiveRate) {
+        var layer = new Layer(capacity, layerFalsePositiveRate);
+        layers = Arrays.copyOf(layers, layers.length + 1);
+        layers[layers.length - 1] = layer;
+        return layer;
+    }
+
+    // finalizer of SplitMix64, the ids are sequential so their bits must be spread
+    private static long mix(long key) {
+        long h = key + 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    // odd, so the k bits of a key are different
+    private static long secondHash(long h1) {
+        return (h1 >>> 32 | h1 << 32) | 1;
+    }
+}
@@ -0,0 +1,177 @@
+package com.machines.capnation.collection;
+
+import java.util.Arrays;
+
+/***
+ * Open addressing hash map from primitive long keys to primitive int values.
+ * It never boxes keys or values, so lookups do not allocate.
+ * Collisions are solved with linear probing, the table always has a power of two length.
+ * The key 0 is used as the empty marker of the table, so it is stored apart.
+ * One thread can put while others get: the table is replaced atomically when it grows, and a reader that
+ * races with a put of the same key can see the key without its value, so the readers must validate the
+ * values of the keys that weren't published to them (for example checking the row the value points to).
+ */
+public class LongIntHashMap {
+    public static final int NO_VALUE = -1;
+
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private volatile Table table;
+    private int size;
+    private int threshold;
+
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public LongIntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = tableSizeFor((int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR));
+        allocate(capacity);
+    }
+
+    /***
+     * @return the value associated to the key or NO_VALUE if the key is not in the map
+     */
+    public int get(long key) {
+        if (key == EMPTY) {
+            return hasZeroKey ? zeroValue : NO_VALUE;
+        }
+        var t = table;
+        int mask = t.keys.length - 1;
+        int slot = mix(key) & mask;
+        long current;
+        while ((current = t.keys[slot]) != EMPTY) {
+            if (current == key) {
+                return t.values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_VALUE;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == EMPTY) {
+            return hasZeroKey;
+        }
+        return get(key) != NO_VALUE;
+    }
+
+    /***
+     * Associates the value to the key, replacing the previous one if there was any
+     * @return the previous value or NO_VALUE if the key was not in the map
+     */
+    public int put(long key, int value) {
+        if (key == EMPTY) {
+            int previous = hasZeroKey ? zeroValue : NO_VALUE;
+            if (!hasZeroKey) {
+                size++;
+            }
+            hasZeroKey = true;
+            zeroValue = value;
+            return previous;
+        }
+        var t = table;
+        int mask = t.keys.length - 1;
+        int slot = mix(key) & mask;
+        long current;
+        while ((current = t.keys[slot]) != EMPTY) {
+            if (current == key) {
+                int previous = t.values[slot];
+                t.values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        t.values[slot] = value; // the value first, so a reader that finds the key is likely to find its value
+        t.keys[slot] = key;
+        if (++size > threshold) {
+            rehash(t.keys.length << 1);
+        }
+        return NO_VALUE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(table.keys, EMPTY);
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    /***
+     * Visits every entry of the map, the order is not specified
+     */
+    public void forEach(LongIntConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(EMPTY, zeroValue);
+        }
+        var t = table;
+        for (int i = 0; i < t.keys.length; i++) {
+            if (t.keys[i] != EMPTY) {
+                consumer.accept(t.keys[i], t.values[i]);
+            }
+        }
+    }
+
+    // fills a new table and then replaces the old one, which the readers can keep using meanwhile
+    private void rehash(int capacity) {
+        var old = table;
+        var grown = new Table(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < old.keys.length; i++) {
+            long key = old.keys[i];
+            if (key != EMPTY) {
+                int slot = mix(key) & mask;
+                while (grown.keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                grown.keys[slot] = key;
+                grown.values[slot] = old.values[i];
+            }
+        }
+        table = grown;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void allocate(int capacity) {
+        table = new Table(capacity);
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    // spreads the bits of the key so sequential ids don't end up in neighbour slots
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        return Math.max(n, DEFAULT_CAPACITY);
+    }
+
+    private static final class Table {
+        final long[] keys;
+        final int[] values;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new int[capacity];
+        }
+    }
+
+    @FunctionalInterface
+    public interface LongIntConsumer {
+        void accept(long key, int value);
+    }
+}
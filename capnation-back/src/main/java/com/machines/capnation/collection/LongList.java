@@ -0,0 +1,112 @@
+package com.machines.capnation.collection;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/***
+ * Growable list of primitive longs, it avoids the boxing of a List<Long>
+ */
+public class LongList {
+    private static final long[] EMPTY = new long[0];
+
+    private long[] elements;
+    private int size;
+    private boolean readOnly;
+
+    public LongList() {
+        this.elements = EMPTY;
+    }
+
+    public LongList(int capacity) {
+        this.elements = capacity == 0 ? EMPTY : new long[capacity];
+    }
+
+    public static LongList of(long... values) {
+        var list = new LongList(values.length);
+        System.arraycopy(values, 0, list.elements, 0, values.length);
+        list.size = values.length;
+        return list;
+    }
+
+    public static LongList fromList(List<Long> values) {
+        var list = new LongList(values.size());
+        values.forEach(list::add);
+        return list;
+    }
+
+    public void add(long value) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("the snapshot of a LongList can't be modified");
+        }
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(8, elements.length + (elements.length >> 1)));
+        }
+        elements[size++] = value;
+    }
+
+    public long get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(String.format("index %d out of bounds for size %d", index, size));
+        }
+        return elements[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // drops the elements array, so the snapshots taken before don't see the next elements
+    public void clear() {
+        elements = EMPTY;
+        size = 0;
+    }
+
+    /***
+     * Read only list with the current elements that shares the array with this one, it is taken in O(1).
+     * This list only writes past its size and copies the array to grow, so the elements of the snapshot
+     * never change and it can be read by other threads while this list keeps growing.
+     */
+    public LongList snapshot() {
+        var snapshot = new LongList();
+        snapshot.elements = elements;
+        snapshot.size = size;
+        snapshot.readOnly = true;
+        return snapshot;
+    }
+
+    public void forEach(LongConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(elements[i]);
+        }
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) return false;
+        LongList that = (LongList) o;
+        return Arrays.equals(elements, 0, size, that.elements, 0, that.size);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size; i++) {
+            hash = 31 * hash + Long.hashCode(elements[i]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
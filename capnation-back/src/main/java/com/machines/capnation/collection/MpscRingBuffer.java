@@ -0,0 +1,79 @@
+package com.machines.capnation.collection;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/***
+ * Bounded ring buffer for many producers and a single consumer, without locks.
+ * A producer claims a slot moving the tail with a compare and set and then publishes its element in the slot,
+ * the consumer takes the published elements in order and frees their slots moving the head.
+ * When the buffer is full offer() fails instead of waiting, so the producers can reject the work.
+ */
+public class MpscRingBuffer<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head; // written by the consumer only
+
+    // the capacity is rounded up to a power of two
+    public MpscRingBuffer(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+    }
+
+    /***
+     * Adds the element if there is a free slot, it can be called from any thread
+     * @return false if the buffer is full
+     */
+    public boolean offer(E element) {
+        while (true) {
+            long current = tail.get();
+            if (current - head >= capacity) {
+                return false;
+            }
+            if (tail.compareAndSet(current, current + 1)) {
+                slots.set((int) current & mask, element);
+                return true;
+            }
+        }
+    }
+
+    /***
+     * Takes up to max elements in order, only the consumer thread can call it. It stops at the first slot
+     * claimed by a producer that didn't publish its element yet.
+     * @return the number of elements taken
+     */
+    public int drain(Consumer<E> consumer, int max) {
+        long current = head;
+        int taken = 0;
+        while (taken < max) {
+            int slot = (int) current & mask;
+            var element = slots.get(slot);
+            if (element == null) {
+                break;
+            }
+            slots.lazySet(slot, null);
+            current++;
+            taken++;
+            consumer.accept(element);
+        }
+        head = current;
+        return taken;
+    }
+
+    // number of elements claimed and not taken yet
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
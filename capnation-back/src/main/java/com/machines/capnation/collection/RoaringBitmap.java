@@ -0,0 +1,393 @@
+package com.machines.capnation.collection;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/***
+ * Compressed bitmap of non negative ints in the style of Roaring: the values are grouped by their 16 high bits in
+ * containers, an array container keeps up to 4096 sorted low bits and a bitmap container keeps 1024 words of 64 bits,
+ * so no container takes more than 8KB. and() and or() work container by container, with word level operations
+ * between bitmap containers.
+ * A single writer adds the values in increasing order (the positions of the heap), so only the last container
+ * changes: snapshot() returns a read only copy that shares every container but that one.
+ */
+public class RoaringBitmap {
+    static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size; // number of containers
+    private int last = -1; // last value added
+
+    public RoaringBitmap() {
+        this(new char[4], new Container[4], 0);
+    }
+
+    private RoaringBitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /***
+     * Adds a value greater than the values added before
+     */
+    public void add(int value) {
+        if (value <= last) {
+            throw new IllegalArgumentException(String.format("%d is not greater than the last value %d", value, last));
+        }
+        last = value;
+        char key = (char) (value >>> 16);
+        if (size == 0 || keys[size - 1] != key) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size << 1);
+                containers = Arrays.copyOf(containers, size << 1);
+            }
+            keys[size] = key;
+            containers[size] = new ArrayContainer(new char[4], 0);
+            size++;
+        }
+        containers[size - 1] = containers[size - 1].append((char) value);
+    }
+
+    public boolean contains(int value) {
+        int index = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    // number of values lower than limit
+    public long cardinalityBelow(int limit) {
+        char key = (char) (limit >>> 16);
+        long cardinality = 0;
+        for (int i = 0; i < size && keys[i] <= key; i++) {
+            cardinality += keys[i] < key ? containers[i].cardinality() : containers[i].countBelow((char) limit);
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /***
+     * Visits the values in increasing order while the visitor returns true
+     */
+    public void forEach(IntPredicate visitor) {
+        for (int i = 0; i < size; i++) {
+            if (!containers[i].forEach(keys[i] << 16, visitor)) {
+                return;
+            }
+        }
+    }
+
+    // read only copy of the current values, the writer can go on adding values to this bitmap
+    public RoaringBitmap snapshot() {
+        var copy = new RoaringBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(containers, size), size);
+        if (size > 0) {
+            copy.containers[size - 1] = containers[size - 1].copy();
+        }
+        copy.last = Integer.MAX_VALUE; // the copy can't be modified
+        return copy;
+    }
+
+    public static RoaringBitmap and(RoaringBitmap left, RoaringBitmap right) {
+        var result = new RoaringBitmap(new char[Math.min(left.size, right.size)], new Container[Math.min(left.size, right.size)], 0);
+        int i = 0;
+        int j = 0;
+        while (i < left.size && j < right.size) {
+            if (left.keys[i] < right.keys[j]) {
+                i++;
+            } else if (left.keys[i] > right.keys[j]) {
+                j++;
+            } else {
+                var container = left.containers[i].and(right.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.keys[result.size] = left.keys[i];
+                    result.containers[result.size++] = container;
+                }
+                i++;
+                j++;
+            }
+        }
+        result.last = Integer.MAX_VALUE;
+        return result;
+    }
+
+    public static RoaringBitmap or(RoaringBitmap left, RoaringBitmap right) {
+        var result = new RoaringBitmap(new char[left.size + right.size], new Container[left.size + right.size], 0);
+        int i = 0;
+        int j = 0;
+        while (i < left.size || j < right.size) {
+            if (j == right.size || (i < left.size && left.keys[i] < right.keys[j])) {
+                result.keys[result.size] = left.keys[i];
+                result.containers[result.size++] = left.containers[i++];
+            } else if (i == left.size || left.keys[i] > right.keys[j]) {
+                result.keys[result.size] = right.keys[j];
+                result.containers[result.size++] = right.containers[j++];
+            } else {
+                result.keys[result.size] = left.keys[i];
+                result.containers[result.size++] = left.containers[i++].or(right.containers[j++]);
+            }
+        }
+        result.last = Integer.MAX_VALUE;
+        return result;
+    }
+
+    /***
+     * Low 16 bits of the values of one key. The containers of and() and or() can be shared between bitmaps, so
+     * they are never modified once another container follows them (see append).
+     */
+    private abstract static class Container {
+        // adds a value greater than the ones of the container, it returns the container that holds it
+        abstract Container append(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract int countBelow(char limit);
+
+        abstract boolean forEach(int high, IntPredicate visitor);
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container copy();
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container append(char value) {
+            if (cardinality == ARRAY_MAX) {
+                var bitmap = BitmapContainer.of(this);
+                return bitmap.append(value);
+            }
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality << 1));
+            }
+            values[cardinality++] = value;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int countBelow(char limit) {
+            int index = Arrays.binarySearch(values, 0, cardinality, limit);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        @Override
+        boolean forEach(int high, IntPredicate visitor) {
+            for (int i = 0; i < cardinality; i++) {
+                if (!visitor.test(high | values[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        Container and(Container other) {
+            var result = new char[cardinality];
+            int count = 0;
+            if (other instanceof ArrayContainer array) {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                var bitmap = (BitmapContainer) other;
+                for (int i = 0; i < cardinality; i++) {
+                    if (bitmap.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer bitmap) {
+                return bitmap.or(this);
+            }
+            var array = (ArrayContainer) other;
+            if (cardinality + array.cardinality > ARRAY_MAX) {
+                return BitmapContainer.of(this).or(array);
+            }
+            var result = new char[cardinality + array.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i == cardinality || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static BitmapContainer of(ArrayContainer array) {
+            var words = new long[WORDS];
+            for (int i = 0; i < array.cardinality; i++) {
+                words[array.values[i] >>> 6] |= 1L << array.values[i];
+            }
+            return new BitmapContainer(words, array.cardinality);
+        }
+
+        @Override
+        Container append(char value) {
+            words[value >>> 6] |= 1L << value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int countBelow(char limit) {
+            int count = 0;
+            int word = limit >>> 6;
+            for (int i = 0; i < word; i++) {
+                count += Long.bitCount(words[i]);
+            }
+            return count + Long.bitCount(words[word] & ((1L << limit) - 1));
+        }
+
+        @Override
+        boolean forEach(int high, IntPredicate visitor) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    if (!visitor.test(high | (i << 6) | Long.numberOfTrailingZeros(word))) {
+                        return false;
+                    }
+                    word &= word - 1;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer array) {
+                return array.and(this);
+            }
+            var bitmap = (BitmapContainer) other;
+            var result = new long[WORDS];
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                result[i] = words[i] & bitmap.words[i];
+                count += Long.bitCount(result[i]);
+            }
+            return count > ARRAY_MAX ? new BitmapContainer(result, count) : toArray(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            var result = words.clone();
+            int count;
+            if (other instanceof ArrayContainer array) {
+                count = cardinality;
+                for (int i = 0; i < array.cardinality; i++) {
+                    long bit = 1L << array.values[i];
+                    int word = array.values[i] >>> 6;
+                    if ((result[word] & bit) == 0) {
+                        result[word] |= bit;
+                        count++;
+                    }
+                }
+            } else {
+                var bitmap = (BitmapContainer) other;
+                count = 0;
+                for (int i = 0; i < WORDS; i++) {
+                    result[i] |= bitmap.words[i];
+                    count += Long.bitCount(result[i]);
+                }
+            }
+            return new BitmapContainer(result, count);
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        private static ArrayContainer toArray(long[] words, int cardinality) {
+            var values = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.machines.capnation.controller;
+
+
+import com.machines.capnation.model.IdFilterStats;
+import com.machines.capnation.model.Readiness;
+import com.machines.capnation.model.ResponseCacheStats;
+import com.machines.capnation.model.SaveQueueStats;
+import com.machines.capnation.service.CapService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RequestMapping("/cap/admin")
+@RestController
+@CrossOrigin("*")
+public class CapAdminController {
+
+    @Autowired
+    private final CapService service;
+
+    private final JsonResponseCache responseCache;
+
+    public CapAdminController(CapService service, JsonResponseCache responseCache) {
+        this.service = service;
+        this.responseCache = responseCache;
+    }
+
+    @GetMapping("/save-queue")
+    public ResponseEntity<SaveQueueStats> getSaveQueueStats() {
+        return ResponseEntity.ok(service.saveQueueStats());
+    }
+
+    // to size capIdFilter.falsePositiveRate: the observed rate should stay under the configured one
+    @GetMapping("/id-filter")
+    public ResponseEntity<IdFilterStats> getIdFilterStats() {
+        return ResponseEntity.ok(service.idFilterStats());
+    }
+
+    // hits, 304s and evictions of the cached JSON of the catalog reads, to size capResponseCache.maxBytes
+    @GetMapping("/response-cache")
+    public ResponseEntity<ResponseCacheStats> getResponseCacheStats() {
+        return ResponseEntity.ok(responseCache.stats());
+    }
+
+    // 503 until the repository is loaded and warmed up, for the health check of the load balancer
+    @GetMapping("/readiness")
+    public ResponseEntity<Readiness> getReadiness() {
+        var readiness = service.readiness();
+        return ResponseEntity.status(readiness.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(readiness);
+    }
+}
@@ -1,13 +1,33 @@
 package com.machines.capnation.controller;
 
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.machines.capnation.model.BatchSaveResult;
 import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapPage;
+import com.machines.capnation.model.CapSearch;
+import com.machines.capnation.model.CapSearchResult;
+import com.machines.capnation.model.CapStats;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStyle;
+import com.machines.capnation.model.Gender;
+import com.machines.capnation.model.Suggestion;
+import com.machines.capnation.model.index.BrandIndex;
 import com.machines.capnation.service.CapService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RequestMapping("/cap")
 @RestController
@@ -17,19 +37,72 @@ public class CapController {
     @Autowired
     private final CapService service;
 
-    public CapController(CapService service) {
+    private final ObjectMapper objectMapper;
+
+    private final JsonResponseCache responseCache;
+
+    public CapController(CapService service, ObjectMapper objectMapper, JsonResponseCache responseCache) {
         this.service = service;
+        this.objectMapper = objectMapper;
+        this.responseCache = responseCache;
     }
 
     @PostMapping("/save")
-    public ResponseEntity<Cap> saveCap(@RequestBody Cap cap) {
-        var result = service.save(cap);
-        return ResponseEntity.ok().body(result);
+    public CompletableFuture<ResponseEntity<Cap>> saveCap(@RequestBody Cap cap) {
+        // the request thread is released while the cap waits for the writer
+        return service.save(cap).thenApply(result -> ResponseEntity.ok().body(result));
     }
 
+    @PostMapping(value = "/save-batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchSaveResult> saveCaps(@RequestBody List<Cap> caps) {
+        return ResponseEntity.ok(service.saveBatch(caps));
+    }
+
+    // one cap per line (NDJSON), the caps are parsed while the body is read
+    @PostMapping(value = "/save-batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BatchSaveResult> saveCapsStream(InputStream body) throws IOException {
+        var caps = new ArrayList<Cap>();
+        try (MappingIterator<Cap> iterator = objectMapper.readerFor(Cap.class).readValues(body)) {
+            // one cap past the limit is enough for the service to reject the batch
+            while (caps.size() <= CapService.MAX_BATCH_SIZE && iterator.hasNext()) {
+                caps.add(iterator.next());
+            }
+        }
+        return ResponseEntity.ok(service.saveBatch(caps));
+    }
+
+    // the cached JSON of the catalog version, or a 304 when the If-None-Match has its ETag
     @GetMapping("/find-all")
-    public ResponseEntity<List<Cap>> getAllCaps() {
-        return ResponseEntity.ok(service.findAll());
+    public ResponseEntity<?> getAllCaps(@RequestHeader HttpHeaders headers) {
+        return responseCache.get("find-all", service.catalogVersion(), headers, service::findAll);
+    }
+
+    // cursor pagination in id order: the first page has no after, the next ones use the nextAfter of the previous
+    @GetMapping("/find-page")
+    public ResponseEntity<CapPage> getPage(@RequestParam(value = "after", defaultValue = "0") long after,
+                                           @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return ResponseEntity.ok(service.findPage(after, limit));
+    }
+
+    // every cap in id order as NDJSON, written while they are read
+    @GetMapping(value = "/find-all/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllCaps() {
+        var writer = objectMapper.writerFor(Cap.class);
+        StreamingResponseBody body = output -> {
+            try {
+                service.forEachCap(cap -> {
+                    try {
+                        output.write(writer.writeValueAsBytes(cap));
+                        output.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @GetMapping("/find")
@@ -38,7 +111,46 @@ public class CapController {
     }
 
     @GetMapping("/find/brand")
-    public ResponseEntity<List<Cap>> findByCap(@RequestParam("brand") String brand) {
-        return ResponseEntity.ok().body(service.findByBrand(brand));
+    public ResponseEntity<?> findByCap(@RequestParam("brand") String brand, @RequestHeader HttpHeaders headers) {
+        // the brands are case insensitive, so all the spellings share the entry
+        return responseCache.get("find/brand?brand=" + BrandIndex.normalize(brand), service.catalogVersion(), headers,
+                () -> service.findByBrand(brand));
+    }
+
+    // every parameter accepts many values (style=SNAPBACK,BEANIE or repeated), a cap must match one value of each
+    @GetMapping("/search")
+    public ResponseEntity<CapSearchResult> search(@RequestParam(value = "style", required = false) List<CapStyle> styles,
+                                                  @RequestParam(value = "size", required = false) List<CapSize> sizes,
+                                                  @RequestParam(value = "gender", required = false) List<Gender> genders,
+                                                  @RequestParam(value = "color", required = false) List<String> colors,
+                                                  @RequestParam(value = "brand", required = false) List<String> brands,
+                                                  @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                  @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        var search = new CapSearch(styles, sizes, genders, colors, brands);
+        return ResponseEntity.ok(service.search(search, offset, limit));
+    }
+
+    // the cheapest (sort=asc) or the most expensive (sort=desc) caps between min and max, of any brand or of one
+    @GetMapping("/search/price")
+    public ResponseEntity<List<Cap>> findByPrice(@RequestParam(value = "min", defaultValue = "0") double min,
+                                                 @RequestParam(value = "max", required = false) Double max,
+                                                 @RequestParam(value = "sort", defaultValue = "asc") String sort,
+                                                 @RequestParam(value = "brand", required = false) String brand,
+                                                 @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return ResponseEntity.ok(service.findByPrice(min, max != null ? max : Double.MAX_VALUE, sort, brand, limit));
+    }
+
+    // completions of what the user is typing in a field (brand, color or collaboration), the most used values first
+    @GetMapping("/suggest")
+    public ResponseEntity<List<Suggestion>> suggest(@RequestParam("field") String field,
+                                                    @RequestParam(value = "prefix", defaultValue = "") String prefix,
+                                                    @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return ResponseEntity.ok(service.suggest(field, prefix, limit));
+    }
+
+    // caps, stock and min/avg/max price by brand, style, size or gender, kept by the repository on every save
+    @GetMapping("/stats")
+    public ResponseEntity<CapStats> stats(@RequestParam(value = "groupBy", defaultValue = "brand") String groupBy) {
+        return ResponseEntity.ok(service.stats(groupBy));
     }
 }
@@ -0,0 +1,217 @@
+package com.machines.capnation.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.machines.capnation.metrics.CapMetrics;
+import com.machines.capnation.model.ResponseCacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/***
+ * Responses of the catalog reads already encoded as JSON (and gzip), by endpoint and parameters.
+ * The catalog only changes with the saves, so an entry is valid while the version of the catalog is the one it was
+ * encoded with: an entry of an older version is a miss and it's replaced. The entries are evicted in LRU order
+ * when they take more than maxBytes, and a response bigger than a quarter of it is never kept (the whole catalog
+ * of /find-all), it's serialized by Spring as before.
+ * Every response has a weak ETag of the version, so a client that sends it in If-None-Match gets a 304 without
+ * reading or encoding anything while the catalog doesn't change. The ETag has the start time of the process too,
+ * the versions start again on every restart.
+ */
+@Component
+public class JsonResponseCache {
+    private final ObjectMapper objectMapper;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final boolean gzip; // keeps a compressed copy, sent to the clients that accept it
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile long bytes; // written with the lock, the gauge reads it without it
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder uncacheable = new LongAdder();
+
+    // json is null when the response is too big to be kept
+    private record Entry(long version, byte[] json, byte[] gzip) {
+        long bytes() {
+            return (json != null ? json.length : 0) + (gzip != null ? gzip.length : 0);
+        }
+    }
+
+    public JsonResponseCache(ObjectMapper objectMapper,
+                             @Value("${capResponseCache.maxBytes:67108864}") long maxBytes,
+                             @Value("${capResponseCache.gzip:true}") boolean gzip) {
+        this.objectMapper = objectMapper;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxBytes / 4;
+        this.gzip = gzip;
+        CapMetrics.gauge("capnation.responseCache.bytes", "Bytes of the cached responses", this, cache -> cache.bytes);
+        CapMetrics.counter("capnation.responseCache.requests", "Reads of the catalog answered by the response cache",
+                hits, LongAdder::sum, "outcome", "hit");
+        CapMetrics.counter("capnation.responseCache.requests", "Reads of the catalog answered by the response cache",
+                misses, LongAdder::sum, "outcome", "miss");
+        CapMetrics.counter("capnation.responseCache.requests", "Reads of the catalog answered by the response cache",
+                notModified, LongAdder::sum, "outcome", "notModified");
+        CapMetrics.counter("capnation.responseCache.evictions", "Responses evicted from the cache", evictions, LongAdder::sum);
+    }
+
+    /***
+     * The response of the key in the given version of the catalog: 304 when the client has it, the cached bytes
+     * or the body encoded now (and cached if it fits)
+     * @param version read before the body, so a body newer than the version is only a false miss later
+     */
+    public ResponseEntity<?> get(String key, long version, HttpHeaders request, Supplier<?> body) {
+        var etag = "W/\"" + epoch + "-" + version + "\"";
+        if (matches(request.getFirst(HttpHeaders.IF_NONE_MATCH), etag)) {
+            notModified.increment();
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        if (maxBytes == 0) {
+            return ResponseEntity.ok().eTag(etag).body(body.get());
+        }
+        Object value = null;
+        var entry = cached(key, version);
+        if (entry == null) {
+            misses.increment();
+            value = body.get();
+            entry = encode(version, value);
+            put(key, entry);
+        }
+        var response = ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            response.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (entry.json() == null) {
+            // too big, Spring writes it while serializing
+            uncacheable.increment();
+            return response.body(value != null ? value : body.get());
+        }
+        if (value == null) {
+            hits.increment();
+        }
+        if (entry.gzip() != null && acceptsGzip(request.getFirst(HttpHeaders.ACCEPT_ENCODING))) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(entry.gzip());
+        }
+        return response.body(entry.json());
+    }
+
+    // If-None-Match has a list of tags or *, the weak comparison ignores the W/ of both
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        var opaque = etag.substring(2);
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(opaque) || tag.equals("W/" + opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    private synchronized Entry cached(String key, long version) {
+        var entry = entries.get(key);
+        if (entry != null && entry.version() != version) {
+            entries.remove(key);
+            bytes -= entry.bytes();
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        var previous = entries.put(key, entry);
+        if (previous != null) {
+            bytes -= previous.bytes();
+        }
+        bytes += entry.bytes();
+        var eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private Entry encode(long version, Object body) {
+        var json = new BoundedOutputStream(maxEntryBytes);
+        try {
+            objectMapper.writeValue(json, body);
+        } catch (IOException e) {
+            if (json.exceeded) {
+                return new Entry(version, null, null);
+            }
+            throw new UncheckedIOException(e);
+        }
+        var bytes = json.toByteArray();
+        return new Entry(version, bytes, gzip ? gzip(bytes) : null);
+    }
+
+    private static byte[] gzip(byte[] json) {
+        var compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (var out = new GZIPOutputStream(compressed)) {
+            out.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    public synchronized ResponseCacheStats stats() {
+        return new ResponseCacheStats(entries.size(), bytes, maxBytes, hits.sum(), misses.sum(), notModified.sum(),
+                evictions.sum(), uncacheable.sum());
+    }
+
+    // buffer that gives up when the response is too big to be cached
+    private static final class BoundedOutputStream extends OutputStream {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+        private final long limit;
+        boolean exceeded; // Jackson may wrap the exception, so the flag tells why the write failed
+
+        BoundedOutputStream(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            check(1);
+            buffer.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            check(len);
+            buffer.write(b, off, len);
+        }
+
+        private void check(int length) throws IOException {
+            if (buffer.size() + (long) length > limit) {
+                exceeded = true;
+                throw new IOException("The response is too big to be cached");
+            }
+        }
+
+        byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.machines.capnation.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/***
+ * The repository is still loading at startup, the client should retry later
+ */
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "The catalog is still loading, retry later")
+public class CapNotReadyException extends CapException {
+    public CapNotReadyException(String message) {
+        super(message);
+    }
+}
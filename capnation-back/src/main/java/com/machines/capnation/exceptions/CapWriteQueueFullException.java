@@ -0,0 +1,14 @@
+package com.machines.capnation.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/***
+ * The queue of saves is full, the client should retry later
+ */
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Too many saves in progress, retry later")
+public class CapWriteQueueFullException extends CapException {
+    public CapWriteQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.machines.capnation.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/***
+ * The cap has the same characteristics as another cap of the catalog, only the id is different
+ */
+@ResponseStatus(value = HttpStatus.CONFLICT, reason = "There is a similar cap in the catalog")
+public class DuplicateCapException extends CapException {
+    public DuplicateCapException(String message) {
+        super(message);
+    }
+}
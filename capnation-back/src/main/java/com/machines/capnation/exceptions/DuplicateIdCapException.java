@@ -0,0 +1,14 @@
+package com.machines.capnation.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/***
+ * There is another cap with the same id in the catalog, or before it in the same batch
+ */
+@ResponseStatus(value = HttpStatus.CONFLICT, reason = "There is another cap with the same id")
+public class DuplicateIdCapException extends CapException {
+    public DuplicateIdCapException(String message) {
+        super(message);
+    }
+}
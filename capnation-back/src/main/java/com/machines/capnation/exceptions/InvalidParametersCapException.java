@@ -1,5 +1,9 @@
 package com.machines.capnation.exceptions;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "The cap is invalid")
 public class InvalidParametersCapException extends CapException {
     public InvalidParametersCapException(String message) {
         super(message);
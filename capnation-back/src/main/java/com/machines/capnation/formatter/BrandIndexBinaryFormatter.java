@@ -0,0 +1,145 @@
+package com.machines.capnation.formatter;
+
+import com.machines.capnation.collection.LongList;
+import com.machines.capnation.model.index.BrandIndex;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/***
+ * Binary format of the brand index:
+ *  header: magic(int "CAPB")|version(short)|reserved(short)|number of brands(int)
+ *  directory, sorted by brand: brand length(short)|brand (utf-8)|number of ids(int)|postings offset(long)|postings length(int)
+ *  postings: for every brand its ids in insertion order, like the text file, each one as the zigzag varint of the
+ *  difference with the previous id
+ * The version 1 files had the ids sorted ascending and their differences without the zigzag, they are still read.
+ */
+public class BrandIndexBinaryFormatter {
+    public static final int MAGIC = 0x43415042; // "CAPB"
+    public static final short VERSION = 2;
+    private static final short SORTED_VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int ENTRY_FIXED_SIZE = Short.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    public record DirectoryEntry(String brand, int count, long offset, int length) {
+    }
+
+    public ByteBuffer brandIndexesToBinary(Collection<BrandIndex> brandIndexes) {
+        List<BrandIndex> sorted = new ArrayList<>(brandIndexes);
+        sorted.sort(Comparator.comparing(BrandIndex::getBrand));
+
+        var names = new byte[sorted.size()][];
+        var postings = new byte[sorted.size()][];
+        int directorySize = 0;
+        int postingsSize = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            names[i] = sorted.get(i).getBrand().getBytes(StandardCharsets.UTF_8);
+            postings[i] = encodePostings(sorted.get(i).getCaps());
+            directorySize += ENTRY_FIXED_SIZE + names[i].length;
+            postingsSize += postings[i].length;
+        }
+
+        var buffer = ByteBuffer.allocate(HEADER_SIZE + directorySize + postingsSize);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(sorted.size());
+        long offset = HEADER_SIZE + directorySize;
+        for (int i = 0; i < sorted.size(); i++) {
+            buffer.putShort((short) names[i].length).put(names[i])
+                    .putInt(sorted.get(i).getCaps().size())
+                    .putLong(offset)
+                    .putInt(postings[i].length);
+            offset += postings[i].length;
+        }
+        for (byte[] posting : postings) {
+            buffer.put(posting);
+        }
+        return buffer.flip();
+    }
+
+    public List<BrandIndex> binaryToBrandIndexes(ByteBuffer buffer) {
+        var directory = readDirectory(buffer);
+        var brandIndexes = new ArrayList<BrandIndex>(directory.size());
+        for (DirectoryEntry entry : directory) {
+            var postings = buffer.duplicate().position((int) entry.offset()).limit((int) entry.offset() + entry.length());
+            brandIndexes.add(new BrandIndex.BrandIndexBuilder()
+                    .setBrand(entry.brand())
+                    .setCaps(decodePostings(postings, entry.count(), version(buffer) == SORTED_VERSION))
+                    .build());
+        }
+        return brandIndexes;
+    }
+
+    public List<DirectoryEntry> readDirectory(ByteBuffer buffer) {
+        version(buffer);
+        var header = buffer.duplicate().position(8);
+        int brands = header.getInt();
+
+        var directory = new ArrayList<DirectoryEntry>(brands);
+        for (int i = 0; i < brands; i++) {
+            var name = new byte[header.getShort()];
+            header.get(name);
+            directory.add(new DirectoryEntry(new String(name, StandardCharsets.UTF_8), header.getInt(), header.getLong(), header.getInt()));
+        }
+        return directory;
+    }
+
+    private static short version(ByteBuffer buffer) {
+        var header = buffer.duplicate();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new RuntimeException("Invalid binary brand index");
+        }
+        short version = header.getShort();
+        if (version != VERSION && version != SORTED_VERSION) {
+            throw new RuntimeException(String.format("Unsupported binary brand index version %d", version));
+        }
+        return version;
+    }
+
+    // ids as zigzag varints of their deltas, a delta is negative when a smaller id was added later
+    private static byte[] encodePostings(LongList caps) {
+        var buffer = ByteBuffer.allocate(caps.size() * 10);
+        long[] previous = {0};
+        caps.forEach(id -> {
+            long delta = id - previous[0];
+            writeVarLong(buffer, (delta << 1) ^ (delta >> 63));
+            previous[0] = id;
+        });
+        var bytes = new byte[buffer.position()];
+        buffer.flip().get(bytes);
+        return bytes;
+    }
+
+    private static LongList decodePostings(ByteBuffer buffer, int count, boolean sorted) {
+        var caps = new LongList(count);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long value = readVarLong(buffer);
+            previous += sorted ? value : (value >>> 1) ^ -(value & 1);
+            caps.add(previous);
+        }
+        return caps;
+    }
+
+    static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
@@ -2,37 +2,49 @@ package com.machines.capnation.formatter;
 
 import com.machines.capnation.model.index.BrandIndex;
 
-import java.util.Arrays;
-
 public class BrandIndexFormatter {
-    private static final String separator = ",";
+    private static final char SEPARATOR = ',';
 
     public String brandIndexToText(BrandIndex brandIndex) {
-        var builder = new StringBuilder();
-        builder.append(brandIndex.getBrand());
-        builder.append(separator);
+        return appendBrandIndex(brandIndex, new StringBuilder()).toString();
+    }
+
+    // writes the line of brandIndexToText at the end of the builder, so it can be reused for many brands
+    public StringBuilder appendBrandIndex(BrandIndex brandIndex, StringBuilder out) {
+        out.append(brandIndex.getBrand());
+        out.append(SEPARATOR);
 
-        for (int i = 0; i < brandIndex.getCaps().size(); i++) {
-            builder.append(brandIndex.getCaps().get(i));
+        var caps = brandIndex.getCaps();
+        for (int i = 0; i < caps.size(); i++) {
+            out.append(caps.get(i));
 
-            if (i != (brandIndex.getCaps().size() - 1)) {
-                builder.append(separator); // doesn't add the separator if is the last id
+            if (i != (caps.size() - 1)) {
+                out.append(SEPARATOR); // doesn't add the separator if is the last id
             }
         }
-        return builder.toString();
+        return out;
     }
 
-
-    public BrandIndex textToBrandIndex(String line) {
-        var iterator = Arrays.stream(line.split(separator)).iterator();
-        var brand = iterator.next();
+    // the ids are parsed in place, empty fields are skipped
+    public BrandIndex textToBrandIndex(CharSequence line) {
+        int length = line.length();
+        int brandEnd = 0;
+        while (brandEnd < length && line.charAt(brandEnd) != SEPARATOR) {
+            brandEnd++;
+        }
 
         var brandIndex = new BrandIndex.BrandIndexBuilder()
-                .setBrand(brand)
+                .setBrand(line.subSequence(0, brandEnd).toString())
                 .build();
 
-        while (iterator.hasNext()) {
-            brandIndex.appendCap(Long.parseLong(iterator.next()));
+        int start = brandEnd + 1;
+        for (int i = start; i <= length; i++) {
+            if (i == length || line.charAt(i) == SEPARATOR) {
+                if (i > start) {
+                    brandIndex.appendCap(Long.parseLong(line, start, i, 10));
+                }
+                start = i + 1;
+            }
         }
         return brandIndex;
     }
@@ -5,10 +5,30 @@ import com.machines.capnation.model.CapSize;
 import com.machines.capnation.model.CapStyle;
 import com.machines.capnation.model.Gender;
 
-import java.util.Objects;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
+/***
+ * Text codec of the caps. The lines of the heap files are scanned as UTF-8 bytes without splitting them: the enums
+ * are resolved with lookup tables, the numbers are parsed in place and only the text fields of the cap become new
+ * strings. The lines that are already strings (the write-ahead log) are just split.
+ */
 public class CapFormatter {
-    private static final String separator = ",";
+    private static final char SEPARATOR = ',';
+    private static final String SPLIT_SEPARATOR = ",";
+    private static final char EMPTY = '-';
+    static final int FIELDS = 10;
+    static final EnumTable<CapStyle> STYLES = new EnumTable<>(CapStyle.class);
+    static final EnumTable<CapSize> SIZES = new EnumTable<>(CapSize.class);
+    static final EnumTable<Gender> GENDERS = new EnumTable<>(Gender.class);
+    // powers of ten that are exact doubles, see parsePrice
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int MAX_EXACT_DIGITS = 15;
+    // fewer digits than Long.MAX_VALUE, they can't overflow
+    private static final int MAX_SAFE_DIGITS = 18;
 
     /***
      * It takes an instance of a cap class and returns his representation in database so:
@@ -17,17 +37,29 @@ public class CapFormatter {
      * @return Text representation of a Cap in the text database
      */
     public String capToText(Cap cap) {
-        return new StringBuilder().append(cap.getId()).append(separator)
-                .append(cap.getStyle().toString()).append(separator)
-                .append(cap.getColor()).append(separator)
-                .append(cap.getBrand()).append(separator)
-                .append((cap.getCollaboration() != null) ? cap.getCollaboration() : "-").append(separator)
-                .append(cap.getPrice()).append(separator)
-                .append(cap.getSize().toString()).append(separator)
-                .append((cap.getGender() != null) ? cap.getGender().toString() : "-").append(separator) // field to gender
-                .append(cap.getStock()).append(separator)
-                .append((cap.getImageUrl() != null) ? cap.getImageUrl() : "-")
-                .toString();
+        return appendCap(cap, new StringBuilder(128)).toString();
+    }
+
+    /***
+     * Writes the text representation of the cap (see capToText) at the end of the builder, so the callers that
+     * format many caps can reuse one builder
+     * @return the same builder
+     */
+    public StringBuilder appendCap(Cap cap, StringBuilder out) {
+        out.append(cap.getId()).append(SEPARATOR)
+                .append(cap.getStyle().name()).append(SEPARATOR)
+                .append(cap.getColor()).append(SEPARATOR)
+                .append(cap.getBrand()).append(SEPARATOR);
+        appendOptional(out, cap.getCollaboration()).append(SEPARATOR)
+                .append(cap.getPrice()).append(SEPARATOR)
+                .append(cap.getSize().name()).append(SEPARATOR);
+        appendOptional(out, cap.getGender() != null ? cap.getGender().name() : null).append(SEPARATOR) // field to gender
+                .append(cap.getStock()).append(SEPARATOR);
+        return appendOptional(out, cap.getImageUrl());
+    }
+
+    private static StringBuilder appendOptional(StringBuilder out, String value) {
+        return value != null ? out.append(value) : out.append(EMPTY);
     }
 
     /***
@@ -36,9 +68,15 @@ public class CapFormatter {
      * @param line that represents the cap in file database
      * @return an instance of the clas Cap with the values of the line
      */
-    public Cap TextToCap(String line) {
-        System.out.println("linea: " + line);
-        String[] att = line.split(separator);
+    public Cap TextToCap(CharSequence line) {
+        String text = line.toString();
+        if (text.endsWith("\r")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        String[] att = text.split(SPLIT_SEPARATOR);
+        if (att.length < FIELDS) {
+            throw new IllegalArgumentException(String.format("The line has less than %d fields: %s", FIELDS, text));
+        }
         Cap cap = new Cap.CapBuilder(
                 CapStyle.valueOf(att[1]),
                 att[2],
@@ -49,16 +87,203 @@ public class CapFormatter {
         ).setId(Long.parseLong(att[0]))
                 .build();
 
-        if (!Objects.equals(att[4], "-")) {
+        if (!isEmpty(att[4])) {
             cap.setCollaboration(att[4]);
         }
-        if (!Objects.equals(att[7], "-")) {
+        if (!isEmpty(att[7])) {
             cap.setGender(Gender.valueOf(att[7]));
         }
-
-        if (!Objects.equals(att[9], "-")) {
+        if (!isEmpty(att[9])) {
             cap.setImageUrl(att[9]);
         }
         return cap;
     }
+
+    private static boolean isEmpty(String field) {
+        return field.length() == 1 && field.charAt(0) == EMPTY;
+    }
+
+    /***
+     * Same as TextToCap for a line encoded in UTF-8, for example in the buffer of a file, between from and to
+     */
+    public Cap bytesToCap(byte[] line, int from, int to) {
+        to = lineEnd(line, from, to);
+        // offsets of the separators after every field, the fields after the tenth are ignored
+        int id = separator(line, from, to);
+        int style = separator(line, id + 1, to);
+        int color = separator(line, style + 1, to);
+        int brand = separator(line, color + 1, to);
+        int collaboration = separator(line, brand + 1, to);
+        int price = separator(line, collaboration + 1, to);
+        int size = separator(line, price + 1, to);
+        int gender = separator(line, size + 1, to);
+        int stock = separator(line, gender + 1, to);
+        int imageUrl = lineOrFieldEnd(line, stock + 1, to);
+
+        Cap cap = new Cap.CapBuilder(
+                STYLES.lookup(line, id + 1, style),
+                text(line, style + 1, color),
+                text(line, color + 1, brand),
+                parsePrice(line, collaboration + 1, price),
+                SIZES.lookup(line, price + 1, size),
+                parseInt(line, gender + 1, stock)
+        ).setId(parseLong(line, from, id))
+                .build();
+
+        if (!isEmpty(line, brand + 1, collaboration)) {
+            cap.setCollaboration(text(line, brand + 1, collaboration));
+        }
+        if (!isEmpty(line, size + 1, gender)) {
+            cap.setGender(GENDERS.lookup(line, size + 1, gender));
+        }
+
+        if (!isEmpty(line, stock + 1, imageUrl)) {
+            cap.setImageUrl(text(line, stock + 1, imageUrl));
+        }
+        return cap;
+    }
+
+    /***
+     * Same as bytesToCap but the fields are decoded the first time they are read (see LazyCap), the view keeps
+     * the line, which must not change
+     */
+    public Cap lazyCap(byte[] line, int from, int to) {
+        return new LazyCap(line, from, to);
+    }
+
+    static int separator(byte[] line, int from, int to) {
+        int end = lineOrFieldEnd(line, from, to);
+        if (end == to) {
+            throw new IllegalArgumentException(String.format("The line has less than %d fields: %s", FIELDS, text(line, 0, to)));
+        }
+        return end;
+    }
+
+    // end of the line without the carriage return of a CRLF file, like BufferedReader.lines()
+    static int lineEnd(byte[] line, int from, int to) {
+        return to > from && line[to - 1] == '\r' ? to - 1 : to;
+    }
+
+    // the separator is ASCII, so it's never part of a character of many bytes
+    static int lineOrFieldEnd(byte[] line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == SEPARATOR) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    static String text(byte[] line, int from, int to) {
+        return new String(line, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    static boolean isEmpty(byte[] line, int from, int to) {
+        return to == from + 1 && line[from] == EMPTY;
+    }
+
+    /***
+     * Parses the ids and the stocks, which are short: their digits are added in place and anything else (a sign
+     * alone, a long or invalid number) goes through Long.parseLong, so it accepts the same numbers
+     */
+    static long parseLong(byte[] line, int from, int to) {
+        int i = from < to && (line[from] == '-' || line[from] == '+') ? from + 1 : from;
+        if (i == to || to - i > MAX_SAFE_DIGITS) {
+            return Long.parseLong(text(line, from, to));
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.parseLong(text(line, from, to));
+            }
+            value = value * 10 + digit;
+        }
+        return line[from] == '-' ? -value : value;
+    }
+
+    // same as parseLong for an int, it fails like Integer.parseInt out of its range
+    static int parseInt(byte[] line, int from, int to) {
+        long value = parseLong(line, from, to);
+        return value == (int) value ? (int) value : Integer.parseInt(text(line, from, to));
+    }
+
+    /***
+     * Parses the prices written by Double.toString without a substring: a decimal with up to 15 digits is exact
+     * as a long, and dividing it by an exact power of ten rounds like Double.parseDouble.
+     * Exponents and longer numbers fall back to Double.parseDouble.
+     */
+    static double parsePrice(byte[] line, int from, int to) {
+        int i = from;
+        boolean negative = i < to && line[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < to; i++) {
+            byte c = line[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                break;
+            }
+        }
+        if (i < to || digits == 0 || digits > MAX_EXACT_DIGITS) {
+            return Double.parseDouble(text(line, from, to));
+        }
+        double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        return negative ? -value : value;
+    }
+
+    // constants of an enum grouped by the length of their names, to resolve a field without a substring
+    static final class EnumTable<E extends Enum<E>> {
+        private final Class<E> type;
+        private final Object[][] byLength;
+
+        EnumTable(Class<E> type) {
+            this.type = type;
+            int maxLength = 0;
+            for (E constant : type.getEnumConstants()) {
+                maxLength = Math.max(maxLength, constant.name().length());
+            }
+            byLength = new Object[maxLength + 1][0];
+            for (E constant : type.getEnumConstants()) {
+                int length = constant.name().length();
+                var constants = Arrays.copyOf(byLength[length], byLength[length].length + 1);
+                constants[constants.length - 1] = constant;
+                byLength[length] = constants;
+            }
+        }
+
+        E lookup(byte[] line, int from, int to) {
+            int length = to - from;
+            if (length < byLength.length) {
+                for (Object candidate : byLength[length]) {
+                    var constant = type.cast(candidate);
+                    if (matches(line, from, constant.name())) {
+                        return constant;
+                    }
+                }
+            }
+            throw new IllegalArgumentException(String.format("No enum constant %s.%s", type.getName(), text(line, from, to)));
+        }
+    }
+
+    // compares the bytes with an ASCII name
+    private static boolean matches(byte[] line, int from, String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (line[from + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,204 @@
+package com.machines.capnation.formatter;
+
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStyle;
+import com.machines.capnation.model.Gender;
+
+/***
+ * Cap over the UTF-8 bytes of its line in the text format (see CapFormatter). The separators are found once, and
+ * every field is decoded the first time it's read and then kept in the Cap, so the caller only pays for the
+ * fields it uses. A setter replaces a field without decoding it.
+ * It's equal to the Cap of bytesToCap and has the same getters, so it's serialized to the same JSON.
+ * A view isn't thread safe, every caller gets its own.
+ */
+public class LazyCap extends Cap {
+    private static final int ID = 0;
+    private static final int STYLE = 1;
+    private static final int COLOR = 2;
+    private static final int BRAND = 3;
+    private static final int COLLABORATION = 4;
+    private static final int PRICE = 5;
+    private static final int SIZE = 6;
+    private static final int GENDER = 7;
+    private static final int STOCK = 8;
+    private static final int IMAGE_URL = 9;
+
+    private final byte[] line;
+    private final int from;
+    private final int[] ends = new int[CapFormatter.FIELDS]; // separator after every field, or the end of the line
+    private int decoded; // a bit per field that was decoded or set
+
+    LazyCap(byte[] line, int from, int to) {
+        this.line = line;
+        this.from = from;
+        to = CapFormatter.lineEnd(line, from, to);
+        int start = from;
+        for (int field = ID; field < IMAGE_URL; field++) {
+            ends[field] = CapFormatter.separator(line, start, to);
+            start = ends[field] + 1;
+        }
+        ends[IMAGE_URL] = CapFormatter.lineOrFieldEnd(line, start, to);
+    }
+
+    private boolean missing(int field) {
+        return (decoded & 1 << field) == 0;
+    }
+
+    private void decoded(int field) {
+        decoded |= 1 << field;
+    }
+
+    private int start(int field) {
+        return field == ID ? from : ends[field - 1] + 1;
+    }
+
+    // null for the optional fields written as EMPTY
+    private boolean isEmpty(int field) {
+        return CapFormatter.isEmpty(line, start(field), ends[field]);
+    }
+
+    private String name(int field) {
+        return CapFormatter.text(line, start(field), ends[field]);
+    }
+
+    @Override
+    public long getId() {
+        if (missing(ID)) {
+            setId(CapFormatter.parseLong(line, start(ID), ends[ID]));
+        }
+        return super.getId();
+    }
+
+    @Override
+    public void setId(long id) {
+        decoded(ID);
+        super.setId(id);
+    }
+
+    @Override
+    public CapStyle getStyle() {
+        if (missing(STYLE)) {
+            setStyle(CapFormatter.STYLES.lookup(line, start(STYLE), ends[STYLE]));
+        }
+        return super.getStyle();
+    }
+
+    @Override
+    public void setStyle(CapStyle style) {
+        decoded(STYLE);
+        super.setStyle(style);
+    }
+
+    @Override
+    public String getColor() {
+        if (missing(COLOR)) {
+            setColor(name(COLOR));
+        }
+        return super.getColor();
+    }
+
+    @Override
+    public void setColor(String color) {
+        decoded(COLOR);
+        super.setColor(color);
+    }
+
+    @Override
+    public String getBrand() {
+        if (missing(BRAND)) {
+            setBrand(name(BRAND));
+        }
+        return super.getBrand();
+    }
+
+    @Override
+    public void setBrand(String brand) {
+        decoded(BRAND);
+        super.setBrand(brand);
+    }
+
+    @Override
+    public String getCollaboration() {
+        if (missing(COLLABORATION)) {
+            setCollaboration(isEmpty(COLLABORATION) ? null : name(COLLABORATION));
+        }
+        return super.getCollaboration();
+    }
+
+    @Override
+    public void setCollaboration(String collaboration) {
+        decoded(COLLABORATION);
+        super.setCollaboration(collaboration);
+    }
+
+    @Override
+    public double getPrice() {
+        if (missing(PRICE)) {
+            setPrice(CapFormatter.parsePrice(line, start(PRICE), ends[PRICE]));
+        }
+        return super.getPrice();
+    }
+
+    @Override
+    public void setPrice(double price) {
+        decoded(PRICE);
+        super.setPrice(price);
+    }
+
+    @Override
+    public CapSize getSize() {
+        if (missing(SIZE)) {
+            setSize(CapFormatter.SIZES.lookup(line, start(SIZE), ends[SIZE]));
+        }
+        return super.getSize();
+    }
+
+    @Override
+    public void setSize(CapSize size) {
+        decoded(SIZE);
+        super.setSize(size);
+    }
+
+    @Override
+    public Gender getGender() {
+        if (missing(GENDER)) {
+            setGender(isEmpty(GENDER) ? null : CapFormatter.GENDERS.lookup(line, start(GENDER), ends[GENDER]));
+        }
+        return super.getGender();
+    }
+
+    @Override
+    public void setGender(Gender gender) {
+        decoded(GENDER);
+        super.setGender(gender);
+    }
+
+    @Override
+    public int getStock() {
+        if (missing(STOCK)) {
+            setStock(CapFormatter.parseInt(line, start(STOCK), ends[STOCK]));
+        }
+        return super.getStock();
+    }
+
+    @Override
+    public void setStock(int stock) {
+        decoded(STOCK);
+        super.setStock(stock);
+    }
+
+    @Override
+    public String getImageUrl() {
+        if (missing(IMAGE_URL)) {
+            setImageUrl(isEmpty(IMAGE_URL) ? null : CapFormatter.text(line, start(IMAGE_URL), ends[IMAGE_URL]));
+        }
+        return super.getImageUrl();
+    }
+
+    @Override
+    public void setImageUrl(String imageUrl) {
+        decoded(IMAGE_URL);
+        super.setImageUrl(imageUrl);
+    }
+}
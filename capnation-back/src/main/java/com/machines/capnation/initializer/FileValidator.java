@@ -15,8 +15,12 @@ public class FileValidator implements EnvironmentPostProcessor {
     @Override
     public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
         validateFile(environment.getProperty("caps.file"));
+        validateFile(environment.getProperty("capsBinary.file"));
         validateFile(environment.getProperty("capIndex.file"));
+        validateFile(environment.getProperty("capIndexTree.file"));
         validateFile(environment.getProperty("brandIndex.file"));
+        validateFile(environment.getProperty("brandIndexBinary.file"));
+        validateFile(environment.getProperty("capWal.file"));
     }
 
     private void validateFile(String pathStr) {
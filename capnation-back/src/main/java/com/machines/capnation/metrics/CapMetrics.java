@@ -0,0 +1,101 @@
+package com.machines.capnation.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/***
+ * Meters of the repository, registered in the global registry of Micrometer: Spring Boot adds its own registry to it
+ * (management.metrics.use-global-registry), so they are exported by /actuator/prometheus, and without Spring (the
+ * tests, the benchmarks) they record nothing. The classes that don't belong to Spring, like the heaps and the
+ * indexes, use them without getting a registry.
+ * The hot paths keep their meters in fields: recording a timer or a counter doesn't allocate, so they can stay on
+ * in production. The meters of the files are looked up on every call, those calls write or read whole files.
+ * The rows of the mapped heaps (BINARY and LAZY) are read by page faults, they aren't counted as bytes read.
+ */
+public final class CapMetrics {
+    private static final MeterRegistry REGISTRY = Metrics.globalRegistry;
+
+    private CapMetrics() {
+    }
+
+    // latency of an operation of the repository, with the histogram for the percentiles of Prometheus
+    public static Timer operation(String operation) {
+        return Timer.builder("capnation.repository.operation")
+                .description("Latency of the operations of the cap repository")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(REGISTRY);
+    }
+
+    // outcome of a lookup in an index: hit, miss...
+    public static Counter lookup(String index, String outcome) {
+        return Counter.builder("capnation.index.lookups")
+                .description("Lookups in the indexes of the repository by outcome")
+                .tag("index", index)
+                .tag("outcome", outcome)
+                .register(REGISTRY);
+    }
+
+    // caps decoded from (parsed) or encoded to (formatted) a file format
+    public static Counter caps(String operation, String format) {
+        return Counter.builder("capnation.formatter.caps")
+                .description("Caps parsed from or formatted to the files")
+                .tag("operation", operation)
+                .tag("format", format)
+                .register(REGISTRY);
+    }
+
+    public static void bytesRead(Path file, long bytes) {
+        bytesRead(file).increment(bytes);
+    }
+
+    public static void bytesWritten(Path file, long bytes) {
+        bytesWritten(file).increment(bytes);
+    }
+
+    // the tag is the name of the file: caps.txt, capIndex.txt, brandIndex.txt...
+    public static Counter bytesRead(Path file) {
+        return Counter.builder("capnation.file.read")
+                .description("Bytes read from the files of the repository")
+                .baseUnit("bytes")
+                .tag("file", file.getFileName().toString())
+                .register(REGISTRY);
+    }
+
+    public static Counter bytesWritten(Path file) {
+        return Counter.builder("capnation.file.written")
+                .description("Bytes written to the files of the repository")
+                .baseUnit("bytes")
+                .tag("file", file.getFileName().toString())
+                .register(REGISTRY);
+    }
+
+    // a value read when the metrics are scraped, the gauge doesn't keep the object from being collected
+    public static <T> void gauge(String name, String description, T object, ToDoubleFunction<T> value, String... tags) {
+        Gauge.builder(name, object, value)
+                .description(description)
+                .tags(tags)
+                .register(REGISTRY);
+    }
+
+    // a count kept by the object itself, for the counters that are already updated under a lock
+    public static <T> void counter(String name, String description, T object, ToDoubleFunction<T> value, String... tags) {
+        FunctionCounter.builder(name, object, value)
+                .description(description)
+                .tags(tags)
+                .register(REGISTRY);
+    }
+
+    // records the time since start, taken with System.nanoTime()
+    public static void record(Timer timer, long start) {
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
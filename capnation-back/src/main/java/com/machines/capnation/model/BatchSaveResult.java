@@ -0,0 +1,14 @@
+package com.machines.capnation.model;
+
+import java.util.List;
+
+/***
+ * Result of a batch of saves: one item per cap of the request, in the same order
+ */
+public record BatchSaveResult(int accepted, int rejected, List<Item> items) {
+
+    // index is the position of the cap in the request, error is null when the cap was saved and status is the HTTP
+    // status that a single save of the cap would get: 200, 400 for an invalid cap or 409 for a repeated id or content
+    public record Item(int index, long id, boolean accepted, String error, int status) {
+    }
+}
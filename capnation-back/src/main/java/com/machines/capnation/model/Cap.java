@@ -1,5 +1,8 @@
 package com.machines.capnation.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.util.Objects;
 
 public class Cap {
@@ -60,35 +63,41 @@ public class Cap {
         }
     }
 
+    // the methods read the fields through the getters, so they work with the views that decode them lazily
     @Override
     public String toString() {
         return "Cap{" +
-                "id=" + id +
-                ", brand='" + brand + '\'' +
-                ", stile=" + style +
-                ", color='" + color + '\'' +
-                ", collaboration='" + collaboration + '\'' +
-                ", price=" + price +
-                ", size=" + size +
-                ", gender=" + gender +
-                ", stock=" + stock +
-                ", imageUrl=" + imageUrl +
+                "id=" + getId() +
+                ", brand='" + getBrand() + '\'' +
+                ", stile=" + getStyle() +
+                ", color='" + getColor() + '\'' +
+                ", collaboration='" + getCollaboration() + '\'' +
+                ", price=" + getPrice() +
+                ", size=" + getSize() +
+                ", gender=" + getGender() +
+                ", stock=" + getStock() +
+                ", imageUrl=" + getImageUrl() +
                 '}';
     }
 
     @Override
     public boolean equals(Object o) {
-        if (o == null || getClass() != o.getClass()) return false;
-        Cap cap = (Cap) o;
-        return id == cap.id && Double.compare(price, cap.price) == 0 && stock == cap.stock && Objects.equals(brand, cap.brand) && style == cap.style && Objects.equals(color, cap.color) && Objects.equals(collaboration, cap.collaboration) && size == cap.size && gender == cap.gender && Objects.equals(imageUrl, cap.imageUrl);
+        if (!(o instanceof Cap cap)) return false;
+        return getId() == cap.getId() && similar(cap);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, brand, style, color, collaboration, price, size, gender, stock);
+        return Objects.hash(getId(), getBrand(), getStyle(), getColor(), getCollaboration(), getPrice(), getSize(), getGender(), getStock());
     }
 
-    private Cap(long id, String brand, CapStyle style, String color, String collaboration, double price, CapSize size, Gender gender, int stock, String url) {
+    // the JSON of a request is read with this constructor, a body without a brand, style, color or size is rejected
+    @JsonCreator
+    private Cap(@JsonProperty("id") long id, @JsonProperty(value = "brand", required = true) String brand,
+                @JsonProperty(value = "style", required = true) CapStyle style, @JsonProperty(value = "color", required = true) String color,
+                @JsonProperty("collaboration") String collaboration, @JsonProperty("price") double price,
+                @JsonProperty(value = "size", required = true) CapSize size, @JsonProperty("gender") Gender gender,
+                @JsonProperty("stock") int stock, @JsonProperty("imageUrl") String url) {
         this.id = id;
         this.brand = brand;
         this.style = style;
@@ -101,8 +110,12 @@ public class Cap {
         this.imageUrl = url;
     }
 
+    // for the views that set the fields when they are read, see LazyCap, Jackson uses the constructor above
+    protected Cap() {
+    }
+
     public boolean similar(Cap cap) {
-        return Double.compare(price, cap.price) == 0 && stock == cap.stock && Objects.equals(brand, cap.brand) && style == cap.style && Objects.equals(color, cap.color) && Objects.equals(collaboration, cap.collaboration) && size == cap.size && gender == cap.gender && Objects.equals(imageUrl, cap.imageUrl);
+        return Double.compare(getPrice(), cap.getPrice()) == 0 && getStock() == cap.getStock() && Objects.equals(getBrand(), cap.getBrand()) && getStyle() == cap.getStyle() && Objects.equals(getColor(), cap.getColor()) && Objects.equals(getCollaboration(), cap.getCollaboration()) && getSize() == cap.getSize() && getGender() == cap.getGender() && Objects.equals(getImageUrl(), cap.getImageUrl());
 
     }
 
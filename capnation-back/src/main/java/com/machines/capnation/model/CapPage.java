@@ -0,0 +1,9 @@
+package com.machines.capnation.model;
+
+import java.util.List;
+
+/***
+ * Page of caps in id order, nextAfter is the cursor of the next page or null if this is the last one
+ */
+public record CapPage(List<Cap> caps, Long nextAfter) {
+}
@@ -0,0 +1,24 @@
+package com.machines.capnation.model;
+
+import java.util.List;
+
+/***
+ * Filters of a search: a cap matches if it has one of the values of every non empty list
+ */
+public record CapSearch(List<CapStyle> styles,
+                        List<CapSize> sizes,
+                        List<Gender> genders,
+                        List<String> colors,
+                        List<String> brands) {
+    public CapSearch {
+        styles = styles != null ? styles : List.of();
+        sizes = sizes != null ? sizes : List.of();
+        genders = genders != null ? genders : List.of();
+        colors = colors != null ? colors : List.of();
+        brands = brands != null ? brands : List.of();
+    }
+
+    public boolean isEmpty() {
+        return styles.isEmpty() && sizes.isEmpty() && genders.isEmpty() && colors.isEmpty() && brands.isEmpty();
+    }
+}
@@ -0,0 +1,9 @@
+package com.machines.capnation.model;
+
+import java.util.List;
+
+/***
+ * Caps of a search in the order they were saved, total is the number of caps that match it
+ */
+public record CapSearchResult(long total, List<Cap> caps) {
+}
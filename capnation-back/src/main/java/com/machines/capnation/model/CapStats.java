@@ -0,0 +1,17 @@
+package com.machines.capnation.model;
+
+import java.util.List;
+
+/***
+ * Aggregates of the catalog by brand, style, size or gender: a group per value (the brands normalized, the caps
+ * without gender in UNISEX) in alphabetical order, and the total of all the caps
+ */
+public record CapStats(GroupBy groupBy, Group total, List<Group> groups) {
+    public enum GroupBy {
+        BRAND, STYLE, SIZE, GENDER
+    }
+
+    // the prices are 0 in a group without caps, stock is the sum of the stock of its caps
+    public record Group(String name, long caps, long stock, double minPrice, double avgPrice, double maxPrice) {
+    }
+}
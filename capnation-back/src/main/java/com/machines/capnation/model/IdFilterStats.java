@@ -0,0 +1,16 @@
+package com.machines.capnation.model;
+
+/***
+ * Bloom filter of the ids checked by the saves before the primary index: a negative skips the index, a positive
+ * is confirmed by it and it's a false positive when the index doesn't have the id
+ */
+public record IdFilterStats(long ids,
+                            int layers,
+                            long memoryBytes,
+                            double configuredFalsePositiveRate,
+                            long checks,
+                            long negatives,
+                            long positives,
+                            long falsePositives,
+                            double observedFalsePositiveRate) {
+}
@@ -1,5 +1,9 @@
 package com.machines.capnation.model;
 
+/***
+ * Entry of the cap index: the key is the id of the cap and the direction is the position of its row in the heap.
+ * The binary heap resolves the position to the byte offset of the record.
+ */
 public  class Index {
     private Long key;
     private int direction;
@@ -0,0 +1,22 @@
+package com.machines.capnation.model;
+
+/***
+ * Loading state of the repository, the instance can receive traffic once it's ready
+ */
+public record Readiness(State state,
+                        int progressPercent,
+                        int loadedRows,
+                        long elapsedMillis,
+                        String error) {
+    public enum State {
+        ON_DEMAND, // eager loading is disabled, the first request loads the repository
+        LOADING,
+        WARMING_UP,
+        READY,
+        FAILED
+    }
+
+    public boolean isReady() {
+        return state == State.READY || state == State.ON_DEMAND;
+    }
+}
@@ -0,0 +1,15 @@
+package com.machines.capnation.model;
+
+/***
+ * Cache of the JSON responses of the catalog reads: the hits are served without encoding, the not modified ones
+ * without reading the catalog, and the uncacheable ones were too big to be kept
+ */
+public record ResponseCacheStats(int entries,
+                                 long bytes,
+                                 long maxBytes,
+                                 long hits,
+                                 long misses,
+                                 long notModified,
+                                 long evictions,
+                                 long uncacheable) {
+}
@@ -0,0 +1,14 @@
+package com.machines.capnation.model;
+
+/***
+ * State of the queue of saves and of the batches written by its writer thread
+ */
+public record SaveQueueStats(int queueDepth,
+                             int queueCapacity,
+                             long batches,
+                             long processedSaves,
+                             long rejectedSaves,
+                             int lastBatchSize,
+                             int maxBatchSize,
+                             double averageBatchSize) {
+}
@@ -0,0 +1,10 @@
+package com.machines.capnation.model;
+
+/***
+ * Completion of a prefix: a value of the field as it was first saved and the number of caps that have it
+ */
+public record Suggestion(String value, int count) {
+    public enum Field {
+        BRAND, COLOR, COLLABORATION
+    }
+}
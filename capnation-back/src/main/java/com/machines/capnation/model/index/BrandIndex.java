@@ -1,14 +1,19 @@
 package com.machines.capnation.model.index;
 
-import java.util.ArrayList;
+import com.machines.capnation.collection.LongList;
+
 import java.util.List;
 import java.util.Objects;
 
+/***
+ * Posting list of a brand: the ids of its caps in insertion order, stored as primitive longs.
+ * The brand is always normalized (see normalize) so the lookups don't depend on the case.
+ */
 public class BrandIndex {
     private String brand;
-    private List<Long> caps;
+    private LongList caps;
 
-    private BrandIndex(String brand, List<Long> caps) {
+    private BrandIndex(String brand, LongList caps) {
         this.brand = brand;
         this.caps = caps;
     }
@@ -25,7 +30,7 @@ public class BrandIndex {
         return Objects.hash(brand, caps);
     }
 
-    public List<Long> getCaps() {
+    public LongList getCaps() {
         return caps;
     }
 
@@ -34,18 +39,22 @@ public class BrandIndex {
         return brand;
     }
 
-    public boolean appendCap(Long id) {
-        return caps.add(id);
+    public void appendCap(long id) {
+        caps.add(id);
+    }
+
+    public static String normalize(String brand) {
+        return brand.toLowerCase();
     }
 
 
     public static class BrandIndexBuilder {
         private String brand;
-        private List<Long> caps;
+        private LongList caps;
 
         public BrandIndexBuilder() {
             this.brand = null;
-            this.caps = new ArrayList<>();
+            this.caps = new LongList();
         }
 
         public BrandIndex build() {
@@ -54,11 +63,16 @@ public class BrandIndex {
 
         public BrandIndexBuilder setBrand(String brand) {
 
-            this.brand = brand.toLowerCase();
+            this.brand = normalize(brand);
             return this;
         }
 
         public BrandIndexBuilder setCaps(List<Long> caps) {
+            this.caps = LongList.fromList(caps);
+            return this;
+        }
+
+        public BrandIndexBuilder setCaps(LongList caps) {
             this.caps = caps;
             return this;
         }
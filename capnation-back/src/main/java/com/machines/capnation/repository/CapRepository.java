@@ -1,15 +1,51 @@
 package com.machines.capnation.repository;
 
+import com.machines.capnation.exceptions.CapException;
 import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSearch;
+import com.machines.capnation.model.CapSearchResult;
+import com.machines.capnation.model.CapStats;
+import com.machines.capnation.model.IdFilterStats;
+import com.machines.capnation.model.Readiness;
+import com.machines.capnation.model.SaveQueueStats;
+import com.machines.capnation.model.Suggestion;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface CapRepository {
     List<Cap> findAll(); // finds all caps stored in file
 
+    List<Cap> findPage(long afterId, int limit); // finds up to limit caps with an id greater than afterId, in id order
+
+    void forEachCap(Consumer<Cap> action); // visits every cap in id order without loading all of them
+
     Cap save(Cap cap); // save a new cap in the file and return it
 
+    CompletableFuture<Cap> saveAsync(Cap cap); // queue a new cap to be saved, the future completes once it's saved
+
+    List<CapException> saveAll(List<Cap> caps); // save many caps at once, returns the rejection of every cap (null if saved)
+
+    SaveQueueStats saveQueueStats(); // depth of the queue of saves and size of the batches written
+
+    IdFilterStats idFilterStats(); // hits and false positives of the filter of ids checked by the saves
+
+    Readiness readiness(); // progress of the load at startup, the requests wait for it
+
+    long catalogVersion(); // changes with every save, the responses of the reads are valid while it doesn't change
+
     Cap findById(Long id);
 
     List<Cap> findByBrand(String brand);
+
+    CapSearchResult search(CapSearch search, int offset, int limit); // caps that match the filters, in save order
+
+    // caps with a price between min and max, sorted by price, optionally of one brand (brand can be null)
+    List<Cap> findByPrice(double min, double max, boolean ascending, String brand, int limit);
+
+    // values of the field that start with the prefix (case insensitive), the ones of more caps first
+    List<Suggestion> suggest(Suggestion.Field field, String prefix, int limit);
+
+    CapStats stats(CapStats.GroupBy groupBy); // caps, stock and prices of every group, kept up to date by the saves
 }
@@ -0,0 +1,586 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.collection.LongList;
+import com.machines.capnation.exceptions.CapDatabaseException;
+import com.machines.capnation.metrics.CapMetrics;
+import io.micrometer.core.instrument.Counter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/***
+ * Primary index stored in a B+tree of 4KB pages (capIndexTree.file), read and written through a FileChannel.
+ * Page 0 is the meta page:
+ *  magic(int "CAPT")|version(short)|reserved(short)|page size(int)|root page(int)|number of pages(int)|entries(long)
+ * Every node starts with type(byte)|reserved(byte)|count(short)|next leaf(int, -1 = none)
+ *  leaf: count entries of id(long)|position(int), sorted by id, linked to the next leaf for the range scans
+ *  internal: child(int) followed by count pairs of id(long)|child(int), the ids of a child are >= the id on its left
+ * A lookup reads the pages of one path from the root, and an insert modifies them plus the ones created by the splits.
+ * The modified pages stay in memory until flush(), the clean ones are kept in a bounded LRU cache.
+ * The lookups and the scans share a read lock and the writer takes the write lock only to change the pages: flush()
+ * writes copies of the modified pages and forces the file without it, and a scan visits every leaf out of the lock.
+ */
+public class BPlusTreePrimaryIndex implements PrimaryIndex {
+    static final int PAGE_SIZE = 4096;
+    static final int MAGIC = 0x43415054; // "CAPT"
+    static final short VERSION = 1;
+
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final int NODE_HEADER_SIZE = 8;
+    private static final int ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+    static final int LEAF_CAPACITY = (PAGE_SIZE - NODE_HEADER_SIZE) / ENTRY_SIZE;
+    static final int INTERNAL_CAPACITY = (PAGE_SIZE - NODE_HEADER_SIZE - Integer.BYTES) / ENTRY_SIZE;
+    private static final int NO_PAGE = -1;
+
+    private final FileChannel channel;
+    private final Map<Integer, ByteBuffer> dirtyPages = new HashMap<>();
+    private final LinkedHashMap<Integer, ByteBuffer> cache; // guarded by itself, the lookups reorder it
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Counter bytesRead;
+    private final Counter bytesWritten;
+    private final Counter cacheHits = CapMetrics.lookup("treePages", "hit");
+    private final Counter cacheMisses = CapMetrics.lookup("treePages", "miss");
+
+    private int root;
+    private int pageCount;
+    private long size;
+
+    public BPlusTreePrimaryIndex(Path file, int cachePages) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ByteBuffer> eldest) {
+                return size() > cachePages;
+            }
+        };
+        this.bytesRead = CapMetrics.bytesRead(file);
+        this.bytesWritten = CapMetrics.bytesWritten(file);
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                initialize();
+            } else {
+                readMeta();
+            }
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+    }
+
+    // empty tree: the meta page and an empty leaf as root
+    private void initialize() {
+        dirtyPages.clear();
+        synchronized (cache) {
+            cache.clear();
+        }
+        pageCount = 1;
+        size = 0;
+        root = newNode(LEAF);
+        flush();
+    }
+
+    private void readMeta() throws IOException {
+        var meta = ByteBuffer.allocate(PAGE_SIZE);
+        readFully(meta, 0);
+        if (meta.getInt(0) != MAGIC || meta.getShort(4) != VERSION || meta.getInt(8) != PAGE_SIZE) {
+            throw new CapDatabaseException("The cap index file is not a B+tree of this version");
+        }
+        root = meta.getInt(12);
+        pageCount = meta.getInt(16);
+        size = meta.getLong(20);
+    }
+
+    @Override
+    public int get(long id) {
+        lock.readLock().lock();
+        try {
+            var leaf = page(findLeaf(id, null));
+            int slot = search(leaf, id);
+            return slot >= 0 ? leafValue(leaf, slot) : NO_VALUE;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(long id, int position) {
+        lock.writeLock().lock();
+        try {
+            insert(id, position);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(long id, int position) {
+        Deque<int[]> path = new ArrayDeque<>(); // page and child index of every internal node of the path
+        int leafPage = findLeaf(id, path);
+        var leaf = page(leafPage);
+        int slot = search(leaf, id);
+        if (slot >= 0) {
+            leaf.putInt(leafOffset(slot) + Long.BYTES, position);
+            markDirty(leafPage, leaf);
+            return;
+        }
+        size++;
+        int insertAt = -(slot + 1);
+        int count = count(leaf);
+        if (count < LEAF_CAPACITY) {
+            shift(leaf, leafOffset(insertAt), leafOffset(count), ENTRY_SIZE);
+            setLeafEntry(leaf, insertAt, id, position);
+            setCount(leaf, count + 1);
+            markDirty(leafPage, leaf);
+            return;
+        }
+        splitLeaf(leafPage, leaf, insertAt, id, position, path);
+    }
+
+    private void splitLeaf(int leafPage, ByteBuffer leaf, int insertAt, long id, int position, Deque<int[]> path) {
+        int count = count(leaf);
+        var ids = new long[count + 1];
+        var positions = new int[count + 1];
+        for (int i = 0, j = 0; i <= count; i++) {
+            if (i == insertAt) {
+                ids[i] = id;
+                positions[i] = position;
+            } else {
+                ids[i] = leafKey(leaf, j);
+                positions[i] = leafValue(leaf, j);
+                j++;
+            }
+        }
+        // ids are usually increasing: appending at the end keeps the left leaf full instead of half empty
+        int leftCount = insertAt == count ? count : (count + 1) / 2;
+
+        int rightPage = newNode(LEAF);
+        var right = page(rightPage);
+        for (int i = leftCount; i <= count; i++) {
+            setLeafEntry(right, i - leftCount, ids[i], positions[i]);
+        }
+        setCount(right, count + 1 - leftCount);
+        right.putInt(4, leaf.getInt(4));
+
+        for (int i = 0; i < leftCount; i++) {
+            setLeafEntry(leaf, i, ids[i], positions[i]);
+        }
+        setCount(leaf, leftCount);
+        leaf.putInt(4, rightPage);
+        markDirty(leafPage, leaf);
+        markDirty(rightPage, right);
+
+        insertInParent(path, leafPage, ids[leftCount], rightPage);
+    }
+
+    private void insertInParent(Deque<int[]> path, int leftPage, long separator, int rightPage) {
+        if (path.isEmpty()) {
+            int newRoot = newNode(INTERNAL);
+            var node = page(newRoot);
+            node.putInt(NODE_HEADER_SIZE, leftPage);
+            setInternalEntry(node, 0, separator, rightPage);
+            setCount(node, 1);
+            markDirty(newRoot, node);
+            root = newRoot;
+            return;
+        }
+        var step = path.pop();
+        int parentPage = step[0];
+        int insertAt = step[1]; // the left page is the child insertAt, the separator goes in the key insertAt
+        var parent = page(parentPage);
+        int count = count(parent);
+        if (count < INTERNAL_CAPACITY) {
+            shift(parent, internalOffset(insertAt), internalOffset(count), ENTRY_SIZE);
+            setInternalEntry(parent, insertAt, separator, rightPage);
+            setCount(parent, count + 1);
+            markDirty(parentPage, parent);
+            return;
+        }
+
+        var keys = new long[count + 1];
+        var children = new int[count + 2];
+        children[0] = parent.getInt(NODE_HEADER_SIZE);
+        for (int i = 0, j = 0; i <= count; i++) {
+            if (i == insertAt) {
+                keys[i] = separator;
+                children[i + 1] = rightPage;
+            } else {
+                keys[i] = internalKey(parent, j);
+                children[i + 1] = internalChild(parent, j);
+                j++;
+            }
+        }
+        int middle = (count + 1) / 2;
+
+        int siblingPage = newNode(INTERNAL);
+        var sibling = page(siblingPage);
+        sibling.putInt(NODE_HEADER_SIZE, children[middle + 1]);
+        for (int i = middle + 1; i <= count; i++) {
+            setInternalEntry(sibling, i - middle - 1, keys[i], children[i + 1]);
+        }
+        setCount(sibling, count - middle);
+
+        for (int i = 0; i < middle; i++) {
+            setInternalEntry(parent, i, keys[i], children[i + 1]);
+        }
+        setCount(parent, middle);
+        markDirty(parentPage, parent);
+        markDirty(siblingPage, sibling);
+
+        insertInParent(path, parentPage, keys[middle], siblingPage);
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return (int) size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /***
+     * The entries of every leaf are copied with the read lock and visited without it. The next leaf is found again
+     * from the root with the last id copied, so the splits made between two leaves don't skip entries.
+     */
+    @Override
+    public void scan(long afterId, int rowCount, EntryVisitor visitor) {
+        var ids = new long[LEAF_CAPACITY];
+        var positions = new int[LEAF_CAPACITY];
+        long lastId = afterId;
+        while (true) {
+            int count = 0;
+            lock.readLock().lock();
+            try {
+                var leaf = page(findLeaf(lastId, null));
+                int slot = search(leaf, lastId);
+                int from = slot >= 0 ? slot + 1 : -(slot + 1);
+                // the ids after lastId start in the next leaf when it was the last one of its leaf
+                while (from == count(leaf) && leaf.getInt(4) != NO_PAGE) {
+                    leaf = page(leaf.getInt(4));
+                    from = 0;
+                }
+                for (int i = from; i < count(leaf); i++) {
+                    ids[count] = leafKey(leaf, i);
+                    positions[count++] = leafValue(leaf, i);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (count == 0) {
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                if (positions[i] < rowCount && !visitor.visit(ids[i], positions[i])) {
+                    return;
+                }
+            }
+            lastId = ids[count - 1];
+        }
+    }
+
+    /***
+     * Builds the tree bottom up from the sorted entries: full leaves first and then every level of internal nodes
+     */
+    @Override
+    public synchronized void rebuild(LongList idsByPosition) {
+        lock.writeLock().lock();
+        try {
+            build(idsByPosition);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void build(LongList idsByPosition) {
+        try {
+            channel.truncate(0);
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+        initialize();
+        int entries = idsByPosition.size();
+        if (entries == 0) {
+            return;
+        }
+        var ids = idsByPosition.toArray();
+        var sortedPositions = sortPositionsById(ids);
+
+        int leaves = (entries + LEAF_CAPACITY - 1) / LEAF_CAPACITY;
+        var levelPages = new int[leaves];
+        var levelKeys = new long[leaves];
+        levelPages[0] = root;
+        for (int l = 1; l < leaves; l++) {
+            levelPages[l] = newNode(LEAF);
+        }
+        for (int l = 0; l < leaves; l++) {
+            var leaf = page(levelPages[l]);
+            int from = l * LEAF_CAPACITY;
+            int to = Math.min(from + LEAF_CAPACITY, entries);
+            for (int i = from; i < to; i++) {
+                int position = sortedPositions[i];
+                setLeafEntry(leaf, i - from, ids[position], position);
+            }
+            setCount(leaf, to - from);
+            leaf.putInt(4, l + 1 < leaves ? levelPages[l + 1] : NO_PAGE);
+            levelKeys[l] = ids[sortedPositions[from]];
+            markDirty(levelPages[l], leaf);
+        }
+
+        while (levelPages.length > 1) {
+            int nodes = (levelPages.length + INTERNAL_CAPACITY) / (INTERNAL_CAPACITY + 1);
+            var upperPages = new int[nodes];
+            var upperKeys = new long[nodes];
+            for (int n = 0; n < nodes; n++) {
+                int from = n * (INTERNAL_CAPACITY + 1);
+                int to = Math.min(from + INTERNAL_CAPACITY + 1, levelPages.length);
+                upperPages[n] = newNode(INTERNAL);
+                upperKeys[n] = levelKeys[from];
+                var node = page(upperPages[n]);
+                node.putInt(NODE_HEADER_SIZE, levelPages[from]);
+                for (int c = from + 1; c < to; c++) {
+                    setInternalEntry(node, c - from - 1, levelKeys[c], levelPages[c]);
+                }
+                setCount(node, to - from - 1);
+                markDirty(upperPages[n], node);
+            }
+            levelPages = upperPages;
+            levelKeys = upperKeys;
+        }
+        root = levelPages[0];
+        size = entries;
+        flush();
+    }
+
+    // positions of the heap ordered by the id of their cap
+    private static int[] sortPositionsById(long[] ids) {
+        var boxed = new Integer[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, (a, b) -> Long.compare(ids[a], ids[b]));
+        var positions = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            positions[i] = boxed[i];
+        }
+        return positions;
+    }
+
+    /***
+     * Writes the modified pages and then the meta page, and forces the file to disk. The pages are copied with the
+     * write lock and written without it, then the ones that didn't change meanwhile move to the cache.
+     */
+    @Override
+    public synchronized void flush() {
+        var written = new HashMap<Integer, ByteBuffer>();
+        var meta = ByteBuffer.allocate(PAGE_SIZE);
+        lock.writeLock().lock();
+        try {
+            dirtyPages.forEach((pageId, page) -> written.put(pageId, ByteBuffer.wrap(page.array().clone())));
+            meta.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(PAGE_SIZE)
+                    .putInt(root).putInt(pageCount).putLong(size);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            for (Map.Entry<Integer, ByteBuffer> entry : written.entrySet()) {
+                writeFully(entry.getValue(), (long) entry.getKey() * PAGE_SIZE);
+            }
+            writeFully(meta.clear(), 0);
+            channel.force(false);
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+        lock.writeLock().lock();
+        try {
+            written.forEach((pageId, copy) -> {
+                var page = dirtyPages.get(pageId);
+                if (page != null && Arrays.equals(page.array(), copy.array())) {
+                    dirtyPages.remove(pageId);
+                    cache(pageId, page);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+    }
+
+    // descends from the root to the leaf where the id is or should be, the internal nodes are pushed to the path
+    private int findLeaf(long id, Deque<int[]> path) {
+        int current = root;
+        var node = page(current);
+        while (node.get(0) == INTERNAL) {
+            int child = upperBound(node, id);
+            if (path != null) {
+                path.push(new int[]{current, child});
+            }
+            current = child == 0 ? node.getInt(NODE_HEADER_SIZE) : internalChild(node, child - 1);
+            node = page(current);
+        }
+        return current;
+    }
+
+    // number of keys of the internal node that are <= id, that's the index of the child to follow
+    private static int upperBound(ByteBuffer node, long id) {
+        int low = 0;
+        int high = count(node);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (internalKey(node, middle) <= id) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // binary search in a leaf, same contract as Arrays.binarySearch
+    private static int search(ByteBuffer leaf, long id) {
+        int low = 0;
+        int high = count(leaf) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long key = leafKey(leaf, middle);
+            if (key < id) {
+                low = middle + 1;
+            } else if (key > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // the dirty pages only change with the write lock, the cache is shared by the readers
+    private ByteBuffer page(int pageId) {
+        var page = dirtyPages.get(pageId);
+        if (page == null) {
+            synchronized (cache) {
+                page = cache.get(pageId);
+            }
+            (page != null ? cacheHits : cacheMisses).increment();
+        }
+        if (page == null) {
+            page = ByteBuffer.allocate(PAGE_SIZE);
+            try {
+                readFully(page, (long) pageId * PAGE_SIZE);
+            } catch (IOException e) {
+                throw new CapDatabaseException(e.getMessage());
+            }
+            cache(pageId, page);
+        }
+        return page;
+    }
+
+    private void cache(int pageId, ByteBuffer page) {
+        synchronized (cache) {
+            cache.put(pageId, page);
+        }
+    }
+
+    private int newNode(byte type) {
+        int pageId = pageCount++;
+        var page = ByteBuffer.allocate(PAGE_SIZE);
+        page.put(0, type);
+        page.putInt(4, NO_PAGE);
+        dirtyPages.put(pageId, page);
+        return pageId;
+    }
+
+    private void markDirty(int pageId, ByteBuffer page) {
+        synchronized (cache) {
+            cache.remove(pageId);
+        }
+        dirtyPages.put(pageId, page);
+    }
+
+    private static int count(ByteBuffer node) {
+        return node.getShort(2);
+    }
+
+    private static void setCount(ByteBuffer node, int count) {
+        node.putShort(2, (short) count);
+    }
+
+    private static int leafOffset(int slot) {
+        return NODE_HEADER_SIZE + slot * ENTRY_SIZE;
+    }
+
+    private static long leafKey(ByteBuffer leaf, int slot) {
+        return leaf.getLong(leafOffset(slot));
+    }
+
+    private static int leafValue(ByteBuffer leaf, int slot) {
+        return leaf.getInt(leafOffset(slot) + Long.BYTES);
+    }
+
+    private static void setLeafEntry(ByteBuffer leaf, int slot, long id, int position) {
+        leaf.putLong(leafOffset(slot), id);
+        leaf.putInt(leafOffset(slot) + Long.BYTES, position);
+    }
+
+    // the key i is followed by the child i + 1, the child 0 is right after the node header
+    private static int internalOffset(int slot) {
+        return NODE_HEADER_SIZE + Integer.BYTES + slot * ENTRY_SIZE;
+    }
+
+    private static long internalKey(ByteBuffer node, int slot) {
+        return node.getLong(internalOffset(slot));
+    }
+
+    private static int internalChild(ByteBuffer node, int slot) {
+        return node.getInt(internalOffset(slot) + Long.BYTES);
+    }
+
+    private static void setInternalEntry(ByteBuffer node, int slot, long key, int child) {
+        node.putLong(internalOffset(slot), key);
+        node.putInt(internalOffset(slot) + Long.BYTES, child);
+    }
+
+    // moves the bytes [from, to) of the page by the given distance to the right
+    private static void shift(ByteBuffer page, int from, int to, int distance) {
+        if (to > from) {
+            var array = page.array();
+            System.arraycopy(array, from, array, from + distance, to - from);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break; // pages never written are zeros
+            }
+        }
+        bytesRead.increment(buffer.position());
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        bytesWritten.increment(buffer.remaining());
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
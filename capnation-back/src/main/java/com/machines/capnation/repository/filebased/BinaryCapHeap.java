@@ -0,0 +1,254 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.collection.ChunkedArray;
+import com.machines.capnation.collection.ChunkedLongArray;
+import com.machines.capnation.exceptions.CapDatabaseException;
+import com.machines.capnation.metrics.CapMetrics;
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStyle;
+import com.machines.capnation.model.Gender;
+import io.micrometer.core.instrument.Counter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/***
+ * Heap in a versioned binary format, read through a MappedByteBuffer.
+ * File header:
+ *  magic(int "CAPH")|version(short)|record header size(short)|reserved(long)
+ * Every record has a fixed width area followed by its own string region:
+ *  length(int)|id(long)|price(double)|stock(int)|style(byte)|size(byte)|gender(byte, -1 = null)|reserved(byte)
+ *  |brand, color, collaboration, imageUrl as offset(int, from the record start)|length(int, -1 = null)
+ *  |utf-8 bytes of the strings
+ * The byte offset of every row is kept in memory, so getting a cap decodes only its own record.
+ * The caps appended after the last flush are kept in memory until the next one, which replaces them
+ * atomically by a new empty group once their offsets are published.
+ */
+public class BinaryCapHeap implements CapHeap {
+    static final int MAGIC = 0x43415048; // "CAPH"
+    static final short VERSION = 1;
+    static final int FILE_HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 60;
+
+    private static final int STRING_FIELDS = 4;
+    private static final CapStyle[] STYLES = CapStyle.values();
+    private static final CapSize[] SIZES = CapSize.values();
+    private static final Gender[] GENDERS = Gender.values();
+
+    private final FileChannel channel;
+    private final Counter bytesWritten;
+    private final Counter formattedCaps = CapMetrics.caps("format", "binary");
+    private final ChunkedLongArray offsets = new ChunkedLongArray();
+    private volatile Pending pending = new Pending(0);
+    private volatile MappedByteBuffer mapped;
+
+    // caps not flushed yet, the first one is in the position first of the heap
+    private record Pending(int first, ChunkedArray<Cap> caps) {
+        Pending(int first) {
+            this(first, new ChunkedArray<>());
+        }
+    }
+
+    public BinaryCapHeap(Path file) {
+        this.bytesWritten = CapMetrics.bytesWritten(file);
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                var header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+                writeFileHeader(header);
+                header.flip();
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            remap();
+            readDirectory();
+            pending = new Pending(offsets.size());
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+    }
+
+    static void writeFileHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_HEADER_SIZE).putLong(0L);
+    }
+
+    // validates the header and collects the offset of every record jumping by their length
+    private void readDirectory() {
+        var buffer = mapped;
+        if (buffer.limit() < FILE_HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new CapDatabaseException("The heap file is not a binary cap heap");
+        }
+        short version = buffer.getShort(4);
+        if (version != VERSION) {
+            throw new CapDatabaseException(String.format("Unsupported binary heap version %d", version));
+        }
+        int position = FILE_HEADER_SIZE;
+        while (position + Integer.BYTES <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length < RECORD_HEADER_SIZE || position + length > buffer.limit()) {
+                throw new CapDatabaseException(String.format("Corrupt record at offset %d of the binary heap", position));
+            }
+            offsets.add(position);
+            position += length;
+        }
+    }
+
+    private void remap() throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new CapDatabaseException("The binary heap can't be bigger than 2GB");
+        }
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    @Override
+    public int size() {
+        var current = pending;
+        return current.first() + current.caps().size();
+    }
+
+    @Override
+    public Cap get(int position) {
+        // the offsets and the mapping are published before the pending group that starts after them
+        var current = pending;
+        if (position >= current.first()) {
+            return current.caps().get(position - current.first());
+        }
+        return decode(mapped, (int) offsets.get(position));
+    }
+
+    /***
+     * Decodes the record that starts in the given offset of the buffer, only absolute gets are used
+     * so the same buffer can be read by many threads
+     */
+    static Cap decode(ByteBuffer buffer, int offset) {
+        long id = buffer.getLong(offset + 4);
+        double price = buffer.getDouble(offset + 12);
+        int stock = buffer.getInt(offset + 20);
+        var style = STYLES[buffer.get(offset + 24)];
+        var size = SIZES[buffer.get(offset + 25)];
+        byte gender = buffer.get(offset + 26);
+
+        int strings = offset + 28;
+        var cap = new Cap.CapBuilder(style, readString(buffer, offset, strings + 8), readString(buffer, offset, strings),
+                price, size, stock)
+                .setId(id)
+                .setCollaboration(readString(buffer, offset, strings + 16))
+                .setImageUrl(readString(buffer, offset, strings + 24))
+                .build();
+        if (gender >= 0) {
+            cap.setGender(GENDERS[gender]);
+        }
+        return cap;
+    }
+
+    private static String readString(ByteBuffer buffer, int recordOffset, int reference) {
+        int length = buffer.getInt(reference + 4);
+        if (length < 0) {
+            return null;
+        }
+        var bytes = new byte[length];
+        buffer.get(recordOffset + buffer.getInt(reference), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /***
+     * Encodes a cap in the record format, the buffer must have enough space (see recordLength)
+     */
+    static void encode(Cap cap, ByteBuffer buffer) {
+        var strings = new byte[][]{bytes(cap.getBrand()), bytes(cap.getColor()), bytes(cap.getCollaboration()), bytes(cap.getImageUrl())};
+        buffer.putInt(recordLength(strings))
+                .putLong(cap.getId())
+                .putDouble(cap.getPrice())
+                .putInt(cap.getStock())
+                .put((byte) cap.getStyle().ordinal())
+                .put((byte) cap.getSize().ordinal())
+                .put(cap.getGender() != null ? (byte) cap.getGender().ordinal() : -1)
+                .put((byte) 0);
+        int stringOffset = RECORD_HEADER_SIZE;
+        for (byte[] string : strings) {
+            buffer.putInt(stringOffset).putInt(string != null ? string.length : -1);
+            stringOffset += string != null ? string.length : 0;
+        }
+        for (byte[] string : strings) {
+            if (string != null) {
+                buffer.put(string);
+            }
+        }
+    }
+
+    static int recordLength(Cap cap) {
+        return recordLength(new byte[][]{bytes(cap.getBrand()), bytes(cap.getColor()), bytes(cap.getCollaboration()), bytes(cap.getImageUrl())});
+    }
+
+    private static int recordLength(byte[][] strings) {
+        int length = RECORD_HEADER_SIZE;
+        for (int i = 0; i < STRING_FIELDS; i++) {
+            length += strings[i] != null ? strings[i].length : 0;
+        }
+        return length;
+    }
+
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    @Override
+    public int append(Cap cap) {
+        pending.caps().add(cap);
+        return size() - 1;
+    }
+
+    @Override
+    public void flush() {
+        var flushed = pending;
+        int count = flushed.caps().size();
+        if (count == 0) {
+            return;
+        }
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            length += recordLength(flushed.caps().get(i));
+        }
+        var buffer = ByteBuffer.allocate(length);
+        var newOffsets = new long[count];
+        try {
+            long end = channel.size();
+            for (int i = 0; i < count; i++) {
+                newOffsets[i] = end + buffer.position();
+                encode(flushed.caps().get(i), buffer);
+            }
+            buffer.flip();
+            long position = end;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+            bytesWritten.increment(length);
+            formattedCaps.increment(count);
+            remap();
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+        for (long offset : newOffsets) {
+            offsets.add(offset);
+        }
+        pending = new Pending(flushed.first() + count);
+    }
+
+    @Override
+    public void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.collection.RoaringBitmap;
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.index.BrandIndex;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * Bitmap indexes of the positions of the heap by style, size, gender, color and brand, so the searches are solved
+ * with bitmap operations before reading any cap. The colors and the brands are normalized like BrandIndex.normalize.
+ * They live in memory only: they are built from the heap when the repository loads and updated by the single
+ * writer after every save. The readers use the snapshots of the bitmaps made by publish().
+ */
+public class BitmapIndexStore {
+    public enum Attribute {
+        STYLE, SIZE, GENDER, COLOR, BRAND
+    }
+
+    private static final RoaringBitmap EMPTY = new RoaringBitmap().snapshot();
+
+    private final Map<Attribute, Map<String, RoaringBitmap>> bitmaps = new EnumMap<>(Attribute.class);
+    private final Map<Attribute, Map<String, RoaringBitmap>> published = new EnumMap<>(Attribute.class);
+    // values whose bitmap changed since the last publish
+    private final Map<Attribute, Set<String>> dirty = new EnumMap<>(Attribute.class);
+
+    public BitmapIndexStore() {
+        for (Attribute attribute : Attribute.values()) {
+            bitmaps.put(attribute, new HashMap<>());
+            published.put(attribute, new ConcurrentHashMap<>());
+            dirty.put(attribute, new HashSet<>());
+        }
+    }
+
+    public static String normalize(Attribute attribute, String value) {
+        return attribute == Attribute.COLOR || attribute == Attribute.BRAND ? BrandIndex.normalize(value) : value;
+    }
+
+    // the positions must be added in increasing order
+    public void add(Cap cap, int position) {
+        add(Attribute.STYLE, cap.getStyle().name(), position);
+        add(Attribute.SIZE, cap.getSize().name(), position);
+        if (cap.getGender() != null) {
+            add(Attribute.GENDER, cap.getGender().name(), position);
+        }
+        add(Attribute.COLOR, normalize(Attribute.COLOR, cap.getColor()), position);
+        add(Attribute.BRAND, normalize(Attribute.BRAND, cap.getBrand()), position);
+    }
+
+    private void add(Attribute attribute, String value, int position) {
+        bitmaps.get(attribute).computeIfAbsent(value, key -> new RoaringBitmap()).add(position);
+        dirty.get(attribute).add(value);
+    }
+
+    /***
+     * Makes the positions added since the last call visible to the readers, only the changed bitmaps are copied
+     */
+    public void publish() {
+        dirty.forEach((attribute, values) -> {
+            var current = bitmaps.get(attribute);
+            var snapshots = published.get(attribute);
+            values.forEach(value -> snapshots.put(value, current.get(value).snapshot()));
+            values.clear();
+        });
+    }
+
+    // read only positions of the caps with the normalized value, they can include positions of unpublished rows
+    public RoaringBitmap positions(Attribute attribute, String value) {
+        return published.get(attribute).getOrDefault(value, EMPTY);
+    }
+}
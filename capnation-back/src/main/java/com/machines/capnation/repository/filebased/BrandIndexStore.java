@@ -0,0 +1,238 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.exceptions.CapDatabaseException;
+import com.machines.capnation.collection.LongList;
+import com.machines.capnation.formatter.BrandIndexBinaryFormatter;
+import com.machines.capnation.formatter.BrandIndexFormatter;
+import com.machines.capnation.metrics.CapMetrics;
+import com.machines.capnation.model.index.BrandIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * Brand index of the repository: a hash map from the normalized brand to its posting list.
+ * The file (brandIndex.txt) is a log of delta lines in the BrandIndexFormatter format (brand,id,id...),
+ * a brand can appear in many lines and its ids are the concatenation of them. flush() only appends the
+ * ids added since the last flush, and the file is compacted to one line per brand when the delta lines
+ * outnumber the brands.
+ * With the BINARY format the compaction writes the binary file (see BrandIndexBinaryFormatter) and empties the
+ * text file, which only keeps the delta lines added after the last compaction. A text file of a previous TEXT
+ * deployment is migrated at the first load.
+ * The store is modified by a single writer. The readers use postings(), which returns read only snapshots of the
+ * posting lists (see LongList.snapshot) that are published after every add.
+ */
+public class BrandIndexStore {
+    private static final Logger log = LoggerFactory.getLogger(BrandIndexStore.class);
+    private static final BrandIndexFormatter BRAND_INDEX_FORMATTER = new BrandIndexFormatter();
+    private static final BrandIndexBinaryFormatter BRAND_INDEX_BINARY_FORMATTER = new BrandIndexBinaryFormatter();
+    private static final int MIN_LINES_TO_COMPACT = 64;
+
+    public enum Format {
+        TEXT, // brandIndex.file only
+        BINARY // brandIndexBinary.file plus the delta lines of brandIndex.file
+    }
+
+    private final Path file;
+    private final Path binaryFile;
+    private final Map<String, BrandIndex> brands = new HashMap<>();
+    // ids added since the last flush grouped by brand, in insertion order
+    private final Map<String, BrandIndex> pending = new LinkedHashMap<>();
+    // snapshots of the posting lists for the readers
+    private final Map<String, LongList> published = new ConcurrentHashMap<>();
+    private int lines;
+    private long totalCaps;
+
+    public BrandIndexStore(Path file) {
+        this(file, null);
+    }
+
+    // binaryFile is null for the TEXT format
+    public BrandIndexStore(Path file, Path binaryFile) {
+        this.file = file;
+        this.binaryFile = binaryFile;
+    }
+
+    public void load() {
+        // number of ids of every brand that come from the binary file
+        var binaryCounts = new HashMap<String, Integer>();
+        // the ids of the binary file sorted, built for the brands with delta lines
+        var binaryIds = new HashMap<String, long[]>();
+        if (binaryFile != null && size(binaryFile) > 0) {
+            try {
+                var buffer = ByteBuffer.wrap(Files.readAllBytes(binaryFile));
+                CapMetrics.bytesRead(binaryFile, buffer.capacity());
+                for (BrandIndex brandIndex : BRAND_INDEX_BINARY_FORMATTER.binaryToBrandIndexes(buffer)) {
+                    brands.put(brandIndex.getBrand(), brandIndex);
+                    binaryCounts.put(brandIndex.getBrand(), brandIndex.getCaps().size());
+                    totalCaps += brandIndex.getCaps().size();
+                }
+            } catch (IOException e) {
+                throw new CapDatabaseException(e.getMessage());
+            }
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                var delta = BRAND_INDEX_FORMATTER.textToBrandIndex(line);
+                var brandIndex = brands.get(delta.getBrand());
+                if (brandIndex == null) {
+                    brands.put(delta.getBrand(), delta);
+                    totalCaps += delta.getCaps().size();
+                } else {
+                    // a compaction interrupted before emptying the text file leaves ids that are in the binary file too
+                    var sorted = binaryIds.computeIfAbsent(delta.getBrand(), brand -> {
+                        var ids = Arrays.copyOf(brandIndex.getCaps().toArray(), binaryCounts.getOrDefault(brand, 0));
+                        Arrays.sort(ids);
+                        return ids;
+                    });
+                    delta.getCaps().forEach(id -> {
+                        if (Arrays.binarySearch(sorted, id) < 0) {
+                            brandIndex.appendCap(id);
+                            totalCaps++;
+                        }
+                    });
+                }
+                lines++;
+            }
+            CapMetrics.bytesRead(file, size(file));
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+
+        if (binaryFile != null && lines > 0 && binaryCounts.isEmpty()) {
+            log.info("Migrating the brand index with {} brands to the binary format", brands.size());
+            compact();
+        }
+        brands.forEach((brand, brandIndex) -> published.put(brand, brandIndex.getCaps().snapshot()));
+    }
+
+    /***
+     * Loads the posting lists of a snapshot (normalized brand -> ids) instead of the files, which are only
+     * appended by flush()
+     */
+    public void restore(Map<String, LongList> postings) {
+        clear();
+        postings.forEach((brand, ids) -> {
+            brands.put(brand, new BrandIndex.BrandIndexBuilder().setBrand(brand).setCaps(ids).build());
+            published.put(brand, ids.snapshot());
+            totalCaps += ids.size();
+        });
+        lines = brands.size();
+    }
+
+    // read only posting lists of every brand, see postings
+    public Map<String, LongList> publishedPostings() {
+        return new HashMap<>(published);
+    }
+
+    // returns the posting list of the brand (whatever its case) or null if there isn't any cap of the brand
+    public BrandIndex get(String brand) {
+        return brands.get(BrandIndex.normalize(brand));
+    }
+
+    // ids of the brand (whatever its case) that any thread can read, or null if there isn't any cap of the brand
+    public LongList postings(String brand) {
+        return published.get(BrandIndex.normalize(brand));
+    }
+
+    public void add(String brand, long id) {
+        var key = BrandIndex.normalize(brand);
+        var brandIndex = brands.computeIfAbsent(key, this::newBrandIndex);
+        brandIndex.appendCap(id);
+        pending.computeIfAbsent(key, this::newBrandIndex).appendCap(id);
+        published.put(key, brandIndex.getCaps().snapshot());
+        totalCaps++;
+    }
+
+    private BrandIndex newBrandIndex(String brand) {
+        return new BrandIndex.BrandIndexBuilder()
+                .setBrand(brand)
+                .build();
+    }
+
+    public Collection<BrandIndex> values() {
+        return brands.values();
+    }
+
+    public int size() {
+        return brands.size();
+    }
+
+    // number of ids in all the posting lists, it must be the same as the number of rows of the heap
+    public long totalCaps() {
+        return totalCaps;
+    }
+
+    public void clear() {
+        brands.clear();
+        pending.clear();
+        published.clear();
+        totalCaps = 0;
+    }
+
+    /***
+     * Appends one delta line per brand with new ids, or compacts the file when it has too many delta lines
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (lines + pending.size() > Math.max(MIN_LINES_TO_COMPACT, brands.size() * 2)) {
+            compact();
+            return;
+        }
+        var text = new StringBuilder();
+        pending.values().forEach(delta -> BRAND_INDEX_FORMATTER.appendBrandIndex(delta, text.append('\n')));
+        FileChannels.write(file, text.toString(), true);
+        lines += pending.size();
+        pending.clear();
+    }
+
+    // overwrite the file with one line per brand, or write the binary file and empty the text file
+    public void compact() {
+        if (binaryFile != null) {
+            var temporary = binaryFile.resolveSibling(binaryFile.getFileName() + ".tmp");
+            FileChannels.write(temporary, BRAND_INDEX_BINARY_FORMATTER.brandIndexesToBinary(brands.values()), false);
+            try {
+                Files.move(temporary, binaryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new CapDatabaseException(e.getMessage());
+            }
+            FileChannels.write(file, "", false);
+            lines = 0;
+            pending.clear();
+            return;
+        }
+        var text = new StringBuilder();
+        brands.values().forEach(brandIndex -> BRAND_INDEX_FORMATTER.appendBrandIndex(brandIndex, text).append('\n'));
+        FileChannels.write(file, text.toString(), false);
+        lines = brands.size();
+        pending.clear();
+    }
+
+    private static long size(Path path) {
+        try {
+            return Files.exists(path) ? Files.size(path) : 0;
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+    }
+}
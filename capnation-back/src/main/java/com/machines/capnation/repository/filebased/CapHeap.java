@@ -0,0 +1,30 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.model.Cap;
+
+import java.io.Closeable;
+
+/***
+ * The heap is the file where the rows of the caps are stored, in insertion order.
+ * A row is addressed by its position, that's the direction of the Index of the cap.
+ * The appended caps are visible immediately but they are written to the file only by flush().
+ * There is a single writer: append, flush and size are called by one thread at a time, while get can be called
+ * by any thread for the positions the writer has published (see CatalogSnapshot), even during a flush.
+ */
+public interface CapHeap extends Closeable {
+    enum Format {
+        TEXT, // caps.file, see TextCapHeap
+        BINARY // capsBinary.file, see BinaryCapHeap
+    }
+
+    int size(); // number of rows, including the ones not flushed yet, for the writer
+
+    Cap get(int position); // decodes the row in the given position
+
+    int append(Cap cap); // adds a row and returns its position
+
+    void flush(); // writes the pending rows to the file and forces it to disk
+
+    @Override
+    void close();
+}
@@ -0,0 +1,78 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.exceptions.CapDatabaseException;
+import com.machines.capnation.model.Cap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/***
+ * Converts a text heap (caps.txt) to the binary heap format.
+ * The rows keep their positions, so the cap index and the brand index are still valid after the migration.
+ * The binary file is written to a temporary file and moved at the end, the text file is kept renamed as
+ * <name>.migrated so an interrupted migration can be run again.
+ * The migration is one-way: the saves after it only go to the binary heap, so the TEXT format refuses to start
+ * over a migrated text heap (see checkNotMigrated) instead of starting with an empty catalog.
+ */
+public final class CapHeapMigration {
+    private static final Logger log = LoggerFactory.getLogger(CapHeapMigration.class);
+    static final String MIGRATED_SUFFIX = ".migrated";
+
+    private CapHeapMigration() {
+    }
+
+    // true when the binary heap was never initialized and the text heap has rows
+    public static boolean isPending(Path text, Path binary) {
+        try {
+            return (!Files.exists(binary) || Files.size(binary) == 0)
+                    && Files.exists(text) && Files.size(text) > 0;
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+    }
+
+    // fails when the rows of the text heap were migrated to the binary heap, the text heap is empty after it
+    public static void checkNotMigrated(Path text, Path binary) {
+        var migrated = text.resolveSibling(text.getFileName() + MIGRATED_SUFFIX);
+        if (Files.exists(migrated)) {
+            throw new CapDatabaseException(String.format(
+                    "The heap %s was migrated to the binary heap %s, start with caps.format=BINARY. The migration is one-way,"
+                            + " %s only has the rows before it", text, binary, migrated));
+        }
+    }
+
+    public static int textToBinary(Path text, Path binary) {
+        var caps = ParallelCapLoader.load(text);
+        long length = BinaryCapHeap.FILE_HEADER_SIZE;
+        for (Cap cap : caps) {
+            length += BinaryCapHeap.recordLength(cap);
+        }
+        // the binary heap is mapped in one buffer, see BinaryCapHeap, so the text heap stays as it is
+        if (length > Integer.MAX_VALUE) {
+            throw new CapDatabaseException(String.format(
+                    "The binary heap can't be bigger than 2GB, the %d caps of %s need %d bytes", caps.size(), text, length));
+        }
+        var buffer = ByteBuffer.allocate((int) length);
+        BinaryCapHeap.writeFileHeader(buffer);
+        caps.forEach(cap -> BinaryCapHeap.encode(cap, buffer));
+        buffer.flip();
+
+        var temporary = binary.resolveSibling(binary.getFileName() + ".tmp");
+        FileChannels.write(temporary, buffer, false);
+        try {
+            Files.move(temporary, binary, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(text, text.resolveSibling(text.getFileName() + MIGRATED_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+            // an empty text heap keeps the file validations happy
+            Files.createFile(text);
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+        log.info("Migrated {} caps from {} to the binary heap {}", caps.size(), text, binary);
+        return caps.size();
+    }
+}
@@ -1,31 +1,70 @@
 package com.machines.capnation.repository.filebased;
 
+import com.machines.capnation.collection.LongBloomFilter;
+import com.machines.capnation.collection.LongIntHashMap;
+import com.machines.capnation.collection.LongList;
+import com.machines.capnation.collection.RoaringBitmap;
 import com.machines.capnation.exceptions.CapDatabaseException;
-import com.machines.capnation.formatter.BrandIndexFormatter;
+import com.machines.capnation.exceptions.CapException;
+import com.machines.capnation.exceptions.CapNotReadyException;
+import com.machines.capnation.exceptions.DuplicateCapException;
+import com.machines.capnation.exceptions.DuplicateIdCapException;
+import com.machines.capnation.exceptions.InvalidParametersCapException;
 import com.machines.capnation.formatter.CapFormatter;
+import com.machines.capnation.metrics.CapMetrics;
 import com.machines.capnation.model.Cap;
-import com.machines.capnation.model.Index;
+import com.machines.capnation.model.CapSearch;
+import com.machines.capnation.model.CapSearchResult;
+import com.machines.capnation.model.CapStats;
+import com.machines.capnation.model.IdFilterStats;
+import com.machines.capnation.model.Readiness;
+import com.machines.capnation.model.SaveQueueStats;
+import com.machines.capnation.model.Suggestion;
 import com.machines.capnation.model.index.BrandIndex;
 import com.machines.capnation.repository.CapRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Repository;
 
-import java.io.BufferedReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 
 /***
  * this class will be in charge of manage the file based database
+ * The saves are queued for a single writer thread (see CapWriter), which takes them in batches: every batch is
+ * appended to the write-ahead log (capWal.file) with one write and applied in memory, the heap and the index
+ * files are updated in background by the checkpoint, which copies the pending caps in one write per file.
+ * The saves and the checkpoint are serialized by the lock of the repository, the reads don't take it: they
+ * work on the CatalogSnapshot published by the last save.
+ * At startup the heap and the indexes are loaded in parallel by a background thread (see start), which then warms
+ * up the read paths; the requests that arrive before it finishes wait for it and readiness() reports its progress.
  * constrains:
  *  - There is no two rows with the same ID
  *  - There is no two rows with similar characteristics (different id but the same in the another parameters)
@@ -33,171 +72,1084 @@ import java.util.stream.Collectors;
 @Repository
 public class CapRepositoryFileBasedImpl implements CapRepository {
     private static final CapFormatter CAP_FORMATTER = new CapFormatter();
-    private static final BrandIndexFormatter BRAND_INDEX_FORMATTER = new BrandIndexFormatter();
     private static final Logger log = LoggerFactory.getLogger(CapRepositoryFileBasedImpl.class);
+    private static final int SCAN_PAGE_SIZE = 256;
 
     @Value("file:${caps.file}")
     private Resource heap;
 
+    @Value("file:${capsBinary.file}")
+    private Resource binaryHeap;
+
+    @Value("${caps.format:TEXT}")
+    private CapHeap.Format heapFormat;
+
+    @Value("${caps.storage:OBJECTS}")
+    private TextCapHeap.Storage heapStorage;
+
     @Value("file:${capIndex.file}")
     private Resource index;
 
+    @Value("file:${capIndexTree.file}")
+    private Resource indexTree;
+
+    @Value("${capIndex.type:HASH}")
+    private PrimaryIndex.Type indexType;
+
+    @Value("${capIndexTree.cachePages:1024}")
+    private int indexTreeCachePages;
+
     @Value("file:${brandIndex.file}")
     private Resource brandIndexFile;
 
-    private List<Cap> capList = new ArrayList<>();
-    private List<BrandIndex> brandList = new ArrayList<>();
+    @Value("file:${brandIndexBinary.file}")
+    private Resource brandIndexBinaryFile;
+
+    @Value("${brandIndex.format:TEXT}")
+    private BrandIndexStore.Format brandIndexFormat;
+
+    @Value("file:${capWal.file}")
+    private Resource walFile;
+
+    @Value("${capWal.durability:SYNC}")
+    private CapWriteAheadLog.Durability walDurability;
+
+    @Value("${capWal.syncBatchSize:64}")
+    private int walSyncBatchSize;
+
+    @Value("${capWal.syncIntervalMillis:5}")
+    private long walSyncIntervalMillis;
+
+    @Value("${capWal.checkpointIntervalMillis:1000}")
+    private long checkpointIntervalMillis;
+
+    @Value("${capWriter.queueCapacity:4096}")
+    private int writerQueueCapacity;
+
+    @Value("${capWriter.maxBatchSize:256}")
+    private int writerMaxBatchSize;
+
+    @Value("${capRepository.eagerLoad:true}")
+    private boolean eagerLoad;
+
+    @Value("${capRepository.readyTimeoutMillis:10000}")
+    private long readyTimeoutMillis;
+
+    @Value("${capRepository.warmUpIterations:20000}")
+    private int warmUpIterations;
+
+    @Value("${capIdFilter.falsePositiveRate:0.01}")
+    private double idFilterFalsePositiveRate;
+
+    @Value("file:${capSnapshot.file}")
+    private Resource snapshotFile;
+
+    @Value("${capSnapshot.intervalMillis:0}")
+    private long snapshotIntervalMillis;
+
+    private CapHeap capHeap;
+    private BrandIndexStore brandIndexes;
+    // style, size, gender, color and brand -> positions in the heap, rebuilt at load
+    private BitmapIndexStore bitmapIndexes;
+    // price -> positions in the heap, rebuilt at load
+    private PriceIndex priceIndex;
+    // content of the cap -> position in the heap, to reject similar caps, rebuilt at load
+    private ContentHashIndex contentIndex;
+
+    private PrefixIndex prefixIndex;
+
+    private CatalogAggregates aggregates;
+    // ids of the heap, most saved ids are new and the filter answers them without the primary index
+    private LongBloomFilter idFilter;
+    // checks of the id filter, counted under the lock of the repository and read by the metrics without it
+    private final LongAdder idChecks = new LongAdder();
+    private final LongAdder idNegatives = new LongAdder();
+    private final LongAdder idFalsePositives = new LongAdder();
+
+    // primary index: id of the cap -> position of the cap in the heap
+    private PrimaryIndex primaryIndex;
+
+    // caps saved in the write-ahead log that are not in the heap file yet
+    private final List<Cap> pendingCaps = new ArrayList<>();
+
+    private CapWriteAheadLog wal;
+    // reused to format the records of the write-ahead log, guarded by the lock of the repository
+    private final StringBuilder recordBuffer = new StringBuilder(256);
+    private CapWriter writer;
+    private ScheduledExecutorService checkpointer;
+    // serializes the snapshots, it's taken before the lock of the repository
+    private final Object snapshotLock = new Object();
+    // rows of the last snapshot written or read, guarded by snapshotLock
+    private int snapshotRowCount = -1;
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+    private volatile boolean loaded;
+    private boolean closing;
+
+    // completes when the eager load of start() finishes, null when the repository is loaded on demand
+    private volatile CompletableFuture<Void> startup;
+    private volatile Readiness.State state = Readiness.State.ON_DEMAND;
+    private volatile int progressPercent;
+    private volatile int loadedRows;
+    private volatile long startedAt;
+    private volatile long elapsedMillis;
+    private volatile String loadError;
 
+    // the sizes of the indexes at the last publish, read by the gauges without the lock
+    private volatile int indexedIds;
+    private volatile int indexedBrands;
+    private volatile long idFilterBytes;
+    private volatile long contentIndexBytes;
+
+    private final Timer findByIdTimer = CapMetrics.operation("findById");
+    private final Timer findByBrandTimer = CapMetrics.operation("findByBrand");
+    private final Timer findPageTimer = CapMetrics.operation("findPage");
+    private final Timer searchTimer = CapMetrics.operation("search");
+    private final Timer findByPriceTimer = CapMetrics.operation("findByPrice");
+    private final Timer suggestTimer = CapMetrics.operation("suggest");
+    private final Timer statsTimer = CapMetrics.operation("stats");
+    private final Timer saveAllTimer = CapMetrics.operation("saveAll");
+    private final Timer writeBatchTimer = CapMetrics.operation("writeBatch");
+    private final Timer checkpointTimer = CapMetrics.operation("checkpoint");
+    private final Timer snapshotTimer = CapMetrics.operation("snapshot");
+    private final Timer loadTimer = CapMetrics.operation("load");
+    private final Counter lookupHits = CapMetrics.lookup("primary", "hit");
+    private final Counter lookupMisses = CapMetrics.lookup("primary", "miss");
+    private final Counter lookupStale = CapMetrics.lookup("primary", "stale");
+
+    /***
+     * Loads the repository in the background thread cap-loader when the application starts, so the first requests
+     * don't pay for it. After loading, the formatter and the indexes are warmed up with warmUpIterations reads.
+     */
+    @PostConstruct
+    public void start() {
+        if (!eagerLoad) {
+            return;
+        }
+        var loading = new CompletableFuture<Void>();
+        startedAt = System.nanoTime();
+        state = Readiness.State.LOADING;
+        startup = loading;
+        var thread = new Thread(() -> {
+            try {
+                load();
+                if (warmUpIterations > 0) {
+                    state = Readiness.State.WARMING_UP;
+                    warmUp();
+                }
+                progressPercent = 100;
+                elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+                state = Readiness.State.READY;
+                log.info("The repository is ready with {} caps after {} ms", snapshot.rowCount(), elapsedMillis);
+                loading.complete(null);
+            } catch (RuntimeException e) {
+                log.error("The repository failed to load", e);
+                loadError = e.getMessage();
+                elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+                state = Readiness.State.FAILED;
+                loading.completeExceptionally(e);
+            }
+        }, "cap-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /***
+     * Makes sure the repository is loaded: it waits for the load of start() up to readyTimeoutMillis, or it loads
+     * the repository in the calling thread when the eager load is disabled (or the repository was closed)
+     */
     private void initialize() {
-        if (capList.isEmpty()) {
-            capList = readLinesCap(heap);
+        var loading = startup;
+        if (loaded && (loading == null || loading.isDone())) {
+            return;
+        }
+        if (loading != null) {
+            try {
+                loading.get(readyTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new CapNotReadyException(String.format("The repository is still loading (%d%%)", progressPercent));
+            } catch (ExecutionException e) {
+                throw new CapDatabaseException("The repository failed to load: " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CapNotReadyException("Interrupted while waiting for the repository to load");
+            }
+        }
+        if (!loaded) {
+            load();
+        }
+    }
+
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        long start = System.nanoTime();
+        var restored = readSnapshot();
+        if (restored != null) {
+            restore(restored);
+        } else {
+            loadFiles();
+        }
+
+        // a crash in the middle of a checkpoint can leave the index files behind the heap
+        if (primaryIndex.size() != capHeap.size()) {
+            log.warn("The cap index has {} entries but the heap has {} caps, rebuilding it", primaryIndex.size(), capHeap.size());
+            rebuildPrimaryIndex();
+        }
+        if (brandIndexes.totalCaps() != capHeap.size()) {
+            log.warn("The brand index doesn't cover the heap, rebuilding it");
+            rebuildBrandIndex();
+        }
+        buildMemoryIndexes();
+
+        wal = new CapWriteAheadLog(path(walFile), walDurability, walSyncBatchSize, walSyncIntervalMillis);
+        int replayed = 0;
+        for (String record : wal.readRecords()) {
+            var cap = CAP_FORMATTER.TextToCap(record);
+            if (!containsId(cap.getId())) {
+                apply(cap);
+                replayed++;
+            }
+        }
+        if (replayed > 0) {
+            log.info("Replayed {} caps from the write-ahead log", replayed);
+        }
+        loadedRows = capHeap.size();
+        progressPercent = 80;
+
+        publish();
+
+        writer = new CapWriter(writerQueueCapacity, writerMaxBatchSize, this::writeBatch);
+        checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "cap-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpointQuietly, checkpointIntervalMillis, checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+        if (snapshotIntervalMillis > 0) {
+            // the first one soon after a load from the files, so the next restart can use it
+            checkpointer.scheduleWithFixedDelay(this::writeSnapshotQuietly, checkpointIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        registerGauges();
+        loaded = true;
+        CapMetrics.record(loadTimer, start);
+    }
+
+    // registering twice returns the meters of the first time, so a reload after close doesn't add them again
+    private void registerGauges() {
+        CapMetrics.gauge("capnation.catalog.rows", "Caps visible to the readers", this, repository -> repository.snapshot.rowCount());
+        CapMetrics.gauge("capnation.catalog.version", "Version of the catalog, it changes with every save", this,
+                repository -> repository.snapshot.version());
+        CapMetrics.gauge("capnation.index.entries", "Entries of the indexes", this, repository -> repository.indexedIds,
+                "index", "primary");
+        CapMetrics.gauge("capnation.index.entries", "Entries of the indexes", this, repository -> repository.indexedBrands,
+                "index", "brand");
+        CapMetrics.gauge("capnation.index.memory", "Bytes of the indexes kept in memory", this,
+                repository -> repository.idFilterBytes, "index", "idFilter");
+        CapMetrics.gauge("capnation.index.memory", "Bytes of the indexes kept in memory", this,
+                repository -> repository.contentIndexBytes, "index", "content");
+        // the counts of the id filter are added by containsId, the counters read them at every scrape
+        CapMetrics.counter("capnation.idFilter.checks", "Ids checked in the filter before the primary index",
+                idChecks, LongAdder::sum, "outcome", "any");
+        CapMetrics.counter("capnation.idFilter.checks", "Ids checked in the filter before the primary index",
+                idNegatives, LongAdder::sum, "outcome", "negative");
+        CapMetrics.counter("capnation.idFilter.checks", "Ids checked in the filter before the primary index",
+                idFalsePositives, LongAdder::sum, "outcome", "falsePositive");
+    }
+
+    private void loadFiles() {
+        // the heap, the brand index and the primary index don't depend on each other
+        ExecutorService loaders = Executors.newFixedThreadPool(3, runnable -> {
+            var thread = new Thread(runnable, "cap-loader-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            var heapLoading = CompletableFuture.supplyAsync(this::openHeap, loaders);
+            var brandIndexLoading = CompletableFuture.supplyAsync(this::openBrandIndexes, loaders);
+            var primaryIndexLoading = CompletableFuture.supplyAsync(this::openPrimaryIndex, loaders);
+            capHeap = join(heapLoading);
+            loadedRows = capHeap.size();
+            progressPercent = 40;
+            brandIndexes = join(brandIndexLoading);
+            primaryIndex = join(primaryIndexLoading);
+            progressPercent = 60;
+        } finally {
+            loaders.shutdown();
+        }
+    }
+
+    private CatalogSnapshotFile.Contents readSnapshot() {
+        if (snapshotIntervalMillis <= 0 || !Files.exists(path(snapshotFile))) {
+            return null;
+        }
+        var restored = CatalogSnapshotFile.read(path(snapshotFile), heapFormat, heapPath());
+        synchronized (snapshotLock) {
+            snapshotRowCount = restored != null ? restored.rowCount() : -1;
+        }
+        return restored;
+    }
+
+    /***
+     * Loads the rows and the indexes of the snapshot, and then the rows appended to the heap after it: they are
+     * added to the indexes in memory, their entries are already in the index files
+     */
+    private void restore(CatalogSnapshotFile.Contents restored) {
+        // the lazy heap only finds the lines, it doesn't need the caps of the snapshot
+        capHeap = heapFormat == CapHeap.Format.TEXT && heapStorage != TextCapHeap.Storage.LAZY
+                ? new TextCapHeap(path(heap), heapStorage, restored.caps(), restored.heapLength())
+                : openHeap();
+        loadedRows = capHeap.size();
+        progressPercent = 40;
+        var ids = restored.ids();
+        var brands = restored.brands();
+        for (int position = restored.rowCount(); position < capHeap.size(); position++) {
+            var cap = capHeap.get(position);
+            ids.add(cap.getId());
+            brands.computeIfAbsent(BrandIndex.normalize(cap.getBrand()), brand -> new LongList()).add(cap.getId());
         }
-        if (brandList.isEmpty()) {
-            brandList = readLinesBrandIndex(brandIndexFile);
+        brandIndexes = new BrandIndexStore(path(brandIndexFile),
+                brandIndexFormat == BrandIndexStore.Format.BINARY ? path(brandIndexBinaryFile) : null);
+        brandIndexes.restore(brands);
+        primaryIndex = indexType == PrimaryIndex.Type.BTREE ? openPrimaryIndex() : new HashPrimaryIndex(path(index), ids);
+        progressPercent = 60;
+        log.info("Restored {} caps from the snapshot and {} appended to the heap after it", restored.rowCount(),
+                capHeap.size() - restored.rowCount());
+    }
+
+    private Path heapPath() {
+        return heapFormat == CapHeap.Format.BINARY ? path(binaryHeap) : path(heap);
+    }
+
+    private CapHeap openHeap() {
+        if (heapFormat == CapHeap.Format.BINARY) {
+            if (CapHeapMigration.isPending(path(heap), path(binaryHeap))) {
+                CapHeapMigration.textToBinary(path(heap), path(binaryHeap));
+            }
+            return new BinaryCapHeap(path(binaryHeap));
+        }
+        CapHeapMigration.checkNotMigrated(path(heap), path(binaryHeap));
+        return heapStorage == TextCapHeap.Storage.LAZY
+                ? new LazyTextCapHeap(path(heap))
+                : new TextCapHeap(path(heap), heapStorage);
+    }
+
+    private BrandIndexStore openBrandIndexes() {
+        var store = new BrandIndexStore(path(brandIndexFile),
+                brandIndexFormat == BrandIndexStore.Format.BINARY ? path(brandIndexBinaryFile) : null);
+        store.load();
+        return store;
+    }
+
+    private PrimaryIndex openPrimaryIndex() {
+        return indexType == PrimaryIndex.Type.BTREE
+                ? new BPlusTreePrimaryIndex(path(indexTree), indexTreeCachePages)
+                : new HashPrimaryIndex(path(index));
+    }
+
+    private static <T> T join(CompletableFuture<T> loading) {
+        try {
+            return loading.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /***
+     * Runs the read paths (formatter, primary index, brand postings and index scans) over the loaded rows so the
+     * JIT compiles them before the first requests
+     */
+    private void warmUp() {
+        var current = snapshot;
+        int rows = current.rowCount();
+        if (rows == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int i = 0; i < warmUpIterations; i++) {
+            var cap = capHeap.get(i % rows);
+            checksum += CAP_FORMATTER.TextToCap(CAP_FORMATTER.capToText(cap)).getId();
+            checksum += find(current, cap.getId()) != null ? 1 : 0;
+            if ((i & 63) == 0) {
+                var postings = brandIndexes.postings(cap.getBrand());
+                checksum += postings != null ? postings.size() : 0;
+                checksum += scanPositions(current, cap.getId() - 1, SCAN_PAGE_SIZE).length;
+                progressPercent = 80 + (int) (20L * i / warmUpIterations);
+            }
         }
+        log.info("Warmed up the reads with {} iterations in {} ms (checksum {})",
+                warmUpIterations, (System.nanoTime() - start) / 1_000_000, checksum);
     }
 
     @Override
-    public List<Cap> findAll() {
+    public Readiness readiness() {
+        var current = state;
+        boolean inProgress = current == Readiness.State.LOADING || current == Readiness.State.WARMING_UP;
+        return new Readiness(current,
+                current == Readiness.State.ON_DEMAND && loaded ? 100 : progressPercent,
+                loaded ? snapshot.rowCount() : loadedRows,
+                inProgress ? (System.nanoTime() - startedAt) / 1_000_000 : elapsedMillis,
+                loadError);
+    }
+
+    // every save publishes a new snapshot, so its version is the one of the catalog
+    @Override
+    public long catalogVersion() {
         initialize();
-        return capList;
+        return snapshot.version();
     }
 
+    @Override
+    public List<Cap> findAll() {
+        initialize();
+        // read only view of the rows stored at the moment of the call, they are decoded while iterating
+        int size = snapshot.rowCount();
+        return new AbstractList<>() {
+            @Override
+            public Cap get(int index) {
+                return capHeap.get(index);
+            }
 
-    private boolean existBrand(String brand) {
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
 
-        for (BrandIndex index : brandList) {
-            if (index.getBrand().equals(brand.toLowerCase())) {
-                return true;
+    @Override
+    public List<Cap> findPage(long afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            initialize();
+            var current = snapshot;
+            var positions = scanPositions(current, afterId, limit);
+            var caps = new ArrayList<Cap>(positions.length);
+            for (int position : positions) {
+                caps.add(capHeap.get(position));
             }
+            return caps;
+        } finally {
+            CapMetrics.record(findPageTimer, start);
         }
-        return false;
+    }
+
+    /***
+     * Visits the caps of one snapshot in id order, they are read in pages of SCAN_PAGE_SIZE caps from the index
+     * so the memory doesn't depend on the size of the catalog
+     */
+    @Override
+    public void forEachCap(Consumer<Cap> action) {
+        initialize();
+        var current = snapshot;
+        long afterId = 0;
+        int[] positions;
+        do {
+            positions = scanPositions(current, afterId, SCAN_PAGE_SIZE);
+            for (int position : positions) {
+                var cap = capHeap.get(position);
+                action.accept(cap);
+                afterId = cap.getId();
+            }
+        } while (positions.length == SCAN_PAGE_SIZE);
+    }
+
+    // positions in the heap of the first limit caps with an id greater than afterId, in id order
+    private int[] scanPositions(CatalogSnapshot snapshot, long afterId, int limit) {
+        var positions = new int[limit];
+        var count = new int[1];
+        // the rows are read after the scan, so the index isn't held while decoding them
+        primaryIndex.scan(afterId, snapshot.rowCount(), (id, position) -> {
+            positions[count[0]++] = position;
+            return count[0] < limit;
+        });
+        return Arrays.copyOf(positions, count[0]);
     }
 
     @Override
     public Cap save(Cap cap) {
+        try {
+            return saveAsync(cap).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Cap> saveAsync(Cap cap) {
         if (cap.getId() <= 0)
-            throw new RuntimeException("The ID you've given is invalid");
+            throw new InvalidParametersCapException("The ID you've given is invalid");
 
         initialize();
-        var exist = readLinesIndex(index).stream().anyMatch(idx -> idx.getKey() == cap.getId());
-        if (!exist) {
-            var index = new Index(cap.getId(), capList.size());
-            boolean existBrand = this.existBrand(cap.getBrand());
-            if (!existBrand) {
-                var brandIndex = new BrandIndex.BrandIndexBuilder()
-                        .setBrand(cap.getBrand())
-                        .build();
-                brandIndex.appendCap(cap.getId());
-
-                brandList.add(brandIndex);
-                appendLine(BRAND_INDEX_FORMATTER.brandIndexToText(brandIndex), brandIndexFile);
-            } else {
-                // add the new id to the respective brand index
-                brandList.stream()
-                        .filter(p -> p.getBrand().equals(cap.getBrand().toLowerCase()))
-                        .findFirst()
-                        .orElseThrow()
-                        .appendCap(cap.getId());
-
-                // overwrite the file of the brand index
-                var lines = new StringBuilder();
-                brandList.forEach(p -> {
-                    lines.append(BRAND_INDEX_FORMATTER.brandIndexToText(p));
-                    lines.append('\n');
-                });
-                overwrite(brandIndexFile, lines.toString());
+        return writer.submit(cap);
+    }
+
+    /***
+     * Bulk load: the caps are sorted by id, validated against the store and against each other (the first cap of
+     * a repeated id wins), appended to the write-ahead log with one write and applied to the indexes in id order.
+     * Then a checkpoint writes all of them to the heap with a single append.
+     */
+    @Override
+    public List<CapException> saveAll(List<Cap> caps) {
+        long start = System.nanoTime();
+        try {
+            initialize();
+            var rejections = new ArrayList<CapException>(Collections.nCopies(caps.size(), null));
+            var order = new ArrayList<Integer>(caps.size());
+            for (int i = 0; i < caps.size(); i++) {
+                if (caps.get(i) == null) {
+                    rejections.set(i, new InvalidParametersCapException("The cap can not be void"));
+                } else {
+                    order.add(i);
+                }
             }
-            capList.add(cap);
-            addIndex(index);
-            appendLine(CAP_FORMATTER.capToText(cap), this.heap);
-            return cap;
+            order.sort(Comparator.comparingLong(i -> caps.get(i).getId()));
+
+            synchronized (this) {
+                var accepted = new ArrayList<Cap>(caps.size());
+                var acceptedContents = new ContentHashIndex(accepted::get, caps.size());
+                var records = new ArrayList<String>(caps.size());
+                long previousId = 0;
+                for (int position : order) {
+                    var cap = caps.get(position);
+                    long id = cap.getId();
+                    Cap similar;
+                    String missing;
+                    if (id <= 0) {
+                        rejections.set(position, new InvalidParametersCapException("The ID you've given is invalid"));
+                    } else if ((missing = missingField(cap)) != null) {
+                        rejections.set(position, new InvalidParametersCapException(missing));
+                        continue; // a valid cap with the same id can still be saved
+                    } else if (id == previousId) {
+                        rejections.set(position, new DuplicateIdCapException(String.format("the id %d is repeated in the batch", id)));
+                    } else if (containsId(id)) {
+                        rejections.set(position, new DuplicateIdCapException(String.format("there is another cap with index %d", id)));
+                    } else if ((similar = findSimilar(cap, acceptedContents, accepted::get)) != null) {
+                        rejections.set(position, new DuplicateCapException(similarMessage(similar)));
+                    } else {
+                        acceptedContents.add(cap, accepted.size());
+                        accepted.add(cap);
+                        records.add(record(cap));
+                    }
+                    previousId = id;
+                }
+                if (!accepted.isEmpty()) {
+                    wal.appendAll(records);
+                    accepted.forEach(this::apply);
+                    publish();
+                    checkpoint();
+                }
+            }
+            return rejections;
+        } finally {
+            CapMetrics.record(saveAllTimer, start);
         }
-        throw new RuntimeException(String.format("there is another cap with index %d", cap.getId()));
     }
 
     @Override
-    public Cap findById(Long id) {
-        var indexList = readLinesIndex(this.index);
-        var idx = Collections.binarySearch(indexList.stream().map(Index::getKey).toList(), id);
-        if (idx <= -1) throw new RuntimeException(String.format("There is not any cap with id %d", id));
-        var positionInHeap = indexList.get(idx).getDirection();
-
-        return capList.get(positionInHeap);
+    public SaveQueueStats saveQueueStats() {
+        initialize();
+        return writer.stats();
     }
 
     @Override
-    public List<Cap> findByBrand(String brand) {
+    public IdFilterStats idFilterStats() {
         initialize();
+        synchronized (this) {
+            long checks = idChecks.sum();
+            long negatives = idNegatives.sum();
+            long falsePositives = idFalsePositives.sum();
+            long absent = negatives + falsePositives;
+            return new IdFilterStats(idFilter.size(), idFilter.layers(), idFilter.memoryBytes(), idFilterFalsePositiveRate,
+                    checks, negatives, checks - negatives, falsePositives, absent > 0 ? (double) falsePositives / absent : 0);
+        }
+    }
 
-        var exist = existBrand(brand);
-        if (!exist) {
-            throw new RuntimeException(String.format("There is not any cap with brand: %s", brand));
+    // the primary index is only checked when the filter may have the id, it's called with the lock
+    private boolean containsId(long id) {
+        idChecks.increment();
+        if (!idFilter.mightContain(id)) {
+            idNegatives.increment();
+            return false;
         }
-        var capsId = brandList.stream().filter(p -> p.getBrand().equals(brand.toLowerCase()))
-                .findFirst()
-                .orElseThrow()
-                .getCaps();
+        if (primaryIndex.containsKey(id)) {
+            return true;
+        }
+        idFalsePositives.increment();
+        return false;
+    }
 
-        return capsId.stream().map(this::findById).collect(Collectors.toList());
+    /***
+     * Writes a batch of saves, it's called by the writer thread only. The records of the batch are appended to the
+     * write-ahead log with one write and the futures are completed after the fsync of the last one.
+     */
+    private void writeBatch(List<CapWriter.PendingSave> batch) {
+        long start = System.nanoTime();
+        try {
+            var accepted = new ArrayList<CapWriter.PendingSave>(batch.size());
+            long sequence;
+            synchronized (this) {
+                var records = new ArrayList<String>(batch.size());
+                var batchIds = new LongIntHashMap(batch.size());
+                IntFunction<Cap> acceptedCaps = i -> accepted.get(i).cap();
+                var batchContents = new ContentHashIndex(acceptedCaps, batch.size());
+                for (CapWriter.PendingSave save : batch) {
+                    // a cap that can't be written or applied fails alone, it never reaches the log
+                    var missing = missingField(save.cap());
+                    if (missing != null) {
+                        save.future().completeExceptionally(new InvalidParametersCapException(missing));
+                        continue;
+                    }
+                    long id = save.cap().getId();
+                    if (batchIds.containsKey(id) || containsId(id)) {
+                        save.future().completeExceptionally(new DuplicateIdCapException(String.format("there is another cap with index %d", id)));
+                        continue;
+                    }
+                    var similar = findSimilar(save.cap(), batchContents, acceptedCaps);
+                    if (similar != null) {
+                        save.future().completeExceptionally(new DuplicateCapException(similarMessage(similar)));
+                        continue;
+                    }
+                    batchIds.put(id, accepted.size());
+                    batchContents.add(save.cap(), accepted.size());
+                    accepted.add(save);
+                    records.add(record(save.cap()));
+                }
+                if (accepted.isEmpty()) {
+                    return;
+                }
+                sequence = wal.appendAll(records);
+                accepted.forEach(save -> apply(save.cap()));
+                publish();
+            }
+            // wait for the group commit out of the lock, so the checkpoint can run meanwhile
+            wal.awaitDurable(sequence);
+            accepted.forEach(save -> save.future().complete(save.cap()));
+        } finally {
+            CapMetrics.record(writeBatchTimer, start);
+        }
     }
 
-    // read all lines into a resource file.
-    private List<Cap> readLinesCap(Resource resource) {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream()))) {
-            return reader.lines().filter(line -> !line.isBlank()).map(CAP_FORMATTER::TextToCap).collect(Collectors.toList());
-        } catch (IOException e) {
-            throw new CapDatabaseException(e.getMessage());
+    // a cap of the catalog or of the batch being written (resolved with batchCaps) similar to the cap, or null
+    private Cap findSimilar(Cap cap, ContentHashIndex batchContents, IntFunction<Cap> batchCaps) {
+        int position = contentIndex.findSimilar(cap);
+        if (position != ContentHashIndex.NOT_FOUND) {
+            return capHeap.get(position);
         }
+        position = batchContents.findSimilar(cap);
+        return position != ContentHashIndex.NOT_FOUND ? batchCaps.apply(position) : null;
     }
 
-    private List<BrandIndex> readLinesBrandIndex(Resource resource) {
-        try (BufferedReader reader = new BufferedReader((new InputStreamReader(resource.getInputStream())))) {
-            return reader.lines().filter(line -> !line.isBlank()).map(BRAND_INDEX_FORMATTER::textToBrandIndex).collect(Collectors.toList());
-        } catch (IOException e) {
-            throw new RuntimeException(e.getMessage());
+    // the fields that the record and the indexes need, null when the cap has all of them
+    private static String missingField(Cap cap) {
+        if (cap.getBrand() == null) {
+            return "The brand can not be void";
+        }
+        if (cap.getColor() == null) {
+            return "The color can not be void";
+        }
+        if (cap.getStyle() == null) {
+            return "The style of the cap is required";
         }
+        if (cap.getSize() == null) {
+            return "The size of the cap is required";
+        }
+        return null;
     }
 
-    private List<Index> readLinesIndex(Resource resource) {
-        try (BufferedReader reader = new BufferedReader((new InputStreamReader(resource.getInputStream())))) {
-            return reader.lines().filter(line -> !line.isBlank()).map(Index::fromLine).collect(Collectors.toList());
-        } catch (IOException e) {
-            throw new RuntimeException(e.getMessage());
+    private static String similarMessage(Cap similar) {
+        return String.format("the cap is similar to the cap with index %d", similar.getId());
+    }
+
+    private String record(Cap cap) {
+        recordBuffer.setLength(0);
+        return CAP_FORMATTER.appendCap(cap, recordBuffer).toString();
+    }
+
+    // add the cap to the in memory heap and indexes, the files are updated by the checkpoint
+    private void apply(Cap cap) {
+        brandIndexes.add(cap.getBrand(), cap.getId());
+        int position = capHeap.append(cap);
+        primaryIndex.put(cap.getId(), position);
+        bitmapIndexes.add(cap, position);
+        priceIndex.add(cap.getPrice());
+        contentIndex.add(cap, position);
+        prefixIndex.add(cap);
+        aggregates.add(cap);
+        idFilter.add(cap.getId());
+        pendingCaps.add(cap);
+    }
+
+    // the changes of the applied caps become visible to the readers
+    private void publish() {
+        bitmapIndexes.publish();
+        priceIndex.publish();
+        prefixIndex.publish();
+        aggregates.publish();
+        snapshot = snapshot.next(capHeap.size());
+        indexedIds = primaryIndex.size();
+        indexedBrands = brandIndexes.size();
+        idFilterBytes = idFilter.memoryBytes();
+        contentIndexBytes = contentIndex.memoryBytes();
+    }
+
+    /***
+     * Copies the pending caps to the heap and index files (one write per file) and discards the write-ahead log.
+     * The heap is written first: if the process dies before the indexes are written they are rebuilt at load.
+     */
+    public synchronized void checkpoint() {
+        if (pendingCaps.isEmpty()) {
+            return;
         }
+        long start = System.nanoTime();
+        capHeap.flush();
+        primaryIndex.flush();
+        brandIndexes.flush();
+        wal.truncate();
+        log.info("Checkpoint of {} caps", pendingCaps.size());
+        pendingCaps.clear();
+        CapMetrics.record(checkpointTimer, start);
     }
 
-    //append a line into a resource line
-    private void appendLine(String line, Resource resource) {
-        try (FileWriter writer = new FileWriter(resource.getFile(), true)) {
-            writer.append("\n").append(line);
-        } catch (IOException e) {
-            throw new CapDatabaseException(e.getMessage());
+    /***
+     * Writes the snapshot of the catalog (see CatalogSnapshotFile) when it changed since the last one. The lock of
+     * the repository is only taken for the checkpoint and to copy the brand postings, the rows never change so
+     * they are written without it.
+     */
+    public void writeSnapshot() {
+        synchronized (snapshotLock) {
+            int rowCount;
+            long heapLength;
+            Map<String, LongList> brands;
+            synchronized (this) {
+                if (!loaded) {
+                    return;
+                }
+                checkpoint();
+                rowCount = capHeap.size();
+                if (rowCount == snapshotRowCount) {
+                    return;
+                }
+                heapLength = FileChannels.size(heapPath());
+                brands = brandIndexes.publishedPostings();
+            }
+            long start = System.nanoTime();
+            CatalogSnapshotFile.write(path(snapshotFile), heapFormat, heapPath(), rowCount, heapLength, capHeap::get, brands);
+            CapMetrics.record(snapshotTimer, start);
+            snapshotRowCount = rowCount;
         }
     }
 
-    // overwrite a file
-    private void overwrite(Resource resource, String lines) {
-        try (FileWriter writer = new FileWriter(resource.getFile(), false)) {
-            writer.write(lines.toString());
-        } catch (IOException e) {
-            throw new RuntimeException(e.getMessage());
+    private void writeSnapshotQuietly() {
+        try {
+            writeSnapshot();
+        } catch (RuntimeException e) {
+            log.error("The snapshot failed, the next restart loads the catalog from the files", e);
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (RuntimeException e) {
+            log.error("The checkpoint failed, the caps remain in the write-ahead log", e);
         }
     }
 
+    @PreDestroy
+    public void close() {
+        var loading = startup;
+        if (loading != null) {
+            // the loader must not open the files after they are closed
+            loading.exceptionally(e -> null).join();
+        }
+        CapWriter stopping;
+        synchronized (this) {
+            if (!loaded || closing) {
+                return;
+            }
+            closing = true;
+            checkpointer.shutdown();
+            stopping = writer;
+        }
+        // out of the lock, the writer needs it to write the saves still queued
+        stopping.close();
+        if (snapshotIntervalMillis > 0) {
+            writeSnapshotQuietly();
+        }
+        synchronized (this) {
+            checkpointQuietly();
+            wal.close();
+            primaryIndex.close();
+            capHeap.close();
+            closing = false;
+            loaded = false;
+        }
+    }
 
-    private void addIndex(Index index) {
-        var indexList = readLinesIndex(this.index);
+    private void rebuildPrimaryIndex() {
+        var ids = new LongList(capHeap.size());
+        for (int i = 0; i < capHeap.size(); i++) {
+            ids.add(capHeap.get(i).getId());
+        }
+        primaryIndex.rebuild(ids);
+    }
 
-        int idx = Collections.binarySearch(indexList, index, Comparator.comparingLong(Index::getKey));
-        if (idx < 0) {
-            idx = -(idx + 1);
+    // the bitmap, price, prefix and content indexes, the aggregates and the id filter are not persisted, they are
+    // built from the heap
+    private void buildMemoryIndexes() {
+        long start = System.nanoTime();
+        bitmapIndexes = new BitmapIndexStore();
+        priceIndex = new PriceIndex();
+        prefixIndex = new PrefixIndex();
+        // room for the catalog to double before the filter adds a layer
+        idFilter = new LongBloomFilter(capHeap.size() * 2L, idFilterFalsePositiveRate);
+        for (int i = 0; i < capHeap.size(); i++) {
+            var cap = capHeap.get(i);
+            bitmapIndexes.add(cap, i);
+            priceIndex.add(cap.getPrice());
+            prefixIndex.add(cap);
+            idFilter.add(cap.getId());
         }
+        log.info("Built the bitmap, price and prefix indexes and the id filter ({} KB) of {} caps in {} ms",
+                idFilter.memoryBytes() / 1024, capHeap.size(), (System.nanoTime() - start) / 1_000_000);
 
-        indexList.add(idx, index);
+        start = System.nanoTime();
+        contentIndex = ContentHashIndex.build(capHeap::get, capHeap.size());
+        log.info("Built the content index of {} caps in {} ms, it takes {} KB", contentIndex.size(),
+                (System.nanoTime() - start) / 1_000_000, contentIndex.memoryBytes() / 1024);
 
-        var str = new StringBuilder();
-        indexList.forEach(p -> str.append(String.format("%s\n", p.toLine())));
-        overwrite(this.index, str.toString());
+        start = System.nanoTime();
+        aggregates = CatalogAggregates.build(capHeap::get, capHeap.size());
+        log.info("Aggregated {} caps by brand, style, size and gender in {} ms", capHeap.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void rebuildBrandIndex() {
+        brandIndexes.clear();
+        for (int i = 0; i < capHeap.size(); i++) {
+            var cap = capHeap.get(i);
+            brandIndexes.add(cap.getBrand(), cap.getId());
+        }
+        brandIndexes.compact();
+    }
+
+    @Override
+    public Cap findById(Long id) {
+        long start = System.nanoTime();
+        try {
+            initialize();
+            var cap = find(snapshot, id);
+            if (cap == null)
+                throw new RuntimeException(String.format("There is not any cap with id %d", id));
+
+            return cap;
+        } finally {
+            CapMetrics.record(findByIdTimer, start);
+        }
+    }
+
+    /***
+     * Finds the cap in the given snapshot, the index can have entries of later saves or even an id whose
+     * position is being written, so the position must be in the snapshot and its row must have the id
+     */
+    private Cap find(CatalogSnapshot snapshot, long id) {
+        var positionInHeap = primaryIndex.get(id);
+        if (positionInHeap == PrimaryIndex.NO_VALUE) {
+            lookupMisses.increment();
+            return null;
+        }
+        // stale: the entry of a save not published in the snapshot yet
+        if (positionInHeap >= snapshot.rowCount()) {
+            lookupStale.increment();
+            return null;
+        }
+
+        var cap = capHeap.get(positionInHeap);
+        if (cap.getId() != id) {
+            lookupStale.increment();
+            return null;
+        }
+        lookupHits.increment();
+        return cap;
+    }
+
+    @Override
+    public List<Cap> findByBrand(String brand) {
+        long start = System.nanoTime();
+        try {
+            initialize();
+            var current = snapshot;
+
+            var capsId = brandIndexes.postings(brand);
+            var caps = new ArrayList<Cap>(capsId != null ? capsId.size() : 0);
+            if (capsId != null) {
+                capsId.forEach(id -> {
+                    var cap = find(current, id);
+                    if (cap != null) {
+                        caps.add(cap);
+                    }
+                });
+            }
+            if (caps.isEmpty()) {
+                throw new RuntimeException(String.format("There is not any cap with brand: %s", brand));
+            }
+            return caps;
+        } finally {
+            CapMetrics.record(findByBrandTimer, start);
+        }
+    }
+
+    /***
+     * Solves the filters with the bitmap indexes: the values of an attribute are joined with OR and the attributes
+     * with AND, only the caps of the requested page are read from the heap
+     */
+    @Override
+    public CapSearchResult search(CapSearch search, int offset, int limit) {
+        long start = System.nanoTime();
+        try {
+            initialize();
+            var current = snapshot;
+            RoaringBitmap matches = null;
+            matches = filter(matches, BitmapIndexStore.Attribute.STYLE, search.styles().stream().map(Enum::name).toList());
+            matches = filter(matches, BitmapIndexStore.Attribute.SIZE, search.sizes().stream().map(Enum::name).toList());
+            matches = filter(matches, BitmapIndexStore.Attribute.GENDER, search.genders().stream().map(Enum::name).toList());
+            matches = filter(matches, BitmapIndexStore.Attribute.COLOR, search.colors());
+            matches = filter(matches, BitmapIndexStore.Attribute.BRAND, search.brands());
+            if (matches == null) {
+                throw new RuntimeException("The search needs at least one filter");
+            }
+
+            // the bitmaps can have positions of rows saved after the snapshot
+            int rowCount = current.rowCount();
+            var caps = new ArrayList<Cap>(Math.min(limit, 1024));
+            var skipped = new int[1];
+            matches.forEach(position -> {
+                if (position >= rowCount) {
+                    return false;
+                }
+                if (skipped[0] < offset) {
+                    skipped[0]++;
+                    return true;
+                }
+                caps.add(capHeap.get(position));
+                return caps.size() < limit;
+            });
+            return new CapSearchResult(matches.cardinalityBelow(rowCount), caps);
+        } finally {
+            CapMetrics.record(searchTimer, start);
+        }
+    }
+
+    // intersects the positions of the caps with any of the values, nothing to do if there are no values
+    private RoaringBitmap filter(RoaringBitmap matches, BitmapIndexStore.Attribute attribute, List<String> values) {
+        if (values.isEmpty()) {
+            return matches;
+        }
+        RoaringBitmap union = null;
+        for (String value : values) {
+            var positions = bitmapIndexes.positions(attribute, BitmapIndexStore.normalize(attribute, value));
+            union = union == null ? positions : RoaringBitmap.or(union, positions);
+        }
+        return matches == null ? union : RoaringBitmap.and(matches, union);
+    }
+
+    /***
+     * Scans the price index from min or from max up to limit caps. With a brand the positions of the scan are
+     * checked in its bitmap, unless the brand has few caps compared to the range: then its caps are the ones
+     * ranked by price.
+     */
+    @Override
+    public List<Cap> findByPrice(double min, double max, boolean ascending, String brand, int limit) {
+        long start = System.nanoTime();
+        try {
+            initialize();
+            int rowCount = snapshot.rowCount();
+            var caps = new ArrayList<Cap>(Math.min(limit, 1024));
+            if (brand == null) {
+                priceIndex.scan(min, max, ascending, rowCount, position -> {
+                    caps.add(capHeap.get(position));
+                    return caps.size() < limit;
+                });
+                return caps;
+            }
+            var positions = bitmapIndexes.positions(BitmapIndexStore.Attribute.BRAND,
+                    BitmapIndexStore.normalize(BitmapIndexStore.Attribute.BRAND, brand));
+            if (positions.cardinality() < priceIndex.count(min, max) / 8) {
+                for (int position : topByPrice(positions, min, max, ascending, rowCount, limit)) {
+                    caps.add(capHeap.get(position));
+                }
+                return caps;
+            }
+            priceIndex.scan(min, max, ascending, rowCount, position -> {
+                if (positions.contains(position)) {
+                    caps.add(capHeap.get(position));
+                }
+                return caps.size() < limit;
+            });
+            return caps;
+        } finally {
+            CapMetrics.record(findByPriceTimer, start);
+        }
+    }
+
+    // the first limit positions in the order of the price index, kept in a bounded heap with the last one on top
+    private List<Integer> topByPrice(RoaringBitmap positions, double min, double max, boolean ascending, int rowCount, int limit) {
+        Comparator<Integer> byPrice = Comparator.<Integer>comparingDouble(priceIndex::price).thenComparingInt(position -> position);
+        var order = ascending ? byPrice : byPrice.reversed();
+        var top = new PriorityQueue<>(limit + 1, order.reversed());
+        positions.forEach(position -> {
+            if (position >= rowCount) {
+                return false;
+            }
+            double price = priceIndex.price(position);
+            if (price >= min && price <= max) {
+                top.add(position);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            return true;
+        });
+        var sorted = new ArrayList<>(top);
+        sorted.sort(order);
+        return sorted;
+    }
+
+    @Override
+    public List<Suggestion> suggest(Suggestion.Field field, String prefix, int limit) {
+        long start = System.nanoTime();
+        try {
+            initialize();
+            return prefixIndex.suggest(field, BrandIndex.normalize(prefix), limit);
+        } finally {
+            CapMetrics.record(suggestTimer, start);
+        }
+    }
+
+    @Override
+    public CapStats stats(CapStats.GroupBy groupBy) {
+        long start = System.nanoTime();
+        try {
+            initialize();
+            return aggregates.stats(groupBy);
+        } finally {
+            CapMetrics.record(statsTimer, start);
+        }
+    }
+
+    private static Path path(Resource resource) {
+        try {
+            return resource.getFile().toPath();
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
     }
 }
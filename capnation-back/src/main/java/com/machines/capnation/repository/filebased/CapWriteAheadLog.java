@@ -0,0 +1,289 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.exceptions.CapDatabaseException;
+import com.machines.capnation.metrics.CapMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/***
+ * Append only write-ahead log of the saved caps.
+ * Every record (or batch of records) is written with a single FileChannel write in this layout:
+ *  length(int)|crc32(int)|cap in text format (utf-8)
+ * The fsync is shared by a group of records (group commit): a background thread forces the channel when
+ * syncBatchSize records are pending or when syncIntervalMillis have passed since the last sync.
+ * Records already copied to the heap and index files are discarded with truncate().
+ */
+public class CapWriteAheadLog implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(CapWriteAheadLog.class);
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    /***
+     * SYNC: a save returns after its record is on disk (fsync), it may wait for the group commit.
+     * ASYNC: a save returns after its record is written to the OS, the fsync happens in background so
+     * a crash of the machine can lose the records of the last syncIntervalMillis.
+     */
+    public enum Durability {
+        SYNC,
+        ASYNC
+    }
+
+    private final FileChannel channel;
+    private final Durability durability;
+    private final int syncBatchSize;
+    private final long syncIntervalMillis;
+    private final Thread syncer;
+    private final Counter bytesRead;
+    private final Counter bytesWritten;
+    private final Timer syncTimer = CapMetrics.operation("walSync");
+
+    private final Object lock = new Object();
+    private long writtenSequence;
+    private long syncedSequence;
+    private IOException syncFailure;
+    private volatile boolean closed;
+
+    public CapWriteAheadLog(Path file, Durability durability, int syncBatchSize, long syncIntervalMillis) {
+        this.bytesRead = CapMetrics.bytesRead(file);
+        this.bytesWritten = CapMetrics.bytesWritten(file);
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // the writes are serialized by the lock, so the channel position is always the end of the log
+            this.channel.position(channel.size());
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+        this.durability = durability;
+        this.syncBatchSize = Math.max(syncBatchSize, 1);
+        this.syncIntervalMillis = Math.max(syncIntervalMillis, 1);
+        this.syncer = new Thread(this::syncLoop, "cap-wal-sync");
+        this.syncer.setDaemon(true);
+        this.syncer.start();
+    }
+
+    /***
+     * Appends a record to the log without waiting for the fsync
+     * @return the sequence of the record, to be used with awaitDurable
+     */
+    public long append(String record) {
+        return appendAll(List.of(record));
+    }
+
+    /***
+     * Appends the records with a single write, without waiting for the fsync
+     * @return the sequence of the last record, to be used with awaitDurable
+     */
+    public long appendAll(List<String> records) {
+        var payloads = new byte[records.size()][];
+        int length = 0;
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = records.get(i).getBytes(StandardCharsets.UTF_8);
+            length += HEADER_SIZE + payloads[i].length;
+        }
+        var buffer = ByteBuffer.allocate(length);
+        var crc = new CRC32();
+        for (byte[] payload : payloads) {
+            crc.reset();
+            crc.update(payload);
+            buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        }
+        buffer.flip();
+
+        synchronized (lock) {
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                bytesWritten.increment(length);
+            } catch (IOException e) {
+                throw new CapDatabaseException(e.getMessage());
+            }
+            long previous = writtenSequence - syncedSequence;
+            writtenSequence += payloads.length;
+            long pending = writtenSequence - syncedSequence;
+            if (previous == 0 || pending >= syncBatchSize) {
+                lock.notifyAll();
+            }
+            return writtenSequence;
+        }
+    }
+
+    /***
+     * Blocks until the record with the given sequence is on disk when the durability is SYNC,
+     * it returns immediately when the durability is ASYNC
+     */
+    public void awaitDurable(long sequence) {
+        if (durability == Durability.ASYNC) {
+            return;
+        }
+        synchronized (lock) {
+            while (syncedSequence < sequence) {
+                if (syncFailure != null) {
+                    throw new CapDatabaseException(syncFailure.getMessage());
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CapDatabaseException("interrupted while waiting for the write-ahead log");
+                }
+            }
+        }
+    }
+
+    /***
+     * Reads every complete record of the log, a torn record at the tail (crash in the middle of a write)
+     * and everything after it is ignored.
+     */
+    public List<String> readRecords() {
+        var records = new ArrayList<String>();
+        synchronized (lock) {
+            try {
+                long position = 0;
+                long size = channel.size();
+                var header = ByteBuffer.allocate(HEADER_SIZE);
+                while (position + HEADER_SIZE <= size) {
+                    header.clear();
+                    readFully(header, position);
+                    header.flip();
+                    int length = header.getInt();
+                    int checksum = header.getInt();
+                    if (length < 0 || position + HEADER_SIZE + length > size) {
+                        break;
+                    }
+                    var payload = ByteBuffer.allocate(length);
+                    readFully(payload, position + HEADER_SIZE);
+                    var crc = new CRC32();
+                    crc.update(payload.array());
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    records.add(new String(payload.array(), StandardCharsets.UTF_8));
+                    position += HEADER_SIZE + length;
+                }
+                if (position < size) {
+                    log.warn("Ignoring {} bytes of a torn record at the tail of the write-ahead log", size - position);
+                }
+            } catch (IOException e) {
+                throw new CapDatabaseException(e.getMessage());
+            }
+        }
+        return records;
+    }
+
+    /***
+     * Discards every record of the log. It must be called only after the records were copied (and forced) to the
+     * heap and index files, so the records waiting for the fsync are durable too.
+     */
+    public void truncate() {
+        synchronized (lock) {
+            try {
+                channel.truncate(0);
+                channel.force(false);
+            } catch (IOException e) {
+                throw new CapDatabaseException(e.getMessage());
+            }
+            syncedSequence = writtenSequence;
+            lock.notifyAll();
+        }
+    }
+
+    public long size() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+    }
+
+    private void syncLoop() {
+        while (!closed) {
+            long target;
+            synchronized (lock) {
+                try {
+                    while (!closed && writtenSequence == syncedSequence) {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // the interval starts with the first pending record of the group
+                long deadline = System.currentTimeMillis() + syncIntervalMillis;
+                long remaining;
+                while (!closed && writtenSequence - syncedSequence < syncBatchSize
+                        && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                    try {
+                        lock.wait(remaining);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (writtenSequence == syncedSequence) {
+                    continue;
+                }
+                target = writtenSequence;
+            }
+            sync(target);
+        }
+    }
+
+    private void sync(long target) {
+        IOException failure = null;
+        long start = System.nanoTime();
+        try {
+            channel.force(false);
+            CapMetrics.record(syncTimer, start);
+        } catch (IOException e) {
+            log.error("Can't force the write-ahead log to disk", e);
+            failure = e;
+        }
+        synchronized (lock) {
+            if (failure != null) {
+                syncFailure = failure;
+            } else if (target > syncedSequence) {
+                syncedSequence = target;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("unexpected end of the write-ahead log");
+            }
+            position += read;
+            bytesRead.increment(read);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        try {
+            syncer.join(syncIntervalMillis * 2);
+            sync(writtenSequence);
+            channel.close();
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.collection.MpscRingBuffer;
+import com.machines.capnation.exceptions.CapWriteQueueFullException;
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.SaveQueueStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/***
+ * Single writer of the saves: the request threads put the caps in a bounded ring buffer and a dedicated thread
+ * takes them in batches of up to maxBatchSize, so every batch is written to the disk in one pass.
+ * When the buffer is full the save is rejected with a CapWriteQueueFullException instead of waiting.
+ */
+public class CapWriter {
+    private static final Logger log = LoggerFactory.getLogger(CapWriter.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // a cap waiting for the writer and the future of its save
+    public record PendingSave(Cap cap, CompletableFuture<Cap> future) {
+    }
+
+    private final MpscRingBuffer<PendingSave> queue;
+    private final int maxBatchSize;
+    private final Consumer<List<PendingSave>> batchWriter;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean idle;
+
+    // statistics of the batches, written by the writer thread only
+    private volatile long batches;
+    private volatile long processedSaves;
+    private volatile int lastBatchSize;
+    private volatile int maxBatch;
+    private final LongAdder rejectedSaves = new LongAdder();
+
+    /***
+     * @param batchWriter writes a batch and completes the futures of its saves, it's only called by the writer thread
+     */
+    public CapWriter(int queueCapacity, int maxBatchSize, Consumer<List<PendingSave>> batchWriter) {
+        this.queue = new MpscRingBuffer<>(queueCapacity);
+        this.maxBatchSize = Math.max(maxBatchSize, 1);
+        this.batchWriter = batchWriter;
+        this.thread = new Thread(this::writeLoop, "cap-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /***
+     * Queues the cap for the writer thread
+     * @return a future completed when the cap is saved (and durable with the SYNC durability)
+     * @throws CapWriteQueueFullException if there are already queueCapacity saves waiting
+     */
+    public CompletableFuture<Cap> submit(Cap cap) {
+        if (!running) {
+            throw new IllegalStateException("The writer of the caps is stopped");
+        }
+        var future = new CompletableFuture<Cap>();
+        if (!queue.offer(new PendingSave(cap, future))) {
+            rejectedSaves.increment();
+            throw new CapWriteQueueFullException(String.format("There are %d saves waiting, retry later", queue.capacity()));
+        }
+        if (idle) {
+            LockSupport.unpark(thread);
+        }
+        return future;
+    }
+
+    private void writeLoop() {
+        var batch = new ArrayList<PendingSave>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            queue.drain(batch::add, maxBatchSize);
+            if (batch.isEmpty()) {
+                idle = true;
+                if (queue.isEmpty() && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+                continue;
+            }
+            try {
+                batchWriter.accept(batch);
+            } catch (RuntimeException e) {
+                log.error("The batch of {} saves failed", batch.size(), e);
+                batch.forEach(save -> save.future().completeExceptionally(e));
+            }
+            recordBatch(batch.size());
+            batch.clear();
+        }
+    }
+
+    private void recordBatch(int size) {
+        batches++;
+        processedSaves += size;
+        lastBatchSize = size;
+        if (size > maxBatch) {
+            maxBatch = size;
+        }
+    }
+
+    public SaveQueueStats stats() {
+        long currentBatches = batches;
+        long currentProcessed = processedSaves;
+        return new SaveQueueStats(queue.size(), queue.capacity(), currentBatches, currentProcessed, rejectedSaves.sum(),
+                lastBatchSize, maxBatch, currentBatches == 0 ? 0 : (double) currentProcessed / currentBatches);
+    }
+
+    /***
+     * Stops taking new saves and waits until the queued ones are written
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // a save queued while stopping, after the last drain of the writer
+        queue.drain(save -> save.future().completeExceptionally(new IllegalStateException("The writer of the caps is stopped")),
+                queue.capacity());
+    }
+}
@@ -0,0 +1,156 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapStats;
+import com.machines.capnation.model.index.BrandIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/***
+ * Number of caps, stock and min/avg/max price of the catalog by brand, style, size and gender. The caps are never
+ * changed or removed, so a save only adds its price and stock to one group of every dimension.
+ * It lives in memory: build() aggregates the heap in parallel chunks when the repository loads, and then the single
+ * writer adds the saved caps. publish() copies the changed groups for the readers, which get the stats of a
+ * dimension sorted once per publish.
+ */
+public class CatalogAggregates {
+    static final String UNISEX = "UNISEX";
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final Map<CapStats.GroupBy, Map<String, Aggregate>> aggregates = new EnumMap<>(CapStats.GroupBy.class);
+    private final Aggregate total = new Aggregate();
+    // groups changed since the last publish
+    private final Map<CapStats.GroupBy, Set<String>> dirty = new EnumMap<>(CapStats.GroupBy.class);
+
+    private final Map<CapStats.GroupBy, Map<String, CapStats.Group>> published = new EnumMap<>(CapStats.GroupBy.class);
+    private volatile CapStats.Group publishedTotal = total.toGroup("total");
+    private volatile int version;
+    // the sorted stats of every dimension, made by the first read after a publish
+    private final Map<CapStats.GroupBy, Sorted> sorted = new ConcurrentHashMap<>();
+
+    private record Sorted(int version, CapStats stats) {
+    }
+
+    // running aggregate of a group, only used by the writer (or by one chunk of build)
+    private static final class Aggregate {
+        private long caps;
+        private long stock;
+        private double priceSum;
+        private double minPrice = Double.POSITIVE_INFINITY;
+        private double maxPrice = Double.NEGATIVE_INFINITY;
+
+        void add(Cap cap) {
+            caps++;
+            stock += cap.getStock();
+            priceSum += cap.getPrice();
+            minPrice = Math.min(minPrice, cap.getPrice());
+            maxPrice = Math.max(maxPrice, cap.getPrice());
+        }
+
+        void merge(Aggregate other) {
+            caps += other.caps;
+            stock += other.stock;
+            priceSum += other.priceSum;
+            minPrice = Math.min(minPrice, other.minPrice);
+            maxPrice = Math.max(maxPrice, other.maxPrice);
+        }
+
+        CapStats.Group toGroup(String name) {
+            return caps == 0
+                    ? new CapStats.Group(name, 0, 0, 0, 0, 0)
+                    : new CapStats.Group(name, caps, stock, minPrice, priceSum / caps, maxPrice);
+        }
+    }
+
+    public CatalogAggregates() {
+        for (CapStats.GroupBy groupBy : CapStats.GroupBy.values()) {
+            aggregates.put(groupBy, new HashMap<>());
+            dirty.put(groupBy, new HashSet<>());
+            published.put(groupBy, new ConcurrentHashMap<>());
+        }
+    }
+
+    /***
+     * Aggregates the first size caps in chunks of CHUNK_SIZE in the common pool, and publishes them
+     */
+    public static CatalogAggregates build(IntFunction<Cap> caps, int size) {
+        int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        var aggregates = IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> {
+                    var partial = new CatalogAggregates();
+                    int end = Math.min(size, (chunk + 1) * CHUNK_SIZE);
+                    for (int position = chunk * CHUNK_SIZE; position < end; position++) {
+                        partial.add(caps.apply(position));
+                    }
+                    return partial;
+                })
+                .reduce(CatalogAggregates::merge)
+                .orElseGet(CatalogAggregates::new);
+        aggregates.publish();
+        return aggregates;
+    }
+
+    private CatalogAggregates merge(CatalogAggregates other) {
+        other.aggregates.forEach((groupBy, groups) -> groups.forEach((name, aggregate) -> {
+            aggregates.get(groupBy).computeIfAbsent(name, key -> new Aggregate()).merge(aggregate);
+            dirty.get(groupBy).add(name);
+        }));
+        total.merge(other.total);
+        return this;
+    }
+
+    public void add(Cap cap) {
+        add(CapStats.GroupBy.BRAND, BrandIndex.normalize(cap.getBrand()), cap);
+        add(CapStats.GroupBy.STYLE, cap.getStyle().name(), cap);
+        add(CapStats.GroupBy.SIZE, cap.getSize().name(), cap);
+        add(CapStats.GroupBy.GENDER, cap.getGender() != null ? cap.getGender().name() : UNISEX, cap);
+        total.add(cap);
+    }
+
+    private void add(CapStats.GroupBy groupBy, String name, Cap cap) {
+        aggregates.get(groupBy).computeIfAbsent(name, key -> new Aggregate()).add(cap);
+        dirty.get(groupBy).add(name);
+    }
+
+    /***
+     * Makes the caps added since the last call visible to the readers, only the changed groups are copied
+     */
+    public void publish() {
+        dirty.forEach((groupBy, names) -> {
+            var current = aggregates.get(groupBy);
+            var groups = published.get(groupBy);
+            names.forEach(name -> groups.put(name, current.get(name).toGroup(name)));
+            names.clear();
+        });
+        publishedTotal = total.toGroup("total");
+        version++;
+    }
+
+    /***
+     * The published groups of the dimension in alphabetical order. They are sorted by the first read after every
+     * publish, the next reads return the same stats
+     */
+    public CapStats stats(CapStats.GroupBy groupBy) {
+        // read before the groups: stats made from groups newer than the version are only sorted again later
+        int current = version;
+        var cached = sorted.get(groupBy);
+        if (cached != null && cached.version() == current) {
+            return cached.stats();
+        }
+        var groups = new ArrayList<>(published.get(groupBy).values());
+        groups.sort(Comparator.comparing(CapStats.Group::name));
+        var stats = new CapStats(groupBy, publishedTotal, Collections.unmodifiableList(groups));
+        sorted.put(groupBy, new Sorted(current, stats));
+        return stats;
+    }
+}
@@ -0,0 +1,15 @@
+package com.machines.capnation.repository.filebased;
+
+/***
+ * Version of the catalog visible to the readers.
+ * The heap and the indexes are append only, so every version is a prefix of the next one: the rows before
+ * rowCount never change and the readers ignore the ones after it. The writer publishes a new snapshot after
+ * every save and the readers work on the one they read first, without taking any lock.
+ */
+public record CatalogSnapshot(long version, int rowCount) {
+    public static final CatalogSnapshot EMPTY = new CatalogSnapshot(0, 0);
+
+    CatalogSnapshot next(int rowCount) {
+        return new CatalogSnapshot(version + 1, rowCount);
+    }
+}
@@ -0,0 +1,325 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.collection.LongList;
+import com.machines.capnation.exceptions.CapDatabaseException;
+import com.machines.capnation.metrics.CapMetrics;
+import com.machines.capnation.model.Cap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/***
+ * Binary snapshot of the catalog (capSnapshot.file), so a restart reads the rows and the indexes with sequential
+ * reads instead of parsing the text files. It covers the first rowCount rows of the heap, which are the first
+ * heapLength bytes of the heap file: at load only the rows appended after them are read from the heap.
+ * Header:
+ *  magic(int "CAPK")|version(short)|heap format(byte)|reserved(byte)|rowCount(int)|heap tail crc32c(int)
+ *  |heapLength(long)|createdAt(long, epoch millis)|crc32c of the previous bytes(int)
+ * The heap tail checksum is the one of the last TAIL_SIZE bytes covered, so a heap file replaced by another one
+ * isn't mistaken for the one of the snapshot.
+ * Then three sections, each of them length(long)|crc32c(int)|bytes:
+ *  caps: the rows in the record format of BinaryCapHeap, empty for a BINARY heap, which is read from its own file
+ *  ids: the id of every position(long)
+ *  brands: count(int) then for every normalized brand its length(int)|utf-8 bytes|count(int)|ids(long)
+ * The file is written to a temporary file and moved over the previous snapshot, so a crash leaves the previous
+ * one. A snapshot that doesn't pass the checks is ignored and the repository is loaded from its files.
+ * A restart from the snapshot still takes a time proportional to the catalog, only smaller: every row is read,
+ * and the bitmap, price and content indexes and the id filter are built from them, they aren't in the snapshot.
+ */
+final class CatalogSnapshotFile {
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshotFile.class);
+    static final int MAGIC = 0x4341504B; // "CAPK"
+    static final short VERSION = 1;
+    private static final int HEADER_SIZE = 36;
+    private static final int SECTION_HEADER_SIZE = 12;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int TAIL_SIZE = 4096;
+
+    /***
+     * Rows and indexes of a snapshot, caps is null for a BINARY heap
+     */
+    record Contents(int rowCount, long heapLength, List<Cap> caps, LongList ids, Map<String, LongList> brands) {
+    }
+
+    private CatalogSnapshotFile() {
+    }
+
+    /***
+     * Writes the snapshot of the first rowCount rows, the caller must not change them meanwhile (the rows of the
+     * heap never change) and brands must be the posting lists of those rows
+     */
+    static void write(Path file, CapHeap.Format format, Path heapFile, int rowCount, long heapLength, IntFunction<Cap> caps,
+                      Map<String, LongList> brands) {
+        long start = System.nanoTime();
+        var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putShort(VERSION).put((byte) format.ordinal()).put((byte) 0)
+                    .putInt(rowCount).putInt(heapTailChecksum(heapFile, heapLength))
+                    .putLong(heapLength).putLong(System.currentTimeMillis());
+            var crc = new CRC32C();
+            crc.update(header.array(), 0, HEADER_SIZE - Integer.BYTES);
+            header.putInt((int) crc.getValue()).flip();
+            writeFully(channel, header, 0);
+
+            var out = new SectionWriter(channel, HEADER_SIZE);
+            out.begin();
+            if (format == CapHeap.Format.TEXT) {
+                for (int position = 0; position < rowCount; position++) {
+                    var cap = caps.apply(position);
+                    BinaryCapHeap.encode(cap, out.reserve(BinaryCapHeap.recordLength(cap)));
+                }
+            }
+            out.end();
+
+            out.begin();
+            for (int position = 0; position < rowCount; position++) {
+                out.reserve(Long.BYTES).putLong(caps.apply(position).getId());
+            }
+            out.end();
+
+            out.begin();
+            out.reserve(Integer.BYTES).putInt(brands.size());
+            for (var brand : brands.entrySet()) {
+                var name = brand.getKey().getBytes(StandardCharsets.UTF_8);
+                out.reserve(Integer.BYTES + name.length).putInt(name.length).put(name);
+                var ids = brand.getValue();
+                out.reserve(Integer.BYTES).putInt(ids.size());
+                for (int i = 0; i < ids.size(); i++) {
+                    out.reserve(Long.BYTES).putLong(ids.get(i));
+                }
+            }
+            out.end();
+            channel.force(true);
+            CapMetrics.bytesWritten(file, channel.size());
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+        log.info("Wrote the snapshot of {} caps in {} ms", rowCount, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /***
+     * Reads the snapshot, or returns null when there isn't a valid one for the heap: a wrong header or checksum,
+     * another heap format or a heap file shorter than the bytes it covers
+     */
+    static Contents read(Path file, CapHeap.Format format, Path heapFile) {
+        long start = System.nanoTime();
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() == 0) {
+                return null;
+            }
+            if (channel.size() < HEADER_SIZE) {
+                return invalid(file, "it's truncated");
+            }
+            var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            var crc = new CRC32C();
+            crc.update(header.slice(0, HEADER_SIZE - Integer.BYTES));
+            if (header.getInt(0) != MAGIC || header.getShort(4) != VERSION || (int) crc.getValue() != header.getInt(HEADER_SIZE - Integer.BYTES)) {
+                return invalid(file, "the header is not valid");
+            }
+            if (header.get(6) != format.ordinal()) {
+                return invalid(file, "it's of another heap format");
+            }
+            int rowCount = header.getInt(8);
+            long heapLength = header.getLong(16);
+            long heapSize = Files.size(heapFile);
+            if (heapLength > heapSize) {
+                return invalid(file, String.format("it covers %d bytes of a heap of %d", heapLength, heapSize));
+            }
+            if (heapTailChecksum(heapFile, heapLength) != header.getInt(12)) {
+                return invalid(file, "the heap doesn't have the bytes it covers");
+            }
+
+            long offset = HEADER_SIZE;
+            var capsSection = section(channel, offset);
+            offset += SECTION_HEADER_SIZE + capsSection.limit();
+            var idsSection = section(channel, offset);
+            offset += SECTION_HEADER_SIZE + idsSection.limit();
+            var brandsSection = section(channel, offset);
+
+            var caps = format == CapHeap.Format.TEXT ? readCaps(capsSection, rowCount) : null;
+            var ids = readIds(idsSection, rowCount);
+            var brands = readBrands(brandsSection);
+            CapMetrics.bytesRead(file, channel.size());
+            log.info("Read the snapshot of {} caps in {} ms", rowCount, (System.nanoTime() - start) / 1_000_000);
+            return new Contents(rowCount, heapLength, caps, ids, brands);
+        } catch (IOException | RuntimeException e) {
+            return invalid(file, e.toString());
+        }
+    }
+
+    private static Contents invalid(Path file, String reason) {
+        log.warn("Ignoring the snapshot {} because {}, loading the catalog from its files", file, reason);
+        return null;
+    }
+
+    // the bytes of the section that starts in offset, checked against its checksum
+    private static MappedByteBuffer section(FileChannel channel, long offset) throws IOException {
+        if (offset + SECTION_HEADER_SIZE > channel.size()) {
+            throw new CapDatabaseException("the file is truncated");
+        }
+        var header = channel.map(FileChannel.MapMode.READ_ONLY, offset, SECTION_HEADER_SIZE);
+        long length = header.getLong(0);
+        if (length < 0 || length > Integer.MAX_VALUE || offset + SECTION_HEADER_SIZE + length > channel.size()) {
+            throw new CapDatabaseException(String.format("the section at %d has a wrong length", offset));
+        }
+        var bytes = channel.map(FileChannel.MapMode.READ_ONLY, offset + SECTION_HEADER_SIZE, length);
+        var crc = new CRC32C();
+        crc.update(bytes.duplicate());
+        if ((int) crc.getValue() != header.getInt(Long.BYTES)) {
+            throw new CapDatabaseException(String.format("the checksum of the section at %d doesn't match", offset));
+        }
+        return bytes;
+    }
+
+    // the offsets of the records are collected in order and the records are decoded in parallel
+    private static List<Cap> readCaps(ByteBuffer section, int rowCount) {
+        var offsets = new int[rowCount];
+        int offset = 0;
+        for (int position = 0; position < rowCount; position++) {
+            int length = section.getInt(offset);
+            if (length < BinaryCapHeap.RECORD_HEADER_SIZE || offset + length > section.limit()) {
+                throw new CapDatabaseException(String.format("corrupt record at offset %d of the caps", offset));
+            }
+            offsets[position] = offset;
+            offset += length;
+        }
+        var caps = new Cap[rowCount];
+        IntStream.range(0, rowCount).parallel().forEach(position -> caps[position] = BinaryCapHeap.decode(section, offsets[position]));
+        return Arrays.asList(caps);
+    }
+
+    private static LongList readIds(ByteBuffer section, int rowCount) {
+        if (section.limit() != rowCount * (long) Long.BYTES) {
+            throw new CapDatabaseException("the ids don't match the number of caps");
+        }
+        var ids = new LongList(rowCount);
+        for (int position = 0; position < rowCount; position++) {
+            ids.add(section.getLong(position * Long.BYTES));
+        }
+        return ids;
+    }
+
+    private static Map<String, LongList> readBrands(ByteBuffer section) {
+        int count = section.getInt();
+        var brands = new HashMap<String, LongList>(count * 2);
+        for (int i = 0; i < count; i++) {
+            var name = new byte[section.getInt()];
+            section.get(name);
+            int size = section.getInt();
+            var ids = new LongList(size);
+            for (int j = 0; j < size; j++) {
+                ids.add(section.getLong());
+            }
+            brands.put(new String(name, StandardCharsets.UTF_8), ids);
+        }
+        return brands;
+    }
+
+    private static int heapTailChecksum(Path heapFile, long heapLength) throws IOException {
+        try (var channel = FileChannel.open(heapFile, StandardOpenOption.READ)) {
+            int length = (int) Math.min(TAIL_SIZE, heapLength);
+            var tail = ByteBuffer.allocate(length);
+            int read;
+            do {
+                read = channel.read(tail, heapLength - length + tail.position());
+            } while (read > 0 && tail.hasRemaining());
+            var crc = new CRC32C();
+            crc.update(tail.flip());
+            return (int) crc.getValue();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // writes the sections through a buffer, their length and checksum are written when they end
+    private static final class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CRC32C crc = new CRC32C();
+        private long position;
+        private long sectionStart;
+        private long length;
+        // a record that doesn't fit in the buffer, it's written before the next one
+        private ByteBuffer large;
+
+        SectionWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        void begin() {
+            sectionStart = position;
+            position += SECTION_HEADER_SIZE;
+            crc.reset();
+            length = 0;
+        }
+
+        // the buffer with room for the given bytes, a record bigger than the buffer gets its own one
+        ByteBuffer reserve(int bytes) throws IOException {
+            writeLarge();
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+            length += bytes;
+            if (bytes > buffer.capacity()) {
+                large = ByteBuffer.allocate(bytes);
+                return large;
+            }
+            return buffer;
+        }
+
+        void end() throws IOException {
+            drain();
+            writeLarge();
+            var header = ByteBuffer.allocate(SECTION_HEADER_SIZE).putLong(length).putInt((int) crc.getValue()).flip();
+            writeFully(channel, header, sectionStart);
+        }
+
+        private void writeLarge() throws IOException {
+            if (large != null) {
+                write(large.flip());
+                large = null;
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+        }
+
+        private void write(ByteBuffer bytes) throws IOException {
+            crc.update(bytes.duplicate());
+            int count = bytes.remaining();
+            writeFully(channel, bytes, position);
+            position += count;
+        }
+    }
+}
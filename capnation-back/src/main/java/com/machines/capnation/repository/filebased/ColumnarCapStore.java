@@ -0,0 +1,192 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.collection.ChunkedArray;
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStyle;
+import com.machines.capnation.model.Gender;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/***
+ * Rows of caps stored by column in direct ByteBuffers, out of the Java heap, so millions of rows aren't millions
+ * of objects for the garbage collector to trace and copy.
+ * The rows are grouped in blocks of BLOCK_ROWS, every block is one buffer with a region per column:
+ *  id(long)|price(double)|image url(long, reference of its bytes)|stock(int)
+ *  |brand, color, collaboration(int, code in the dictionary of the column, -1 = null)|image url length(int, -1 = null)
+ *  |style(byte)|size(byte)|gender(byte, -1 = null)
+ * Brands, colors and collaborations repeat a lot, so every distinct value is kept once in a dictionary. The image
+ * urls are almost unique (they contain the id of the cap), so their utf-8 bytes are appended to blocks of
+ * URL_BLOCK_SIZE bytes, also out of the heap.
+ * get decodes a new Cap from the columns, the objects only live while a request uses them.
+ * Like ChunkedArray, one thread adds the rows and any thread can read the ones published by the writer.
+ */
+public class ColumnarCapStore {
+    static final int BLOCK_SHIFT = 14;
+    static final int BLOCK_ROWS = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_ROWS - 1;
+    static final int URL_BLOCK_SIZE = 1 << 20;
+
+    // start of every column in a block, the widest ones first so every value is aligned
+    private static final int ID = 0;
+    private static final int PRICE = ID + Long.BYTES * BLOCK_ROWS;
+    private static final int URL = PRICE + Double.BYTES * BLOCK_ROWS;
+    private static final int STOCK = URL + Long.BYTES * BLOCK_ROWS;
+    private static final int BRAND = STOCK + Integer.BYTES * BLOCK_ROWS;
+    private static final int COLOR = BRAND + Integer.BYTES * BLOCK_ROWS;
+    private static final int COLLABORATION = COLOR + Integer.BYTES * BLOCK_ROWS;
+    private static final int URL_LENGTH = COLLABORATION + Integer.BYTES * BLOCK_ROWS;
+    private static final int STYLE = URL_LENGTH + Integer.BYTES * BLOCK_ROWS;
+    private static final int SIZE = STYLE + BLOCK_ROWS;
+    private static final int GENDER = SIZE + BLOCK_ROWS;
+    static final int BLOCK_SIZE = GENDER + BLOCK_ROWS;
+
+    private static final CapStyle[] STYLES = CapStyle.values();
+    private static final CapSize[] SIZES = CapSize.values();
+    private static final Gender[] GENDERS = Gender.values();
+
+    private final Dictionary brands = new Dictionary();
+    private final Dictionary colors = new Dictionary();
+    private final Dictionary collaborations = new Dictionary();
+    private volatile ByteBuffer[] blocks = new ByteBuffer[0];
+    private volatile ByteBuffer[] urlBlocks = new ByteBuffer[0];
+    private int urlPosition; // first free byte of the last url block
+    private long urlBytes;
+    private int size;
+
+    // every distinct value once, the codes are positions of an append only list that the readers can use
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>(); // only for the writer
+        private final ChunkedArray<String> values = new ChunkedArray<>();
+
+        int code(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        String value(int code) {
+            return code >= 0 ? values.get(code) : null;
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    public int add(Cap cap) {
+        int row = size & BLOCK_MASK;
+        int block = size >>> BLOCK_SHIFT;
+        var current = blocks;
+        if (block == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[block] = ByteBuffer.allocateDirect(BLOCK_SIZE);
+            blocks = current;
+        }
+        var buffer = current[block];
+        buffer.putLong(ID + row * Long.BYTES, cap.getId());
+        buffer.putDouble(PRICE + row * Double.BYTES, cap.getPrice());
+        buffer.putInt(STOCK + row * Integer.BYTES, cap.getStock());
+        buffer.putInt(BRAND + row * Integer.BYTES, brands.code(cap.getBrand()));
+        buffer.putInt(COLOR + row * Integer.BYTES, colors.code(cap.getColor()));
+        buffer.putInt(COLLABORATION + row * Integer.BYTES, collaborations.code(cap.getCollaboration()));
+        buffer.put(STYLE + row, (byte) cap.getStyle().ordinal());
+        buffer.put(SIZE + row, (byte) cap.getSize().ordinal());
+        buffer.put(GENDER + row, cap.getGender() != null ? (byte) cap.getGender().ordinal() : -1);
+        if (cap.getImageUrl() != null) {
+            var url = cap.getImageUrl().getBytes(StandardCharsets.UTF_8);
+            buffer.putLong(URL + row * Long.BYTES, appendUrl(url));
+            buffer.putInt(URL_LENGTH + row * Integer.BYTES, url.length);
+        } else {
+            buffer.putInt(URL_LENGTH + row * Integer.BYTES, -1);
+        }
+        return size++;
+    }
+
+    // the reference of the bytes is the number of the url block in the high half and the offset in the low one
+    private long appendUrl(byte[] url) {
+        var current = urlBlocks;
+        if (current.length == 0 || urlPosition + url.length > current[current.length - 1].capacity()) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = ByteBuffer.allocateDirect(Math.max(URL_BLOCK_SIZE, url.length));
+            urlBlocks = current;
+            urlPosition = 0;
+        }
+        int block = current.length - 1;
+        current[block].put(urlPosition, url);
+        long reference = (long) block << 32 | urlPosition;
+        urlPosition += url.length;
+        urlBytes += url.length;
+        return reference;
+    }
+
+    // decodes the row with absolute gets only, so the buffers are shared by all the readers
+    public Cap get(int position) {
+        var current = blocks;
+        int block = position >>> BLOCK_SHIFT;
+        if (position < 0 || block >= current.length) {
+            throw new IndexOutOfBoundsException(String.format("position %d out of bounds", position));
+        }
+        var buffer = current[block];
+        int row = position & BLOCK_MASK;
+        var cap = new Cap.CapBuilder(STYLES[buffer.get(STYLE + row)],
+                colors.value(buffer.getInt(COLOR + row * Integer.BYTES)),
+                brands.value(buffer.getInt(BRAND + row * Integer.BYTES)),
+                buffer.getDouble(PRICE + row * Double.BYTES),
+                SIZES[buffer.get(SIZE + row)],
+                buffer.getInt(STOCK + row * Integer.BYTES))
+                .setId(buffer.getLong(ID + row * Long.BYTES))
+                .setCollaboration(collaborations.value(buffer.getInt(COLLABORATION + row * Integer.BYTES)))
+                .setImageUrl(url(buffer.getLong(URL + row * Long.BYTES), buffer.getInt(URL_LENGTH + row * Integer.BYTES)))
+                .build();
+        byte gender = buffer.get(GENDER + row);
+        if (gender >= 0) {
+            cap.setGender(GENDERS[gender]);
+        }
+        return cap;
+    }
+
+    private String url(long reference, int length) {
+        if (length < 0) {
+            return null;
+        }
+        var bytes = new byte[length];
+        urlBlocks[(int) (reference >>> 32)].get((int) reference, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // number of rows added, it must be read by the writer thread only
+    public int size() {
+        return size;
+    }
+
+    // bytes allocated out of the heap, the free space of the last blocks included
+    public long offHeapBytes() {
+        long bytes = (long) blocks.length * BLOCK_SIZE;
+        for (ByteBuffer block : urlBlocks) {
+            bytes += block.capacity();
+        }
+        return bytes;
+    }
+
+    // bytes of the rows themselves: the columns and the urls, without the free space of the blocks
+    public long usedBytes() {
+        return (long) size * (BLOCK_SIZE / BLOCK_ROWS) + urlBytes;
+    }
+
+    // distinct values kept in the dictionaries, the only strings of the store in the heap
+    public int dictionaryValues() {
+        return brands.size() + colors.size() + collaborations.size();
+    }
+}
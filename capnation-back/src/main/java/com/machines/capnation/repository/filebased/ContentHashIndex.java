@@ -0,0 +1,156 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.model.Cap;
+
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/***
+ * Index of the heap by the content of the caps: a 64 bits hash of every field compared by Cap.similar (all of them
+ * but the id) -> position in the heap. It finds a similar cap with one probe sequence instead of a scan, the caps of
+ * the positions with the same hash are compared with Cap.similar, so a collision never rejects a different cap.
+ * It's an open addressing table of parallel primitive arrays where a hash can repeat: the heap can have similar
+ * caps saved before the index existed.
+ * The index lives in memory and it's only used by the writer, under the lock of the repository.
+ */
+public class ContentHashIndex {
+    public static final int NOT_FOUND = -1;
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int MIN_CAPACITY = 16;
+    private static final long PRIME = 0x100000001B3L;
+
+    private final IntFunction<Cap> caps;
+    private long[] hashes;
+    private int[] positions; // position + 1, 0 is an empty slot
+    private int size;
+    private int threshold;
+
+    // caps resolves the positions of the index to their caps
+    public ContentHashIndex(IntFunction<Cap> caps, int expectedSize) {
+        this.caps = caps;
+        allocate(tableSizeFor((int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR)));
+    }
+
+    /***
+     * Builds the index of the first size positions, the hashes are computed in parallel and then inserted in
+     * position order
+     */
+    public static ContentHashIndex build(IntFunction<Cap> caps, int size) {
+        var hashes = new long[size];
+        IntStream.range(0, size).parallel().forEach(position -> hashes[position] = hash(caps.apply(position)));
+        var index = new ContentHashIndex(caps, size);
+        for (int position = 0; position < size; position++) {
+            index.add(hashes[position], position);
+        }
+        return index;
+    }
+
+    public void add(Cap cap, int position) {
+        add(hash(cap), position);
+    }
+
+    /***
+     * @return the position of a cap similar to the given one, or NOT_FOUND
+     */
+    public int findSimilar(Cap cap) {
+        long hash = hash(cap);
+        int mask = hashes.length - 1;
+        for (int slot = slot(hash, mask); positions[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && caps.apply(positions[slot] - 1).similar(cap)) {
+                return positions[slot] - 1;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // bytes of the arrays of the table
+    public long memoryBytes() {
+        return (long) hashes.length * Long.BYTES + (long) positions.length * Integer.BYTES;
+    }
+
+    private void add(long hash, int position) {
+        int mask = hashes.length - 1;
+        int slot = slot(hash, mask);
+        while (positions[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        positions[slot] = position + 1;
+        if (++size > threshold) {
+            rehash(hashes.length << 1);
+        }
+    }
+
+    private void rehash(int capacity) {
+        var oldHashes = hashes;
+        var oldPositions = positions;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldPositions[i] != 0) {
+                int slot = slot(oldHashes[i], mask);
+                while (positions[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                positions[slot] = oldPositions[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new long[capacity];
+        positions = new int[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /***
+     * FNV-1a of the fields of Cap.similar, with a separator after every text so ("ab", "c") and ("a", "bc") don't
+     * collide. It only depends on the values, so it's the same in every run.
+     */
+    static long hash(Cap cap) {
+        long hash = 0xCBF29CE484222325L;
+        hash = mix(hash, Double.doubleToLongBits(cap.getPrice()));
+        hash = mix(hash, cap.getStock());
+        hash = mix(hash, cap.getStyle() != null ? cap.getStyle().ordinal() : -1);
+        hash = mix(hash, cap.getSize() != null ? cap.getSize().ordinal() : -1);
+        hash = mix(hash, cap.getGender() != null ? cap.getGender().ordinal() : -1);
+        hash = mix(hash, cap.getBrand());
+        hash = mix(hash, cap.getColor());
+        hash = mix(hash, cap.getCollaboration());
+        return mix(hash, cap.getImageUrl());
+    }
+
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash = (hash ^ (value & 0xFF)) * PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, String value) {
+        if (value == null) {
+            return (hash ^ 0xFFFF) * PRIME;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * PRIME;
+        }
+        return (hash ^ 0x10000) * PRIME;
+    }
+
+    // the low bits of FNV are weak, the slot takes the high ones
+    private static int slot(long hash, int mask) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        return Math.max(n, MIN_CAPACITY);
+    }
+}
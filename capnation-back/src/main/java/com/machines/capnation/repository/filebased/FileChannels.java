@@ -0,0 +1,47 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.exceptions.CapDatabaseException;
+import com.machines.capnation.metrics.CapMetrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// helpers to write the database files through a FileChannel
+final class FileChannels {
+    private FileChannels() {
+    }
+
+    static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+    }
+
+    // append to (or overwrite) a file and force it to disk
+    static void write(Path file, String text, boolean append) {
+        write(file, ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), append);
+    }
+
+    static void write(Path file, ByteBuffer buffer, boolean append) {
+        var options = append
+                ? new StandardOpenOption[]{StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND}
+                : new StandardOpenOption[]{StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING};
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            int length = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            CapMetrics.bytesWritten(file, length);
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.collection.ChunkedLongArray;
+import com.machines.capnation.collection.LongIntHashMap;
+import com.machines.capnation.collection.LongList;
+import com.machines.capnation.exceptions.CapDatabaseException;
+import com.machines.capnation.metrics.CapMetrics;
+import com.machines.capnation.model.Index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/***
+ * Primary index resident in memory in a LongIntHashMap.
+ * The file (capIndex.txt) has one Index line per entry in insertion order, flush() appends the new entries.
+ * For the ordered scans the ids are also kept by position: a sorted copy of them is cached and the ids put after it
+ * are sorted apart and merged while scanning, until they are too many and the sorted copy is built again.
+ * Both sorted runs are cached for the last row count scanned, so the pages of a scan of the same snapshot don't sort.
+ */
+public class HashPrimaryIndex implements PrimaryIndex {
+    private final Path file;
+    private final LongIntHashMap entries = new LongIntHashMap();
+    private final LongList pending = new LongList();
+    private volatile ChunkedLongArray idsByPosition = new ChunkedLongArray();
+    private volatile SortedIds sortedIds = SortedIds.EMPTY;
+
+    // ids of the positions lower than baseRowCount sorted in base, and the ones from there to rowCount in recent
+    private record SortedIds(long[] base, int baseRowCount, long[] recent, int rowCount) {
+        static final SortedIds EMPTY = new SortedIds(new long[0], 0, new long[0], 0);
+    }
+
+    public HashPrimaryIndex(Path file) {
+        this.file = file;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    var idx = Index.fromLine(line);
+                    entries.put(idx.getKey(), idx.getDirection());
+                    idsByPosition.add(idx.getKey());
+                }
+            }
+            CapMetrics.bytesRead(file, FileChannels.size(file));
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+    }
+
+    /***
+     * Index of the ids of a snapshot of the heap, the file is not read: it's only appended by flush()
+     */
+    public HashPrimaryIndex(Path file, LongList restoredIds) {
+        this.file = file;
+        for (int position = 0; position < restoredIds.size(); position++) {
+            entries.put(restoredIds.get(position), position);
+            idsByPosition.add(restoredIds.get(position));
+        }
+    }
+
+    @Override
+    public int get(long id) {
+        return entries.get(id);
+    }
+
+    @Override
+    public void put(long id, int position) {
+        entries.put(id, position);
+        idsByPosition.add(id);
+        pending.add(id);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void scan(long afterId, int rowCount, EntryVisitor visitor) {
+        var sorted = sortedRuns(rowCount);
+        // the cache can be newer than the caller, its entries after rowCount are skipped
+        var base = sorted.base();
+        var recent = sorted.recent();
+        int i = firstAfter(base, afterId);
+        int j = firstAfter(recent, afterId);
+        while (i < base.length || j < recent.length) {
+            long id = j == recent.length || (i < base.length && base[i] < recent[j]) ? base[i++] : recent[j++];
+            int position = entries.get(id);
+            if (position < rowCount && !visitor.visit(id, position)) {
+                return;
+            }
+        }
+    }
+
+    // the cached runs when they cover rowCount, otherwise the recent ids (or all of them) are sorted once and cached
+    private SortedIds sortedRuns(int rowCount) {
+        var sorted = sortedIds;
+        if (rowCount <= sorted.rowCount()) {
+            return sorted;
+        }
+        int baseRowCount = sorted.baseRowCount();
+        if (rowCount - baseRowCount > Math.max(1024, baseRowCount / 64)) {
+            sorted = new SortedIds(sortedIds(0, rowCount), rowCount, new long[0], rowCount);
+        } else {
+            sorted = new SortedIds(sorted.base(), baseRowCount, sortedIds(baseRowCount, rowCount), rowCount);
+        }
+        sortedIds = sorted;
+        return sorted;
+    }
+
+    // ids of the positions [from, to) sorted
+    private long[] sortedIds(int from, int to) {
+        var positions = idsByPosition;
+        var ids = new long[Math.max(to - from, 0)];
+        for (int position = from; position < to; position++) {
+            ids[position - from] = positions.get(position);
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private static int firstAfter(long[] ids, long afterId) {
+        int index = Arrays.binarySearch(ids, afterId);
+        return index >= 0 ? index + 1 : -(index + 1);
+    }
+
+    @Override
+    public void rebuild(LongList idsByPosition) {
+        entries.clear();
+        pending.clear();
+        var positions = new ChunkedLongArray();
+        var lines = new StringBuilder();
+        for (int i = 0; i < idsByPosition.size(); i++) {
+            var idx = new Index(idsByPosition.get(i), i);
+            entries.put(idx.getKey(), idx.getDirection());
+            positions.add(idx.getKey());
+            lines.append(idx.toLine()).append('\n');
+        }
+        this.idsByPosition = positions;
+        sortedIds = SortedIds.EMPTY;
+        FileChannels.write(file, lines.toString(), false);
+    }
+
+    @Override
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        var lines = new StringBuilder();
+        pending.forEach(id -> lines.append('\n').append(new Index(id, entries.get(id)).toLine()));
+        FileChannels.write(file, lines.toString(), true);
+        pending.clear();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
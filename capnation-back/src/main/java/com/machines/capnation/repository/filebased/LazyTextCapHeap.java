@@ -0,0 +1,164 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.collection.ChunkedArray;
+import com.machines.capnation.collection.ChunkedLongArray;
+import com.machines.capnation.exceptions.CapDatabaseException;
+import com.machines.capnation.formatter.CapFormatter;
+import com.machines.capnation.metrics.CapMetrics;
+import com.machines.capnation.model.Cap;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/***
+ * Text heap (the same caps.file as TextCapHeap) that keeps the rows in the file: it's memory mapped, the load only
+ * finds where every line starts and get returns a LazyCap over the bytes of the line, which decodes the fields
+ * the request reads. A row takes 8 bytes of the Java heap: the start of its line and its length in one long.
+ * The caps appended after the last flush are kept in memory until the next one, like in BinaryCapHeap.
+ */
+public class LazyTextCapHeap implements CapHeap {
+    private static final Logger log = LoggerFactory.getLogger(LazyTextCapHeap.class);
+    private static final CapFormatter CAP_FORMATTER = new CapFormatter();
+    private static final int LENGTH_BITS = 24;
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+    private static final Counter FORMATTED_CAPS = CapMetrics.caps("format", "text");
+
+    private final Path file;
+    private final ChunkedLongArray lines = new ChunkedLongArray(); // start of the line << LENGTH_BITS | its length
+    private volatile Pending pending = new Pending(0);
+    private volatile MappedByteBuffer mapped;
+
+    // caps not flushed yet, the first one is in the position first of the heap
+    private record Pending(int first, ChunkedArray<Cap> caps) {
+        Pending(int first) {
+            this(first, new ChunkedArray<>());
+        }
+    }
+
+    public LazyTextCapHeap(Path file) {
+        this.file = file;
+        long start = System.nanoTime();
+        remap();
+        findLines(mapped);
+        pending = new Pending(lines.size());
+        log.info("Found {} caps in {} in {} ms, their fields are decoded when they are read", lines.size(), file,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // the blank lines are skipped, like in ParallelCapLoader, so the positions are the same as with TextCapHeap
+    private void findLines(ByteBuffer buffer) {
+        var bytes = new byte[SCAN_BUFFER_SIZE];
+        int limit = buffer.limit();
+        int lineStart = 0;
+        boolean blank = true;
+        for (int offset = 0; offset < limit; offset += bytes.length) {
+            int length = Math.min(bytes.length, limit - offset);
+            buffer.get(offset, bytes, 0, length);
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] == '\n') {
+                    if (!blank) {
+                        addLine(lineStart, offset + i);
+                    }
+                    lineStart = offset + i + 1;
+                    blank = true;
+                } else if (blank && !Character.isWhitespace(bytes[i])) {
+                    blank = false;
+                }
+            }
+        }
+        if (!blank) {
+            addLine(lineStart, limit);
+        }
+    }
+
+    private void addLine(long start, long end) {
+        long length = end - start;
+        if (length > LENGTH_MASK) {
+            throw new CapDatabaseException(String.format("The line at offset %d of the heap is too long", start));
+        }
+        lines.add(start << LENGTH_BITS | length);
+    }
+
+    private void remap() {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new CapDatabaseException("The text heap can't be bigger than 2GB with the LAZY storage");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+    }
+
+    @Override
+    public int size() {
+        var current = pending;
+        return current.first() + current.caps().size();
+    }
+
+    @Override
+    public Cap get(int position) {
+        // the lines and the mapping are published before the pending group that starts after them
+        var current = pending;
+        if (position >= current.first()) {
+            return current.caps().get(position - current.first());
+        }
+        long line = lines.get(position);
+        var bytes = new byte[(int) (line & LENGTH_MASK)];
+        mapped.get((int) (line >>> LENGTH_BITS), bytes);
+        return CAP_FORMATTER.lazyCap(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public int append(Cap cap) {
+        pending.caps().add(cap);
+        return size() - 1;
+    }
+
+    // every cap is written after a new line, as TextCapHeap does
+    @Override
+    public void flush() {
+        var flushed = pending;
+        int count = flushed.caps().size();
+        if (count == 0) {
+            return;
+        }
+        var encoded = new byte[count][];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            encoded[i] = CAP_FORMATTER.capToText(flushed.caps().get(i)).getBytes(StandardCharsets.UTF_8);
+            length += encoded[i].length + 1;
+        }
+        var buffer = ByteBuffer.allocate(length);
+        long end = FileChannels.size(file);
+        var newLines = new long[count];
+        for (int i = 0; i < count; i++) {
+            buffer.put((byte) '\n');
+            newLines[i] = end + buffer.position();
+            buffer.put(encoded[i]);
+        }
+        buffer.flip();
+        FileChannels.write(file, buffer, true);
+        FORMATTED_CAPS.increment(count);
+        remap();
+        for (int i = 0; i < count; i++) {
+            addLine(newLines[i], newLines[i] + encoded[i].length);
+        }
+        pending = new Pending(flushed.first() + count);
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
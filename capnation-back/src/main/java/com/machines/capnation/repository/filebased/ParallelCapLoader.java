@@ -0,0 +1,148 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.exceptions.CapDatabaseException;
+import com.machines.capnation.formatter.CapFormatter;
+import com.machines.capnation.metrics.CapMetrics;
+import com.machines.capnation.model.Cap;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/***
+ * Loads a text heap (caps.txt) in parallel: the file is split in chunks that end in a new line, every chunk is
+ * memory mapped and parsed by a task of the fork-join pool, and the rows of the chunks are joined in file order
+ * so the position of every cap is the same as with a sequential read.
+ */
+public final class ParallelCapLoader {
+    private static final Logger log = LoggerFactory.getLogger(ParallelCapLoader.class);
+    private static final CapFormatter CAP_FORMATTER = new CapFormatter();
+    private static final Counter PARSED_CAPS = CapMetrics.caps("parse", "text");
+    static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = 64 << 20;
+
+    private ParallelCapLoader() {
+    }
+
+    public static List<Cap> load(Path file) {
+        return load(file, 0);
+    }
+
+    // the caps of the lines after the offset from, which must be the start of a line
+    public static List<Cap> load(Path file, long from) {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size() - from;
+            int parallelism = ForkJoinPool.commonPool().getParallelism();
+            long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / (parallelism * 4L)));
+            return load(file, channel, from, chunkSize);
+        } catch (IOException e) {
+            throw new CapDatabaseException(e.getMessage());
+        }
+    }
+
+    // the chunk size is a parameter for the tests, the chunks are bigger when a line crosses their end
+    static List<Cap> load(Path file, FileChannel channel, long from, long chunkSize) throws IOException {
+        long start = System.nanoTime();
+        var boundaries = boundaries(channel, from, chunkSize);
+        List<Callable<List<Cap>>> tasks = new ArrayList<>(boundaries.size() - 1);
+        for (int i = 0; i + 1 < boundaries.size(); i++) {
+            long chunkStart = boundaries.get(i);
+            long chunkEnd = boundaries.get(i + 1);
+            tasks.add(() -> parse(channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkEnd - chunkStart)));
+        }
+
+        var caps = new ArrayList<Cap>();
+        try {
+            for (Future<List<Cap>> chunk : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                caps.addAll(chunk.get());
+            }
+        } catch (ExecutionException e) {
+            throw new CapDatabaseException(String.format("Can't load the heap %s: %s", file, e.getCause().getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CapDatabaseException("interrupted while loading the heap");
+        }
+
+        CapMetrics.bytesRead(file, channel.size() - from);
+        PARSED_CAPS.increment(caps.size());
+        long millis = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+        log.info("Loaded {} caps from {} in {} ms ({} caps/s) with {} chunks",
+                caps.size(), file, millis, caps.size() * 1000L / millis, tasks.size());
+        return caps;
+    }
+
+    // offsets where the chunks start plus the size of the file, every chunk but the first starts after a new line
+    private static List<Long> boundaries(FileChannel channel, long from, long chunkSize) throws IOException {
+        long size = channel.size();
+        var boundaries = new ArrayList<Long>();
+        boundaries.add(from);
+        var buffer = ByteBuffer.allocate(4096);
+        long position = from + chunkSize;
+        while (position < size) {
+            long lineEnd = -1;
+            while (lineEnd < 0 && position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        lineEnd = position + i;
+                        break;
+                    }
+                }
+                position += Math.max(read, 0);
+            }
+            if (lineEnd < 0 || lineEnd + 1 >= size) {
+                break;
+            }
+            boundaries.add(lineEnd + 1);
+            position = lineEnd + 1 + chunkSize;
+        }
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    private static List<Cap> parse(MappedByteBuffer chunk) {
+        var caps = new ArrayList<Cap>(chunk.limit() / 64);
+        var line = new byte[256];
+        int lineStart = 0;
+        int limit = chunk.limit();
+        for (int i = 0; i <= limit; i++) {
+            if (i < limit && chunk.get(i) != '\n') {
+                continue;
+            }
+            int length = i - lineStart;
+            if (length > 0) {
+                if (length > line.length) {
+                    line = new byte[Math.max(length, line.length * 2)];
+                }
+                chunk.get(lineStart, line, 0, length);
+                if (!isBlank(line, length)) {
+                    caps.add(CAP_FORMATTER.bytesToCap(line, 0, length));
+                }
+            }
+            lineStart = i + 1;
+        }
+        return caps;
+    }
+
+    private static boolean isBlank(byte[] line, int length) {
+        for (int i = 0; i < length; i++) {
+            if (!Character.isWhitespace(line[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
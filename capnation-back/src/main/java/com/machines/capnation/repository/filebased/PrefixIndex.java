@@ -0,0 +1,274 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.Suggestion;
+import com.machines.capnation.model.index.BrandIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/***
+ * Sorted dictionaries of the distinct brands, colors and collaborations (normalized like BrandIndex.normalize) with
+ * the number of caps of every value, for the completions of a prefix. The values of a prefix are a range of the
+ * dictionary found with two binary searches, and they are ranked by caps in one of two ways: a narrow range is
+ * scanned with a bounded heap, and a wide one is found in the list of all the values by caps, where the first
+ * values of the range come soon. Either way a lookup reads about sqrt(limit * values) entries at most.
+ * A value takes a slot in the arrays of its field, so the memory depends on the distinct values and not on the
+ * caps. The index lives in memory, it's built from the heap when the repository loads; a single writer adds the
+ * caps and publish() makes a new copy of the fields that changed, which the readers use without locks.
+ */
+public class PrefixIndex {
+    private static final Dictionary EMPTY = new Dictionary(new String[0], new String[0], new int[0], new int[0]);
+
+    private final Map<Suggestion.Field, Values> fields = new EnumMap<>(Suggestion.Field.class);
+
+    // published values of a field in key order, byCount has their indexes from the most used to the least
+    private record Dictionary(String[] keys, String[] values, int[] counts, int[] byCount) {
+        int size() {
+            return keys.length;
+        }
+    }
+
+    /***
+     * Values of a field for the writer, a value keeps its slot in the arrays. The slots are also kept by count:
+     * an increment swaps the slot with the first one of its count, so the order stays sorted without moving the
+     * rest (the order of the ties changes, the readers sort them).
+     */
+    private static final class Values {
+        private final Map<String, Integer> slots = new HashMap<>();
+        private String[] keys = new String[16];
+        private String[] values = new String[16]; // the first spelling of every key
+        private int[] counts = new int[16];
+        private int[] byCount = new int[16]; // slots from the most used to the least
+        private int[] countOrder = new int[16]; // position of every slot in byCount
+        private int size;
+        private int[] sorted = new int[0]; // published slots in key order
+        private int[] keyOrder = new int[0]; // index of every published slot in sorted
+        private final List<Integer> added = new ArrayList<>(); // slots not published yet
+        private boolean changed;
+        private volatile Dictionary published = EMPTY;
+
+        void add(String value) {
+            var key = BrandIndex.normalize(value);
+            var slot = slots.get(key);
+            if (slot == null) {
+                slot = newSlot(key, value);
+            }
+            increment(slot);
+            changed = true;
+        }
+
+        private int newSlot(String key, String value) {
+            if (size == keys.length) {
+                int capacity = size * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                values = Arrays.copyOf(values, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                byCount = Arrays.copyOf(byCount, capacity);
+                countOrder = Arrays.copyOf(countOrder, capacity);
+            }
+            int slot = size++;
+            slots.put(key, slot);
+            keys[slot] = key;
+            values[slot] = value;
+            // a count of 0 is the lowest, so it goes last
+            byCount[slot] = slot;
+            countOrder[slot] = slot;
+            added.add(slot);
+            return slot;
+        }
+
+        private void increment(int slot) {
+            int count = counts[slot];
+            // first position of the slots with the same count
+            int low = 0;
+            int high = countOrder[slot];
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (counts[byCount[middle]] > count) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            int first = byCount[low];
+            byCount[low] = slot;
+            byCount[countOrder[slot]] = first;
+            countOrder[first] = countOrder[slot];
+            countOrder[slot] = low;
+            counts[slot]++;
+        }
+
+        void publish() {
+            if (!changed) {
+                return;
+            }
+            if (!added.isEmpty()) {
+                added.sort((left, right) -> keys[left].compareTo(keys[right]));
+                sorted = merge(sorted, added);
+                added.clear();
+                keyOrder = new int[size];
+                for (int i = 0; i < sorted.length; i++) {
+                    keyOrder[sorted[i]] = i;
+                }
+            }
+            // without new values only the counts change, the keys are shared with the previous copy
+            var current = published;
+            boolean sameKeys = current.size() == size;
+            var dictionary = sameKeys
+                    ? new Dictionary(current.keys(), current.values(), new int[size], new int[size])
+                    : new Dictionary(new String[size], new String[size], new int[size], new int[size]);
+            for (int i = 0; i < size; i++) {
+                int slot = sorted[i];
+                if (!sameKeys) {
+                    dictionary.keys()[i] = keys[slot];
+                    dictionary.values()[i] = values[slot];
+                }
+                dictionary.counts()[i] = counts[slot];
+                dictionary.byCount()[i] = keyOrder[byCount[i]];
+            }
+            published = dictionary;
+            changed = false;
+        }
+
+        // both in key order, the keys are distinct
+        private int[] merge(int[] current, List<Integer> batch) {
+            var merged = new int[current.length + batch.size()];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < merged.length; k++) {
+                if (j == batch.size() || i < current.length && keys[current[i]].compareTo(keys[batch.get(j)]) < 0) {
+                    merged[k] = current[i++];
+                } else {
+                    merged[k] = batch.get(j++);
+                }
+            }
+            return merged;
+        }
+    }
+
+    public PrefixIndex() {
+        for (Suggestion.Field field : Suggestion.Field.values()) {
+            fields.put(field, new Values());
+        }
+    }
+
+    public void add(Cap cap) {
+        fields.get(Suggestion.Field.BRAND).add(cap.getBrand());
+        fields.get(Suggestion.Field.COLOR).add(cap.getColor());
+        if (cap.getCollaboration() != null) {
+            fields.get(Suggestion.Field.COLLABORATION).add(cap.getCollaboration());
+        }
+    }
+
+    /***
+     * Makes the caps added since the last call visible to suggest, the fields without changes keep their copy
+     */
+    public void publish() {
+        fields.values().forEach(Values::publish);
+    }
+
+    // number of distinct published values of the field
+    public int size(Suggestion.Field field) {
+        return fields.get(field).published.size();
+    }
+
+    /***
+     * Up to limit published values of the field that start with the prefix, the ones with more caps first and
+     * then in alphabetical order
+     * @param prefix normalized like BrandIndex.normalize, an empty prefix ranks all the values
+     */
+    public List<Suggestion> suggest(Suggestion.Field field, String prefix, int limit) {
+        var dictionary = fields.get(field).published;
+        var keys = dictionary.keys();
+        int from = lowerBound(keys, prefix);
+        int to = from;
+        // the keys of the prefix are the ones before the first greater key that doesn't start with it
+        int high = keys.length;
+        while (to < high) {
+            int middle = (to + high) >>> 1;
+            if (keys[middle].startsWith(prefix)) {
+                to = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        long range = to - from;
+        var found = range * range <= (long) limit * keys.length
+                ? scanRange(dictionary, from, to, limit)
+                : scanByCount(dictionary, from, to, limit);
+        var suggestions = new ArrayList<Suggestion>(found.length);
+        for (int index : found) {
+            suggestions.add(new Suggestion(dictionary.values()[index], dictionary.counts()[index]));
+        }
+        return suggestions;
+    }
+
+    // the range is in key order, so the lower index wins the ties
+    private static int[] scanRange(Dictionary dictionary, int from, int to, int limit) {
+        var counts = dictionary.counts();
+        var top = new PriorityQueue<Integer>(Math.min(limit, to - from) + 1,
+                (left, right) -> counts[left] != counts[right] ? Integer.compare(counts[left], counts[right]) : Integer.compare(right, left));
+        for (int i = from; i < to; i++) {
+            if (top.size() < limit) {
+                top.add(i);
+            } else if (counts[i] > counts[top.peek()]) {
+                top.poll();
+                top.add(i);
+            }
+        }
+        var found = new int[top.size()];
+        for (int i = found.length - 1; i >= 0; i--) {
+            found[i] = top.poll();
+        }
+        return found;
+    }
+
+    // the values by caps until limit of them are in the range, plus the rest of the range with the count of the last
+    private static int[] scanByCount(Dictionary dictionary, int from, int to, int limit) {
+        var counts = dictionary.counts();
+        var byCount = dictionary.byCount();
+        var found = new int[Math.min(limit, to - from) + 16];
+        int size = 0;
+        int lastCount = -1;
+        for (int i = 0; i < byCount.length; i++) {
+            int index = byCount[i];
+            if (size >= limit && counts[index] < lastCount) {
+                break;
+            }
+            if (index >= from && index < to) {
+                if (size == found.length) {
+                    found = Arrays.copyOf(found, size * 2);
+                }
+                found[size++] = index;
+                lastCount = counts[index];
+            }
+        }
+        // ties are in no order in byCount
+        return Arrays.stream(found, 0, size).boxed()
+                .sorted((left, right) -> counts[left] != counts[right] ? Integer.compare(counts[right], counts[left]) : Integer.compare(left, right))
+                .limit(limit)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    // first key not lower than the prefix
+    private static int lowerBound(String[] keys, String prefix) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
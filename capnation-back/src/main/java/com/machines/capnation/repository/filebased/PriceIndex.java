@@ -0,0 +1,208 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.collection.ChunkedLongArray;
+
+/***
+ * Index of the positions of the heap by price, for range scans in both orders.
+ * The entries are kept in three sorted runs of parallel primitive arrays, in tiers: the base, with most of the rows,
+ * the middle run and the recent run. publish() sorts the rows of a batch and merges them into the recent run, when
+ * it grows over MAX_RECENT it's merged into the middle run, and when the middle run grows over 1/64 of the base it's
+ * merged into a new base. So the base, the biggest copy, is rebuilt once every size/64 rows and a save costs the
+ * same with a big catalog. The merges are linear, and a scan only needs a binary search and a merge of the runs.
+ * The index lives in memory, it's built from the heap when the repository loads. A single writer adds and
+ * publishes the rows, the readers use the published runs without locks.
+ */
+public class PriceIndex {
+    static final int MAX_RECENT = 4096;
+
+    // price of every position, as the bits of the double
+    private final ChunkedLongArray pricesByPosition = new ChunkedLongArray();
+    private int size;
+    private volatile Runs runs = new Runs(Run.EMPTY, Run.EMPTY, Run.EMPTY, 0);
+
+    // entries sorted by price and then by position
+    private record Run(double[] prices, int[] positions) {
+        static final Run EMPTY = new Run(new double[0], new int[0]);
+
+        int size() {
+            return prices.length;
+        }
+    }
+
+    // rowCount is the number of positions in the runs
+    private record Runs(Run base, Run middle, Run recent, int rowCount) {
+        Run[] all() {
+            return new Run[]{base, middle, recent};
+        }
+    }
+
+    public interface PositionVisitor {
+        // returns false to stop the scan
+        boolean visit(int position);
+    }
+
+    // the positions are the ones of the heap, so they are added in increasing order from 0
+    public void add(double price) {
+        pricesByPosition.add(Double.doubleToRawLongBits(price));
+        size++;
+    }
+
+    // price of a published position
+    public double price(int position) {
+        return Double.longBitsToDouble(pricesByPosition.get(position));
+    }
+
+    /***
+     * Makes the rows added since the last call visible to the scans
+     */
+    public void publish() {
+        var current = runs;
+        if (current.rowCount() == size) {
+            return;
+        }
+        var base = current.base();
+        var middle = current.middle();
+        var recent = merge(current.recent(), sortedRun(current.rowCount(), size));
+        if (recent.size() > MAX_RECENT) {
+            middle = merge(middle, recent);
+            recent = Run.EMPTY;
+        }
+        if (middle.size() > Math.max(MAX_RECENT, base.size() / 64)) {
+            base = merge(base, middle);
+            middle = Run.EMPTY;
+        }
+        runs = new Runs(base, middle, recent, size);
+    }
+
+    /***
+     * Visits the positions lower than rowCount with a price between min and max (both included), by price
+     * ascending or descending; the positions of the same price are visited in the same order
+     */
+    public void scan(double min, double max, boolean ascending, int rowCount, PositionVisitor visitor) {
+        var all = runs.all();
+        // next index of every run, walking up from min or down from max
+        var next = new int[all.length];
+        for (int r = 0; r < all.length; r++) {
+            next[r] = ascending ? lowerBound(all[r], min) : upperBound(all[r], max) - 1;
+        }
+        while (true) {
+            int chosen = -1;
+            for (int r = 0; r < all.length; r++) {
+                if (next[r] < 0 || next[r] >= all[r].size()) {
+                    continue;
+                }
+                if (chosen < 0) {
+                    chosen = r;
+                } else {
+                    int order = compare(all[r], next[r], all[chosen], next[chosen]);
+                    if (ascending ? order < 0 : order > 0) {
+                        chosen = r;
+                    }
+                }
+            }
+            if (chosen < 0) {
+                return;
+            }
+            var run = all[chosen];
+            int index = ascending ? next[chosen]++ : next[chosen]--;
+            if (ascending ? run.prices()[index] > max : run.prices()[index] < min) {
+                return;
+            }
+            if (run.positions()[index] < rowCount && !visitor.visit(run.positions()[index])) {
+                return;
+            }
+        }
+    }
+
+    // number of published entries with a price between min and max, it can include positions after a rowCount
+    public int count(double min, double max) {
+        int count = 0;
+        for (var run : runs.all()) {
+            count += upperBound(run, max) - lowerBound(run, min);
+        }
+        return count;
+    }
+
+    private static int compare(Run left, int i, Run right, int j) {
+        int byPrice = Double.compare(left.prices()[i], right.prices()[j]);
+        return byPrice != 0 ? byPrice : Integer.compare(left.positions()[i], right.positions()[j]);
+    }
+
+    // first index with a price greater or equal than price
+    private static int lowerBound(Run run, double price) {
+        int low = 0;
+        int high = run.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Double.compare(run.prices()[middle], price) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // first index with a price greater than price
+    private static int upperBound(Run run, double price) {
+        int low = 0;
+        int high = run.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Double.compare(run.prices()[middle], price) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // entries of the positions [from, to) sorted, the merge sort is stable so the positions stay in order
+    private Run sortedRun(int from, int to) {
+        int length = to - from;
+        var prices = new double[length];
+        var positions = new int[length];
+        for (int i = 0; i < length; i++) {
+            prices[i] = price(from + i);
+            positions[i] = from + i;
+        }
+        var run = new Run(prices, positions);
+        var merged = new Run(new double[length], new int[length]);
+        for (int width = 1; width < length; width <<= 1) {
+            for (int start = 0; start < length; start += width << 1) {
+                int middle = Math.min(start + width, length);
+                int end = Math.min(start + (width << 1), length);
+                merge(run, start, middle, run, middle, end, merged, start);
+            }
+            var sorted = merged;
+            merged = run;
+            run = sorted;
+        }
+        return run;
+    }
+
+    private static Run merge(Run left, Run right) {
+        if (right.size() == 0) {
+            return left;
+        }
+        if (left.size() == 0) {
+            return right;
+        }
+        var merged = new Run(new double[left.size() + right.size()], new int[left.size() + right.size()]);
+        merge(left, 0, left.size(), right, 0, right.size(), merged, 0);
+        return merged;
+    }
+
+    private static void merge(Run left, int i, int leftEnd, Run right, int j, int rightEnd, Run target, int k) {
+        while (i < leftEnd || j < rightEnd) {
+            if (j == rightEnd || (i < leftEnd && compare(left, i, right, j) <= 0)) {
+                target.prices()[k] = left.prices()[i];
+                target.positions()[k++] = left.positions()[i++];
+            } else {
+                target.prices()[k] = right.prices()[j];
+                target.positions()[k++] = right.positions()[j++];
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.collection.LongIntHashMap;
+import com.machines.capnation.collection.LongList;
+
+import java.io.Closeable;
+
+/***
+ * Index of the caps by id: every entry is an Index (key = id of the cap, direction = position in the heap).
+ * The entries put are visible immediately, they are persisted by flush().
+ * The entries are put in position order by a single writer, get and scan can be called from any thread.
+ */
+public interface PrimaryIndex extends Closeable {
+    int NO_VALUE = LongIntHashMap.NO_VALUE;
+
+    enum Type {
+        HASH, // resident hash map persisted in capIndex.file, see HashPrimaryIndex
+        BTREE // paged B+tree in capIndexTree.file, see BPlusTreePrimaryIndex
+    }
+
+    @FunctionalInterface
+    interface EntryVisitor {
+        boolean visit(long id, int position); // returns false to stop the scan
+    }
+
+    int get(long id); // position of the cap in the heap or NO_VALUE
+
+    default boolean containsKey(long id) {
+        return get(id) != NO_VALUE;
+    }
+
+    void put(long id, int position);
+
+    int size();
+
+    // visits in ascending order the entries with an id greater than afterId and a position lower than rowCount
+    void scan(long afterId, int rowCount, EntryVisitor visitor);
+
+    void rebuild(LongList idsByPosition); // replaces every entry, the position of an id is its index in the list
+
+    void flush();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,104 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.collection.ChunkedArray;
+import com.machines.capnation.formatter.CapFormatter;
+import com.machines.capnation.metrics.CapMetrics;
+import com.machines.capnation.model.Cap;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Heap in the original text format, one cap per line:
+ * id,style,color,brand,collaboration,price,size,gender,stock,image-url
+ * Text rows can't be addressed without reading the file, so every cap is kept in memory. The file is parsed
+ * in parallel at load (see ParallelCapLoader).
+ * They are kept as Cap objects, or with the COLUMNAR storage by column out of the Java heap (see ColumnarCapStore).
+ * The LAZY storage doesn't parse the file at all, see LazyTextCapHeap.
+ */
+public class TextCapHeap implements CapHeap {
+    private static final Logger log = LoggerFactory.getLogger(TextCapHeap.class);
+    private static final CapFormatter CAP_FORMATTER = new CapFormatter();
+    private static final Counter FORMATTED_CAPS = CapMetrics.caps("format", "text");
+
+    public enum Storage {
+        OBJECTS, // one Cap per row in the Java heap
+        COLUMNAR, // the rows in off-heap columns, a Cap is decoded on every get
+        LAZY // the rows stay in the mapped file, see LazyTextCapHeap
+    }
+
+    private final Path file;
+    private final ChunkedArray<Cap> capList; // null with the COLUMNAR storage
+    private final ColumnarCapStore columns; // null with the OBJECTS storage
+    private final List<Cap> pendingCaps = new ArrayList<>();
+
+    public TextCapHeap(Path file) {
+        this(file, Storage.OBJECTS);
+    }
+
+    public TextCapHeap(Path file, Storage storage) {
+        this(file, storage, List.of(), 0);
+    }
+
+    // the caps of a snapshot that covers the first bytes of the file, and the ones of the lines after them
+    public TextCapHeap(Path file, Storage storage, List<Cap> restored, long restoredLength) {
+        if (storage == Storage.LAZY) {
+            throw new IllegalArgumentException("The LAZY storage is a LazyTextCapHeap");
+        }
+        this.file = file;
+        this.capList = storage == Storage.OBJECTS ? new ChunkedArray<>() : null;
+        this.columns = storage == Storage.COLUMNAR ? new ColumnarCapStore() : null;
+        restored.forEach(this::add);
+        ParallelCapLoader.load(file, restoredLength).forEach(this::add);
+        if (columns != null) {
+            log.info("Stored {} caps in {} KB out of the heap, {} bytes per cap and {} distinct brands, colors and collaborations",
+                    columns.size(), columns.offHeapBytes() / 1024, columns.size() > 0 ? columns.usedBytes() / columns.size() : 0,
+                    columns.dictionaryValues());
+        }
+    }
+
+    private int add(Cap cap) {
+        if (columns != null) {
+            return columns.add(cap);
+        }
+        capList.add(cap);
+        return capList.size() - 1;
+    }
+
+    @Override
+    public int size() {
+        return columns != null ? columns.size() : capList.size();
+    }
+
+    @Override
+    public Cap get(int position) {
+        return columns != null ? columns.get(position) : capList.get(position);
+    }
+
+    @Override
+    public int append(Cap cap) {
+        pendingCaps.add(cap);
+        return add(cap);
+    }
+
+    @Override
+    public void flush() {
+        if (pendingCaps.isEmpty()) {
+            return;
+        }
+        var lines = new StringBuilder();
+        pendingCaps.forEach(cap -> CAP_FORMATTER.appendCap(cap, lines.append('\n')));
+        FileChannels.write(file, lines.toString(), true);
+        FORMATTED_CAPS.increment(pendingCaps.size());
+        pendingCaps.clear();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
@@ -1,15 +1,51 @@
 package com.machines.capnation.service;
 
+import com.machines.capnation.model.BatchSaveResult;
 import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapPage;
+import com.machines.capnation.model.CapSearch;
+import com.machines.capnation.model.CapSearchResult;
+import com.machines.capnation.model.CapStats;
+import com.machines.capnation.model.IdFilterStats;
+import com.machines.capnation.model.Readiness;
+import com.machines.capnation.model.SaveQueueStats;
+import com.machines.capnation.model.Suggestion;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface CapService {
+    // the most caps of a save-batch request, the NDJSON body isn't read past them
+    int MAX_BATCH_SIZE = 10_000;
+
     List<Cap> findAll();
 
-    Cap save(Cap cap);
+    CapPage findPage(long after, int limit);
+
+    void forEachCap(Consumer<Cap> action);
+
+    CompletableFuture<Cap> save(Cap cap);
+
+    BatchSaveResult saveBatch(List<Cap> caps);
 
     Cap findById(Long id);
 
     List<Cap> findByBrand(String brand);
+
+    CapSearchResult search(CapSearch search, int offset, int limit);
+
+    List<Cap> findByPrice(double min, double max, String sort, String brand, int limit);
+
+    List<Suggestion> suggest(String field, String prefix, int limit);
+
+    CapStats stats(String groupBy);
+
+    SaveQueueStats saveQueueStats();
+
+    IdFilterStats idFilterStats();
+
+    Readiness readiness();
+
+    long catalogVersion();
 }
@@ -1,13 +1,29 @@
 package com.machines.capnation.service.impl;
 
+import com.machines.capnation.exceptions.CapException;
 import com.machines.capnation.exceptions.InvalidParametersCapException;
+import com.machines.capnation.model.BatchSaveResult;
 import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapPage;
+import com.machines.capnation.model.CapSearch;
+import com.machines.capnation.model.CapSearchResult;
+import com.machines.capnation.model.CapStats;
+import com.machines.capnation.model.IdFilterStats;
+import com.machines.capnation.model.Readiness;
+import com.machines.capnation.model.SaveQueueStats;
+import com.machines.capnation.model.Suggestion;
 import com.machines.capnation.repository.CapRepository;
 import com.machines.capnation.service.CapService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.bind.annotation.ResponseStatus;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @Service
 public class CapServiceImplementation implements CapService {
@@ -18,23 +34,106 @@ public class CapServiceImplementation implements CapService {
         this.repository = repository;
     }
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_SUGGESTIONS = 100;
+
     @Override
     public List<Cap> findAll() {
         return repository.findAll();
     }
 
     @Override
-    public Cap save(Cap cap) {
+    public CapPage findPage(long after, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidParametersCapException(String.format("The limit must be between 1 and %d", MAX_PAGE_SIZE));
+        }
+        var caps = repository.findPage(after, limit);
+        // a full page may be followed by more caps, the client asks for the next one with the last id
+        var nextAfter = caps.size() == limit ? caps.get(caps.size() - 1).getId() : null;
+        return new CapPage(caps, nextAfter);
+    }
+
+    @Override
+    public void forEachCap(Consumer<Cap> action) {
+        repository.forEachCap(action);
+    }
+
+    @Override
+    public CompletableFuture<Cap> save(Cap cap) {
+        validate(cap);
+        return repository.saveAsync(cap);
+    }
+
+    /***
+     * Validates every cap with the same rules of save and saves the valid ones in one bulk load
+     */
+    @Override
+    public BatchSaveResult saveBatch(List<Cap> caps) {
+        if (caps.size() > MAX_BATCH_SIZE) {
+            throw new InvalidParametersCapException(String.format("A batch can have up to %d caps", MAX_BATCH_SIZE));
+        }
+        var errors = new CapException[caps.size()];
+        var valid = new ArrayList<Cap>(caps.size());
+        var validIndexes = new ArrayList<Integer>(caps.size());
+        for (int i = 0; i < caps.size(); i++) {
+            if (caps.get(i) == null) {
+                errors[i] = new InvalidParametersCapException("The cap can not be void");
+                continue;
+            }
+            try {
+                validate(caps.get(i));
+                valid.add(caps.get(i));
+                validIndexes.add(i);
+            } catch (InvalidParametersCapException e) {
+                errors[i] = e;
+            }
+        }
+        var rejections = repository.saveAll(valid);
+        for (int i = 0; i < valid.size(); i++) {
+            errors[validIndexes.get(i)] = rejections.get(i);
+        }
+
+        var items = new ArrayList<BatchSaveResult.Item>(caps.size());
+        int accepted = 0;
+        for (int i = 0; i < caps.size(); i++) {
+            long id = caps.get(i) != null ? caps.get(i).getId() : 0;
+            var error = errors[i];
+            items.add(new BatchSaveResult.Item(i, id, error == null, error != null ? error.getMessage() : null, status(error)));
+            if (error == null) {
+                accepted++;
+            }
+        }
+        return new BatchSaveResult(accepted, caps.size() - accepted, items);
+    }
+
+    // the status of the @ResponseStatus of the rejection, the one a single save would answer with
+    private static int status(CapException rejection) {
+        if (rejection == null) {
+            return HttpStatus.OK.value();
+        }
+        var status = AnnotatedElementUtils.findMergedAnnotation(rejection.getClass(), ResponseStatus.class);
+        return status != null ? status.code().value() : HttpStatus.INTERNAL_SERVER_ERROR.value();
+    }
+
+    private void validate(Cap cap) {
         if (cap.getPrice() <= 0) {
             throw new InvalidParametersCapException("The price of the cap is invalid");
         }
         if (cap.getStock() <= 0) {
             throw new InvalidParametersCapException("The stock of the gorra must be bigger than cero");
         }
-        if (cap.getColor().isBlank()) {
+        if (cap.getColor() == null || cap.getColor().isBlank()) {
             throw new InvalidParametersCapException("The color can not be void");
         }
-        return repository.save(cap);
+        if (cap.getBrand() == null || cap.getBrand().isBlank()) {
+            throw new InvalidParametersCapException("The brand can not be void");
+        }
+        if (cap.getStyle() == null) {
+            throw new InvalidParametersCapException("The style of the cap is required");
+        }
+        if (cap.getSize() == null) {
+            throw new InvalidParametersCapException("The size of the cap is required");
+        }
     }
 
     @Override
@@ -45,4 +144,77 @@ public class CapServiceImplementation implements CapService {
     public List<Cap> findByBrand(String brand) {
         return repository.findByBrand(brand);
     }
+
+    @Override
+    public CapSearchResult search(CapSearch search, int offset, int limit) {
+        if (search.isEmpty()) {
+            throw new InvalidParametersCapException("The search needs at least one filter");
+        }
+        if (offset < 0) {
+            throw new InvalidParametersCapException("The offset can not be negative");
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidParametersCapException(String.format("The limit must be between 1 and %d", MAX_PAGE_SIZE));
+        }
+        return repository.search(search, offset, limit);
+    }
+
+    @Override
+    public List<Cap> findByPrice(double min, double max, String sort, String brand, int limit) {
+        if (Double.isNaN(min) || Double.isNaN(max) || min < 0 || min > max) {
+            throw new InvalidParametersCapException("The price range must go from a min of 0 or more to a max not lower than the min");
+        }
+        if (!"asc".equalsIgnoreCase(sort) && !"desc".equalsIgnoreCase(sort)) {
+            throw new InvalidParametersCapException("The sort must be asc or desc");
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidParametersCapException(String.format("The limit must be between 1 and %d", MAX_PAGE_SIZE));
+        }
+        return repository.findByPrice(min, max, "asc".equalsIgnoreCase(sort), brand, limit);
+    }
+
+    @Override
+    public List<Suggestion> suggest(String field, String prefix, int limit) {
+        Suggestion.Field suggestField;
+        try {
+            suggestField = Suggestion.Field.valueOf(field.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidParametersCapException("The field must be brand, color or collaboration");
+        }
+        if (limit <= 0 || limit > MAX_SUGGESTIONS) {
+            throw new InvalidParametersCapException(String.format("The limit must be between 1 and %d", MAX_SUGGESTIONS));
+        }
+        return repository.suggest(suggestField, prefix, limit);
+    }
+
+    @Override
+    public CapStats stats(String groupBy) {
+        CapStats.GroupBy statsGroupBy;
+        try {
+            statsGroupBy = CapStats.GroupBy.valueOf(groupBy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidParametersCapException("The groupBy must be brand, style, size or gender");
+        }
+        return repository.stats(statsGroupBy);
+    }
+
+    @Override
+    public SaveQueueStats saveQueueStats() {
+        return repository.saveQueueStats();
+    }
+
+    @Override
+    public IdFilterStats idFilterStats() {
+        return repository.idFilterStats();
+    }
+
+    @Override
+    public Readiness readiness() {
+        return repository.readiness();
+    }
+
+    @Override
+    public long catalogVersion() {
+        return repository.catalogVersion();
+    }
 }
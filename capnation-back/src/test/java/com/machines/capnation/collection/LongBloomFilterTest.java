@@ -0,0 +1,72 @@
+package com.machines.capnation.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongBloomFilterTest {
+
+    // rate of keys never added for which the filter answers true
+    private static double falsePositiveRate(LongBloomFilter filter, long from, int count) {
+        int falsePositives = 0;
+        for (long key = from; key < from + count; key++) {
+            if (filter.mightContain(key)) {
+                falsePositives++;
+            }
+        }
+        return (double) falsePositives / count;
+    }
+
+    @Test
+    void never_miss_an_added_key() {
+        var filter = new LongBloomFilter(10_000, 0.01);
+        var random = new Random(3);
+        var keys = new long[10_000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+            filter.add(keys[i]);
+        }
+        for (long key : keys) {
+            assertTrue(filter.mightContain(key));
+        }
+        assertEquals(keys.length, filter.size());
+        assertEquals(1, filter.layers());
+    }
+
+    @Test
+    void keep_the_false_positive_rate_of_sequential_ids() {
+        for (double rate : new double[]{0.05, 0.01, 0.001}) {
+            var filter = new LongBloomFilter(100_000, rate);
+            for (long id = 1; id <= 100_000; id++) {
+                filter.add(id);
+            }
+            double observed = falsePositiveRate(filter, 1_000_000, 200_000);
+            assertTrue(observed <= rate, "observed " + observed + " with a rate of " + rate);
+        }
+    }
+
+    @Test
+    void grow_with_layers_without_losing_keys_or_the_rate() {
+        var filter = new LongBloomFilter(1_000, 0.01);
+        for (long id = 1; id <= 100_000; id++) {
+            filter.add(id);
+        }
+        assertTrue(filter.layers() > 1);
+        for (long id = 1; id <= 100_000; id++) {
+            assertTrue(filter.mightContain(id));
+        }
+        double observed = falsePositiveRate(filter, 1_000_000, 200_000);
+        assertTrue(observed <= 0.01, "observed " + observed);
+        // the layers have lower rates and are rounded to powers of two, so they take more than one sized for 100000
+        long bytes = filter.memoryBytes();
+        assertTrue(bytes > 100_000 * 9.6 / 8 && bytes < 100_000 * 8, "memory " + bytes);
+    }
+
+    @Test
+    void reject_an_invalid_rate() {
+        assertThrows(IllegalArgumentException.class, () -> new LongBloomFilter(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new LongBloomFilter(10, 1));
+    }
+}
@@ -0,0 +1,47 @@
+package com.machines.capnation.collection;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongIntHashMapTest {
+
+    @Test
+    void get_missing_key_returns_no_value() {
+        var map = new LongIntHashMap();
+        assertEquals(LongIntHashMap.NO_VALUE, map.get(42L));
+        assertFalse(map.containsKey(42L));
+    }
+
+    @Test
+    void put_and_get_after_resizing() {
+        var map = new LongIntHashMap(2);
+        for (int i = 1; i <= 10_000; i++) {
+            map.put(i * 31L, i);
+        }
+        assertEquals(10_000, map.size());
+        for (int i = 1; i <= 10_000; i++) {
+            assertEquals(i, map.get(i * 31L));
+        }
+    }
+
+    @Test
+    void put_replaces_previous_value() {
+        var map = new LongIntHashMap();
+        assertEquals(LongIntHashMap.NO_VALUE, map.put(7L, 1));
+        assertEquals(1, map.put(7L, 2));
+        assertEquals(2, map.get(7L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void zero_and_negative_keys() {
+        var map = new LongIntHashMap();
+        map.put(0L, 5);
+        map.put(-3L, 6);
+        assertTrue(map.containsKey(0L));
+        assertEquals(5, map.get(0L));
+        assertEquals(6, map.get(-3L));
+        assertEquals(2, map.size());
+    }
+}
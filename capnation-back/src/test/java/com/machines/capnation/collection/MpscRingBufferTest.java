@@ -0,0 +1,60 @@
+package com.machines.capnation.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscRingBufferTest {
+
+    @Test
+    void offer_fails_when_full() {
+        var buffer = new MpscRingBuffer<Integer>(3);
+        assertEquals(4, buffer.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        List<Integer> taken = new ArrayList<>();
+        assertEquals(2, buffer.drain(taken::add, 2));
+        assertTrue(buffer.offer(4));
+        assertEquals(3, buffer.drain(taken::add, 10));
+        assertEquals(List.of(0, 1, 2, 3, 4), taken);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void keep_the_order_of_every_producer() throws InterruptedException {
+        var buffer = new MpscRingBuffer<long[]>(64);
+        int producers = 4;
+        int perProducer = 50_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            threads.add(new Thread(() -> {
+                for (long i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(new long[]{producer, i})) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+
+        var next = new long[producers];
+        int taken = 0;
+        while (taken < producers * perProducer) {
+            taken += buffer.drain(element -> assertEquals(next[(int) element[0]]++, element[1]), 16);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (long count : next) {
+            assertEquals(perProducer, count);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.machines.capnation.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoaringBitmapTest {
+    private static final int UNIVERSE = 1 << 20;
+
+    // every value is added with the given probability, dense ones become bitmap containers
+    private static BitSet randomSet(Random random, double probability) {
+        var set = new BitSet(UNIVERSE);
+        for (int i = 0; i < UNIVERSE; i++) {
+            if (random.nextDouble() < probability) {
+                set.set(i);
+            }
+        }
+        return set;
+    }
+
+    private static RoaringBitmap bitmap(BitSet set) {
+        var bitmap = new RoaringBitmap();
+        set.stream().forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static void assertSameValues(BitSet expected, RoaringBitmap actual) {
+        List<Integer> values = new ArrayList<>();
+        actual.forEach(value -> values.add(value) || true);
+        assertEquals(expected.stream().boxed().toList(), values);
+        assertEquals(expected.cardinality(), actual.cardinality());
+    }
+
+    @Test
+    void and_or_match_a_bit_set() {
+        var random = new Random(5);
+        double[] densities = {0.001, 0.05, 0.5};
+        for (double left : densities) {
+            for (double right : densities) {
+                var leftSet = randomSet(random, left);
+                var rightSet = randomSet(random, right);
+                var leftBitmap = bitmap(leftSet).snapshot();
+                var rightBitmap = bitmap(rightSet).snapshot();
+                assertSameValues(leftSet, leftBitmap);
+
+                var and = (BitSet) leftSet.clone();
+                and.and(rightSet);
+                assertSameValues(and, RoaringBitmap.and(leftBitmap, rightBitmap));
+
+                var or = (BitSet) leftSet.clone();
+                or.or(rightSet);
+                assertSameValues(or, RoaringBitmap.or(leftBitmap, rightBitmap));
+
+                int limit = random.nextInt(UNIVERSE);
+                assertEquals(leftSet.get(0, limit).cardinality(), leftBitmap.cardinalityBelow(limit));
+                assertEquals(leftSet.get(limit), leftBitmap.contains(limit));
+            }
+        }
+    }
+
+    @Test
+    void snapshot_does_not_see_later_values() {
+        var bitmap = new RoaringBitmap();
+        for (int i = 0; i < 5_000; i++) {
+            bitmap.add(i * 3);
+        }
+        var snapshot = bitmap.snapshot();
+        for (int i = 5_000; i < 10_000; i++) {
+            bitmap.add(i * 3); // the array container of the last key becomes a bitmap
+        }
+        assertEquals(5_000, snapshot.cardinality());
+        assertEquals(10_000, bitmap.cardinality());
+        assertFalse(snapshot.contains(15_000));
+        assertTrue(bitmap.contains(15_000));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(3));
+        assertThrows(IllegalArgumentException.class, () -> snapshot.add(40_000));
+    }
+}
@@ -0,0 +1,137 @@
+package com.machines.capnation.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStyle;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonResponseCacheTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger reads = new AtomicInteger();
+
+    private static List<Cap> caps(int count) {
+        var caps = new ArrayList<Cap>();
+        for (long id = 1; id <= count; id++) {
+            caps.add(new Cap.CapBuilder(CapStyle.SNAPBACK, "Negro", "brand" + id % 10, 20.0 + id, CapSize.MEDIUM, 3)
+                    .setId(id)
+                    .build());
+        }
+        return caps;
+    }
+
+    // counts the reads of the catalog, a cached response doesn't read it
+    private Supplier<List<Cap>> body(int count) {
+        return () -> {
+            reads.incrementAndGet();
+            return caps(count);
+        };
+    }
+
+    private static HttpHeaders headers(String name, String value) {
+        var headers = new HttpHeaders();
+        if (name != null) {
+            headers.set(name, value);
+        }
+        return headers;
+    }
+
+    @Test
+    void encode_once_per_version() throws IOException {
+        var cache = new JsonResponseCache(objectMapper, 1 << 20, false);
+        var first = cache.get("find-all", 1, headers(null, null), body(10));
+        var second = cache.get("find-all", 1, headers(null, null), body(10));
+        assertEquals(1, reads.get());
+        assertSame(first.getBody(), second.getBody());
+        assertArrayEquals(objectMapper.writeValueAsBytes(caps(10)), (byte[]) first.getBody());
+        assertEquals(first.getHeaders().getETag(), second.getHeaders().getETag());
+
+        // a save changes the version, so the entry is encoded again with the new caps
+        var third = cache.get("find-all", 2, headers(null, null), body(11));
+        assertEquals(2, reads.get());
+        assertArrayEquals(objectMapper.writeValueAsBytes(caps(11)), (byte[]) third.getBody());
+        assertNotEquals(first.getHeaders().getETag(), third.getHeaders().getETag());
+
+        var stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(1, stats.entries());
+    }
+
+    @Test
+    void answer_not_modified_to_the_etag_of_the_version() {
+        var cache = new JsonResponseCache(objectMapper, 1 << 20, false);
+        var etag = cache.get("find-all", 7, headers(null, null), body(10)).getHeaders().getETag();
+
+        ResponseEntity<?> response = cache.get("find-all", 7, headers(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag), body(10));
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals(1, reads.get());
+        assertEquals(HttpStatus.NOT_MODIFIED, cache.get("other", 7, headers(HttpHeaders.IF_NONE_MATCH, "*"), body(10)).getStatusCode());
+
+        response = cache.get("find-all", 8, headers(HttpHeaders.IF_NONE_MATCH, etag), body(10));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(2, cache.stats().notModified());
+    }
+
+    @Test
+    void send_the_gzip_copy_to_the_clients_that_accept_it() throws IOException {
+        var cache = new JsonResponseCache(objectMapper, 1 << 20, true);
+        var plain = cache.get("find-all", 1, headers(null, null), body(100));
+        var compressed = cache.get("find-all", 1, headers(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br"), body(100));
+        assertEquals(1, reads.get());
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("gzip", compressed.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        try (var in = new GZIPInputStream(new ByteArrayInputStream((byte[]) compressed.getBody()))) {
+            assertArrayEquals((byte[]) plain.getBody(), in.readAllBytes());
+        }
+        assertTrue(((byte[]) compressed.getBody()).length < ((byte[]) plain.getBody()).length / 2);
+    }
+
+    @Test
+    void evict_the_least_recently_used_entries() throws IOException {
+        int size = objectMapper.writeValueAsBytes(caps(10)).length;
+        // an entry can take up to a quarter of the cache
+        var cache = new JsonResponseCache(objectMapper, size * 4L, false);
+        for (String key : new String[]{"a", "b", "c", "d", "a", "e"}) {
+            cache.get(key, 1, headers(null, null), body(10));
+        }
+        assertEquals(5, reads.get());
+        assertEquals(1, cache.stats().evictions());
+        assertEquals(size * 4L, cache.stats().bytes());
+
+        // b was the least recently used
+        cache.get("a", 1, headers(null, null), body(10));
+        cache.get("b", 1, headers(null, null), body(10));
+        assertEquals(6, reads.get());
+    }
+
+    @Test
+    void serialize_a_response_too_big_to_be_kept() {
+        var cache = new JsonResponseCache(objectMapper, 4_000, false);
+        var response = cache.get("find-all", 1, headers(null, null), body(1_000));
+        assertEquals(caps(1_000), response.getBody());
+        assertFalse(response.getHeaders().getETag().isEmpty());
+        assertEquals(1, cache.stats().uncacheable());
+        assertEquals(0, cache.stats().bytes());
+    }
+}
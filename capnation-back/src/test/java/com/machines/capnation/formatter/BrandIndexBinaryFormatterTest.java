@@ -0,0 +1,54 @@
+package com.machines.capnation.formatter;
+
+import com.machines.capnation.collection.LongList;
+import com.machines.capnation.model.index.BrandIndex;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BrandIndexBinaryFormatterTest {
+    private final BrandIndexBinaryFormatter formatter = new BrandIndexBinaryFormatter();
+
+    private final BrandIndex nike = new BrandIndex.BrandIndexBuilder()
+            .setBrand("nike")
+            .setCaps(List.of(300L, 1L, 5_000_000_000L, 2L))
+            .build();
+    private final BrandIndex addidas = new BrandIndex.BrandIndexBuilder()
+            .setBrand("addidas")
+            .setCaps(List.of(3L))
+            .build();
+
+    @Test
+    void binary_round_trip_keeps_the_order_of_the_ids() {
+        var buffer = formatter.brandIndexesToBinary(List.of(nike, addidas));
+
+        var brandIndexes = formatter.binaryToBrandIndexes(buffer);
+
+        assertEquals(2, brandIndexes.size());
+        assertEquals("addidas", brandIndexes.get(0).getBrand());
+        assertEquals(LongList.of(3L), brandIndexes.get(0).getCaps());
+        assertEquals(LongList.of(300L, 1L, 5_000_000_000L, 2L), brandIndexes.get(1).getCaps());
+    }
+
+    @Test
+    void read_the_sorted_postings_of_version_1() {
+        var brand = "nike".getBytes(StandardCharsets.UTF_8);
+        // ids 1, 2 and 300 as the varints of 1, 1 and 298
+        var postings = new byte[]{1, 1, (byte) 0xAA, 2};
+        int offset = 12 + Short.BYTES + brand.length + Integer.BYTES + Long.BYTES + Integer.BYTES;
+        var buffer = ByteBuffer.allocate(offset + postings.length)
+                .putInt(BrandIndexBinaryFormatter.MAGIC).putShort((short) 1).putShort((short) 0).putInt(1)
+                .putShort((short) brand.length).put(brand).putInt(3).putLong(offset).putInt(postings.length)
+                .put(postings)
+                .flip();
+
+        var brandIndexes = formatter.binaryToBrandIndexes(buffer);
+
+        assertEquals("nike", brandIndexes.get(0).getBrand());
+        assertEquals(LongList.of(1L, 2L, 300L), brandIndexes.get(0).getCaps());
+    }
+}
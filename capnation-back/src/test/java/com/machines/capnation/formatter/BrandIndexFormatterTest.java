@@ -31,4 +31,15 @@ class BrandIndexFormatterTest {
 
         assertEquals(expected, formatter.textToBrandIndex(string));
     }
-}
\ No newline at end of file
+
+    @Test
+    void skip_empty_ids() {
+        var expected = new BrandIndex.BrandIndexBuilder()
+                .setBrand("vans")
+                .setCaps(List.of(10L, 20L))
+                .build();
+
+        assertEquals(expected, formatter.textToBrandIndex("vans,10,,20,"));
+        assertEquals(new BrandIndex.BrandIndexBuilder().setBrand("vans").build(), formatter.textToBrandIndex("vans"));
+    }
+}
@@ -6,7 +6,11 @@ import com.machines.capnation.model.CapStyle;
 import com.machines.capnation.model.Gender;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class CapFormatterTest {
     private CapFormatter formatter = new CapFormatter();
@@ -136,5 +140,82 @@ public class CapFormatterTest {
 
 
     }
-}
 
+    @Test
+    void parse_prices_like_double_parse_double() {
+        var random = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            double price = switch (i % 4) {
+                case 0 -> random.nextInt(1_000_000) / 100.0;
+                case 1 -> random.nextDouble() * 1_000;
+                case 2 -> random.nextDouble() * 1e12;
+                default -> random.nextDouble() / 1e4;
+            };
+            var text = Double.toString(price).getBytes();
+            assertEquals(price, CapFormatter.parsePrice(text, 0, text.length), Double.toString(price));
+        }
+        assertEquals(-0.5, CapFormatter.parsePrice("-0.5".getBytes(), 0, 4));
+        assertEquals(1.0E7, CapFormatter.parsePrice("1.0E7".getBytes(), 0, 5));
+    }
+
+    @Test
+    void reuse_the_buffer_and_reject_invalid_lines() {
+        var cap = new Cap.CapBuilder(CapStyle.FIVE_PANEL_CAP, "Black", "addidas", 19.99, CapSize.ONE_SIZE_FITS_ALL, 3)
+                .setId(7L)
+                .setGender(Gender.FEMALE)
+                .build();
+        var buffer = new StringBuilder("previous line\n");
+        formatter.appendCap(cap, buffer);
+        assertEquals("previous line\n7,FIVE_PANEL_CAP,Black,addidas,-,19.99,ONE_SIZE_FITS_ALL,FEMALE,3,-", buffer.toString());
+        assertEquals(cap, formatter.TextToCap(buffer.subSequence(14, buffer.length())));
+        var bytes = buffer.toString().getBytes();
+        assertEquals(cap, formatter.bytesToCap(bytes, 14, bytes.length));
+
+        assertThrows(IllegalArgumentException.class, () -> formatter.TextToCap("1,BASEBALL,Black,addidas,-,300.0,LARGE,-,3,-"));
+        assertThrows(IllegalArgumentException.class, () -> formatter.TextToCap("1,BASEBALL_CAP,Black,addidas,-,300.0,LARGE,-"));
+    }
+
+    @Test
+    void parse_a_negative_stock_like_the_split_parser() {
+        var line = "4,DAD_CAP,Blue,ñandú,-,12.5,SMALL,-,-2,-";
+        var expected = splitTextToCap(line);
+        assertEquals(-2, expected.getStock());
+        assertEquals(expected, formatter.TextToCap(line));
+        var bytes = line.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected, formatter.bytesToCap(bytes, 0, bytes.length));
+        assertThrows(NumberFormatException.class, () -> formatter.TextToCap("4,DAD_CAP,Blue,nike,-,12.5,SMALL,-,-,-"));
+    }
+
+    @Test
+    void parse_the_stocks_that_integer_parse_int_accepts() {
+        for (var stock : new String[]{"+5", "-0", "2147483647", "-2147483648", "007"}) {
+            var line = "4,DAD_CAP,Blue,nike,-,12.5,SMALL,-," + stock + ",-";
+            var bytes = line.getBytes(StandardCharsets.UTF_8);
+            assertEquals(Integer.parseInt(stock), formatter.TextToCap(line).getStock());
+            assertEquals(Integer.parseInt(stock), formatter.bytesToCap(bytes, 0, bytes.length).getStock());
+        }
+        for (var stock : new String[]{"2147483648", "-2147483649", "+", "1_0", "99999999999999999999"}) {
+            var bytes = ("4,DAD_CAP,Blue,nike,-,12.5,SMALL,-," + stock + ",-").getBytes(StandardCharsets.UTF_8);
+            assertThrows(NumberFormatException.class, () -> formatter.bytesToCap(bytes, 0, bytes.length), stock);
+        }
+        var bytes = "+9223372036854775807,DAD_CAP,Blue,nike,-,12.5,SMALL,-,1,-".getBytes(StandardCharsets.UTF_8);
+        assertEquals(Long.MAX_VALUE, formatter.bytesToCap(bytes, 0, bytes.length).getId());
+    }
+
+    // the split parser of the baseline, the reference of the corner cases of the scanning one
+    private static Cap splitTextToCap(String line) {
+        String[] att = line.split(",");
+        Cap cap = new Cap.CapBuilder(CapStyle.valueOf(att[1]), att[2], att[3], Double.parseDouble(att[5]),
+                CapSize.valueOf(att[6]), Integer.parseInt(att[8])).setId(Long.parseLong(att[0])).build();
+        if (!att[4].equals("-")) {
+            cap.setCollaboration(att[4]);
+        }
+        if (!att[7].equals("-")) {
+            cap.setGender(Gender.valueOf(att[7]));
+        }
+        if (!att[9].equals("-")) {
+            cap.setImageUrl(att[9]);
+        }
+        return cap;
+    }
+}
@@ -0,0 +1,66 @@
+package com.machines.capnation.formatter;
+
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStyle;
+import com.machines.capnation.model.Gender;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LazyCapTest {
+    private final CapFormatter formatter = new CapFormatter();
+
+    private Cap lazy(String line) {
+        var bytes = line.getBytes(StandardCharsets.UTF_8);
+        return formatter.lazyCap(bytes, 0, bytes.length);
+    }
+
+    @Test
+    void equal_to_the_decoded_cap() {
+        for (String line : new String[]{
+                "1,BASEBALL_CAP,Black,addidas,-,45000.0,LARGE,-,3,-",
+                "27,FLAT_CAP,Marr\u00f3n,Nike,BMW,19.99,SMALL,FEMALE,0,https://example.com/caps/27.jpg"}) {
+            var expected = formatter.TextToCap(line);
+            assertEquals(expected, lazy(line));
+            assertEquals(lazy(line), expected);
+            assertEquals(expected.hashCode(), lazy(line).hashCode());
+            assertEquals(expected.toString(), lazy(line).toString());
+        }
+    }
+
+    @Test
+    void decode_only_the_fields_that_are_read() {
+        // the price and the size are invalid, the other fields can be read anyway
+        var cap = lazy("5,DAD_CAP,Blue,Puma,-,cheap,HUGE,MALE,4,-");
+        assertEquals(5, cap.getId());
+        assertEquals("Puma", cap.getBrand());
+        assertEquals(Gender.MALE, cap.getGender());
+        assertNull(cap.getCollaboration());
+        assertThrows(NumberFormatException.class, cap::getPrice);
+        assertThrows(IllegalArgumentException.class, cap::getSize);
+    }
+
+    @Test
+    void keep_the_fields_that_are_set() {
+        var cap = lazy("5,DAD_CAP,Blue,Puma,-,cheap,LARGE,MALE,4,-");
+        cap.setPrice(12.5);
+        cap.setStyle(CapStyle.BEANIE);
+        cap.setImageUrl("https://example.com/caps/5.jpg");
+        var expected = new Cap.CapBuilder(CapStyle.BEANIE, "Blue", "Puma", 12.5, CapSize.LARGE, 4)
+                .setId(5L)
+                .setGender(Gender.MALE)
+                .setImageUrl("https://example.com/caps/5.jpg")
+                .build();
+        assertEquals(expected, cap);
+    }
+
+    @Test
+    void reject_a_line_with_less_fields() {
+        assertThrows(IllegalArgumentException.class, () -> lazy("5,DAD_CAP,Blue,Puma"));
+    }
+}
@@ -1,7 +1,12 @@
 package com.machines.capnation.model;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
 public class CapTest {
 
     @Test
@@ -12,4 +17,17 @@ public class CapTest {
                 .build();
         System.out.println(cap.toString());
     }
+
+    @Test
+    void read_the_json_with_the_required_fields() throws Exception {
+        var mapper = new ObjectMapper();
+        Cap cap = new Cap.CapBuilder(CapStyle.DAD_CAP, "Blue", "Nike", 300.0, CapSize.LARGE, 4)
+                .setId(1L)
+                .setImageUrl("https://example.com/caps/1.jpg")
+                .build();
+        assertEquals(cap, mapper.readValue(mapper.writeValueAsString(cap), Cap.class));
+
+        var withoutBrand = "{\"id\":2,\"style\":\"DAD_CAP\",\"color\":\"Blue\",\"price\":10.0,\"size\":\"LARGE\",\"stock\":1}";
+        assertThrows(MismatchedInputException.class, () -> mapper.readValue(withoutBrand, Cap.class));
+    }
 }
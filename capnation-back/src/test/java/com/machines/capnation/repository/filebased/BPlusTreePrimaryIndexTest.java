@@ -0,0 +1,137 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.collection.LongList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BPlusTreePrimaryIndexTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void find_random_ids_after_splits_and_reopen() {
+        var file = directory.resolve("capIndex.tree");
+        var ids = new ArrayList<Long>();
+        for (long id = 1; id <= 50_000; id++) {
+            ids.add(id * 7);
+        }
+        Collections.shuffle(ids, new Random(42));
+
+        try (var index = new BPlusTreePrimaryIndex(file, 8)) {
+            for (int i = 0; i < ids.size(); i++) {
+                index.put(ids.get(i), i);
+            }
+            assertEquals(ids.size(), index.size());
+            assertEquals(17, index.get(ids.get(17)));
+            index.flush();
+        }
+        try (var index = new BPlusTreePrimaryIndex(file, 8)) {
+            assertEquals(ids.size(), index.size());
+            for (int i = 0; i < ids.size(); i++) {
+                assertEquals(i, index.get(ids.get(i)));
+            }
+            assertEquals(PrimaryIndex.NO_VALUE, index.get(8));
+            assertFalse(index.containsKey(0));
+        }
+    }
+
+    @Test
+    void scan_in_id_order_from_an_id() {
+        try (var index = new BPlusTreePrimaryIndex(directory.resolve("capIndex.tree"), 8)) {
+            for (int position = 0; position < 2_000; position++) {
+                index.put(2_000 - position, position); // descending ids
+            }
+            var visited = new LongList();
+            index.scan(1_500, Integer.MAX_VALUE, (id, position) -> {
+                visited.add(id);
+                return visited.size() < 600;
+            });
+            assertEquals(500, visited.size());
+            assertEquals(1_501, visited.get(0));
+            assertEquals(2_000, visited.get(499));
+
+            var published = new LongList();
+            index.scan(0, 10, (id, position) -> {
+                published.add(id);
+                return true;
+            });
+            assertEquals(LongList.of(1_991, 1_992, 1_993, 1_994, 1_995, 1_996, 1_997, 1_998, 1_999, 2_000), published);
+        }
+    }
+
+    @Test
+    void rebuild_replaces_the_entries() {
+        var file = directory.resolve("capIndex.tree");
+        try (var index = new BPlusTreePrimaryIndex(file, 4)) {
+            index.put(99, 0);
+            var ids = new LongList();
+            for (long id = 100_000; id > 0; id -= 3) {
+                ids.add(id);
+            }
+            index.rebuild(ids);
+            assertEquals(ids.size(), index.size());
+            assertEquals(PrimaryIndex.NO_VALUE, index.get(99));
+        }
+        try (var index = new BPlusTreePrimaryIndex(file, 4)) {
+            assertEquals(0, index.get(100_000));
+            assertEquals(1, index.get(99_997));
+            var visited = new LongList();
+            index.scan(0, Integer.MAX_VALUE, (id, position) -> {
+                visited.add(id);
+                return true;
+            });
+            assertEquals(index.size(), visited.size());
+            assertEquals(1, visited.get(0));
+            index.put(100_001, index.size());
+            assertEquals(index.size() - 1, index.get(100_001));
+        }
+    }
+
+    @Test
+    void read_while_the_writer_inserts_and_flushes() {
+        try (var index = new BPlusTreePrimaryIndex(directory.resolve("capIndex.tree"), 8)) {
+            var inserted = new AtomicInteger();
+            var stop = new AtomicBoolean();
+            var readers = new ArrayList<CompletableFuture<Void>>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(CompletableFuture.runAsync(() -> {
+                    while (!stop.get()) {
+                        int count = inserted.get();
+                        var visited = new LongList();
+                        index.scan(0, Integer.MAX_VALUE, (id, position) -> {
+                            assertTrue(visited.isEmpty() || visited.get(visited.size() - 1) < id);
+                            visited.add(id);
+                            return true;
+                        });
+                        assertTrue(visited.size() >= count);
+                        for (int i = 1; i <= count; i += 997) {
+                            assertEquals(i - 1, index.get(i * 2L));
+                        }
+                    }
+                }));
+            }
+            for (int i = 1; i <= 100_000; i++) {
+                index.put(i * 2L, i - 1);
+                inserted.set(i);
+                if (i % 10_000 == 0) {
+                    index.flush();
+                }
+            }
+            stop.set(true);
+            readers.forEach(CompletableFuture::join);
+            assertEquals(100_000, index.size());
+        }
+    }
+}
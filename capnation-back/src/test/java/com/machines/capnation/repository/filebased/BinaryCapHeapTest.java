@@ -0,0 +1,83 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.exceptions.CapDatabaseException;
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStyle;
+import com.machines.capnation.model.Gender;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryCapHeapTest {
+    @TempDir
+    Path directory;
+
+    private final Cap nike = new Cap.CapBuilder(CapStyle.SNAPBACK, "Black", "nike", 300.0, CapSize.LARGE, 3)
+            .setId(1L)
+            .setGender(Gender.MALE)
+            .setCollaboration("BMW")
+            .setImageUrl("https://m.media-amazon.com/images/I/81fj+rks4jL._AC_SX569_.jpg")
+            .build();
+    private final Cap adidas = new Cap.CapBuilder(CapStyle.BEANIE, "Azul cielo", "adidas", 45000.5, CapSize.ONE_SIZE_FITS_ALL, 1)
+            .setId(2L)
+            .build();
+
+    @Test
+    void read_flushed_caps_after_reopen() {
+        var file = directory.resolve("caps.bin");
+        try (var heap = new BinaryCapHeap(file)) {
+            assertEquals(0, heap.append(nike));
+            assertEquals(1, heap.append(adidas));
+            assertEquals(adidas, heap.get(1)); // not flushed yet
+            heap.flush();
+            assertEquals(nike, heap.get(0));
+        }
+        try (var heap = new BinaryCapHeap(file)) {
+            assertEquals(2, heap.size());
+            assertEquals(nike, heap.get(0));
+            assertEquals(adidas, heap.get(1));
+        }
+    }
+
+    @Test
+    void migrate_text_heap() throws IOException {
+        var text = directory.resolve("caps.txt");
+        var binary = directory.resolve("caps.bin");
+        Files.writeString(text, "\n1,SNAPBACK,Black,nike,BMW,300.0,LARGE,MALE,3,https://m.media-amazon.com/images/I/81fj+rks4jL._AC_SX569_.jpg"
+                + "\n2,BEANIE,Azul cielo,adidas,-,45000.5,ONE_SIZE_FITS_ALL,-,1,-");
+        Files.createFile(binary);
+
+        assertTrue(CapHeapMigration.isPending(text, binary));
+        assertEquals(2, CapHeapMigration.textToBinary(text, binary));
+        assertFalse(CapHeapMigration.isPending(text, binary));
+        assertTrue(Files.exists(directory.resolve("caps.txt" + CapHeapMigration.MIGRATED_SUFFIX)));
+        assertThrows(CapDatabaseException.class, () -> CapHeapMigration.checkNotMigrated(text, binary));
+
+        try (var heap = new BinaryCapHeap(binary)) {
+            assertEquals(nike, heap.get(0));
+            assertEquals(adidas, heap.get(1));
+        }
+    }
+
+    @Test
+    void refuse_the_text_format_after_the_migration() throws IOException {
+        Files.writeString(directory.resolve("caps.txt"), "1,SNAPBACK,Black,nike,BMW,300.0,LARGE,MALE,3,-\n");
+        var repository = TestRepository.open(directory, CapHeap.Format.BINARY);
+        assertEquals(1, repository.findAll().size());
+        repository.close();
+
+        var text = TestRepository.open(directory, CapHeap.Format.TEXT);
+        var thrown = assertThrows(CapDatabaseException.class, text::findAll);
+        assertTrue(thrown.getMessage().contains("caps.format=BINARY"), thrown.getMessage());
+        text.close();
+    }
+}
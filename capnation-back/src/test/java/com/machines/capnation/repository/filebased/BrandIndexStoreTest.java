@@ -0,0 +1,105 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.collection.LongList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BrandIndexStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void merge_delta_lines_of_the_same_brand() throws IOException {
+        var file = directory.resolve("brandIndex.txt");
+        Files.writeString(file, "nike,1,2\n\nadidas,3\nnike,4");
+
+        var store = new BrandIndexStore(file);
+        store.load();
+
+        assertEquals(LongList.of(1, 2, 4), store.get("NIKE").getCaps());
+        assertEquals(LongList.of(3), store.get("Adidas").getCaps());
+        assertNull(store.get("puma"));
+        assertEquals(4, store.totalCaps());
+    }
+
+    @Test
+    void flush_appends_only_the_new_ids() throws IOException {
+        var file = directory.resolve("brandIndex.txt");
+        Files.writeString(file, "nike,1,2\n");
+
+        var store = new BrandIndexStore(file);
+        store.load();
+        store.add("Nike", 5);
+        store.add("puma", 6);
+        store.add("nike", 7);
+        store.flush();
+
+        assertEquals("nike,1,2\n\nnike,5,7\npuma,6", Files.readString(file));
+
+        var reloaded = new BrandIndexStore(file);
+        reloaded.load();
+        assertEquals(LongList.of(1, 2, 5, 7), reloaded.get("nike").getCaps());
+        assertEquals(LongList.of(6), reloaded.get("puma").getCaps());
+    }
+
+    @Test
+    void compact_writes_one_line_per_brand() throws IOException {
+        var file = directory.resolve("brandIndex.txt");
+        var store = new BrandIndexStore(file);
+        for (int i = 1; i <= 200; i++) {
+            store.add(i % 2 == 0 ? "nike" : "puma", i);
+            store.flush();
+        }
+        assertTrue(Files.readAllLines(file).stream().filter(line -> !line.isBlank()).count() <= 64);
+
+        store.compact();
+        assertEquals(2, Files.readAllLines(file).size());
+        var reloaded = new BrandIndexStore(file);
+        reloaded.load();
+        assertEquals(100, reloaded.get("nike").getCaps().size());
+        assertEquals(200, reloaded.totalCaps());
+    }
+
+    @Test
+    void migrate_text_file_to_the_binary_format() throws IOException {
+        var file = directory.resolve("brandIndex.txt");
+        var binary = directory.resolve("brandIndex.bin");
+        Files.writeString(file, "nike,4,1\nadidas,3\nnike,2");
+
+        var store = new BrandIndexStore(file, binary);
+        store.load();
+        assertEquals("", Files.readString(file));
+        store.add("adidas", 9);
+        store.flush();
+
+        var reloaded = new BrandIndexStore(file, binary);
+        reloaded.load();
+        // the binary file keeps the order of the text file, so findByBrand returns the same list
+        assertEquals(LongList.of(4, 1, 2), reloaded.get("nike").getCaps());
+        assertEquals(LongList.of(3, 9), reloaded.get("adidas").getCaps());
+        assertEquals(5, reloaded.totalCaps());
+    }
+
+    @Test
+    void ignore_deltas_already_in_the_binary_file() throws IOException {
+        var file = directory.resolve("brandIndex.txt");
+        var binary = directory.resolve("brandIndex.bin");
+        Files.writeString(file, "nike,9,1,2");
+        new BrandIndexStore(file, binary).load();
+        // the process died after writing the binary file but before emptying the text file
+        Files.writeString(file, "nike,9,1,2\nnike,7");
+
+        var reloaded = new BrandIndexStore(file, binary);
+        reloaded.load();
+        assertEquals(LongList.of(9, 1, 2, 7), reloaded.get("nike").getCaps());
+        assertEquals(4, reloaded.totalCaps());
+    }
+}
@@ -0,0 +1,95 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.model.Cap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CapRepositoryConcurrencyTest {
+    private static final int BRANDS = 7;
+
+    @TempDir
+    Path directory;
+
+    private CapRepositoryFileBasedImpl repository;
+
+    @AfterEach
+    void close() {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    private static Cap cap(long id) {
+        return TestRepository.cap(id, BRANDS);
+    }
+
+    @Test
+    void readers_see_whole_snapshots_while_saving_text_heap() throws Exception {
+        readers_see_whole_snapshots_while_saving(CapHeap.Format.TEXT);
+    }
+
+    @Test
+    void readers_see_whole_snapshots_while_saving_binary_heap() throws Exception {
+        readers_see_whole_snapshots_while_saving(CapHeap.Format.BINARY);
+    }
+
+    // the caps are saved with the ids 1, 2, 3... so every snapshot of n rows has exactly the ids 1 to n
+    private void readers_see_whole_snapshots_while_saving(CapHeap.Format format) throws Exception {
+        repository = TestRepository.open(directory, format);
+        int saves = 20_000;
+        var saving = new AtomicBoolean(true);
+        var failure = new AtomicReference<Throwable>();
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            readers.add(new Thread(() -> {
+                var random = ThreadLocalRandom.current();
+                int seen = 0;
+                try {
+                    while (saving.get()) {
+                        var caps = repository.findAll();
+                        int rows = caps.size();
+                        assertTrue(rows >= seen, "a snapshot went back");
+                        seen = rows;
+                        if (rows < BRANDS) {
+                            continue; // not every brand has caps yet
+                        }
+                        assertEquals(rows, caps.get(rows - 1).getId());
+                        long id = 1 + random.nextLong(rows);
+                        assertEquals(cap(id), repository.findById(id));
+                        var brand = "BRAND" + random.nextInt(BRANDS);
+                        repository.findByBrand(brand).forEach(cap -> assertEquals(cap(cap.getId()), cap));
+                    }
+                } catch (RuntimeException | AssertionError e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        readers.forEach(Thread::start);
+        try {
+            for (long id = 1; id <= saves; id++) {
+                repository.save(cap(id));
+            }
+        } finally {
+            saving.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+        assertNull(failure.get());
+        assertEquals(saves, repository.findAll().size());
+    }
+}
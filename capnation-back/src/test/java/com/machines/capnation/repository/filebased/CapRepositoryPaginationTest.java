@@ -0,0 +1,97 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.model.Cap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CapRepositoryPaginationTest {
+    @TempDir
+    Path directory;
+
+    private CapRepositoryFileBasedImpl repository;
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void open() throws IOException {
+        repository = TestRepository.open(directory, CapHeap.Format.TEXT);
+        for (long id = 1; id <= 5_000; id++) {
+            ids.add(id * 3);
+        }
+        Collections.shuffle(ids, new Random(7));
+        // a bulk load and then single saves, so the scans merge the sorted ids with the recent ones
+        var caps = new ArrayList<Cap>();
+        ids.subList(0, 4_000).forEach(id -> caps.add(cap(id)));
+        repository.saveAll(caps);
+        repository.findPage(0, 1);
+        ids.subList(4_000, ids.size()).forEach(id -> repository.save(cap(id)));
+        Collections.sort(ids);
+    }
+
+    @AfterEach
+    void close() {
+        repository.close();
+    }
+
+    private static Cap cap(long id) {
+        return TestRepository.cap(id, 10);
+    }
+
+    @Test
+    void pages_follow_the_id_order() {
+        List<Long> visited = new ArrayList<>();
+        long after = 0;
+        List<Cap> page;
+        do {
+            page = repository.findPage(after, 333);
+            for (Cap cap : page) {
+                visited.add(cap.getId());
+                after = cap.getId();
+            }
+        } while (page.size() == 333);
+        assertEquals(ids, visited);
+
+        var middle = repository.findPage(2_999, 2);
+        assertEquals(List.of(cap(3_000), cap(3_003)), middle);
+        assertTrue(repository.findPage(15_000, 10).isEmpty());
+    }
+
+    @Test
+    void stream_every_cap_in_id_order() {
+        List<Long> visited = new ArrayList<>();
+        repository.forEachCap(cap -> visited.add(cap.getId()));
+        assertEquals(ids, visited);
+    }
+
+    @Test
+    void pages_see_the_caps_saved_between_them() {
+        List<Long> visited = new ArrayList<>();
+        long after = 0;
+        List<Cap> page;
+        long saved = 15_001;
+        do {
+            page = repository.findPage(after, 500);
+            for (Cap cap : page) {
+                visited.add(cap.getId());
+                after = cap.getId();
+            }
+            // the sorted ids cached for the last page don't have the new cap
+            repository.save(cap(saved++));
+        } while (page.size() == 500);
+        for (long id = 15_001; id < saved - 1; id++) {
+            ids.add(id);
+        }
+        assertEquals(ids, visited);
+    }
+}
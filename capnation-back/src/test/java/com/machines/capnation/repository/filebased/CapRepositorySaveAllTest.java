@@ -0,0 +1,186 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.exceptions.DuplicateCapException;
+import com.machines.capnation.exceptions.DuplicateIdCapException;
+import com.machines.capnation.exceptions.InvalidParametersCapException;
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStyle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CapRepositorySaveAllTest {
+    @TempDir
+    Path directory;
+
+    private CapRepositoryFileBasedImpl repository;
+
+    @AfterEach
+    void close() {
+        repository.close();
+    }
+
+    private static Cap cap(long id, String brand) {
+        return new Cap.CapBuilder(CapStyle.TRUCKER_CAP, "Green", brand, 50.0 + id, CapSize.LARGE, 2)
+                .setId(id)
+                .build();
+    }
+
+    @Test
+    void reject_repeated_and_existing_ids() throws IOException {
+        repository = TestRepository.open(directory, CapHeap.Format.BINARY);
+        repository.save(cap(5, "nike"));
+
+        var rejections = repository.saveAll(List.of(cap(9, "puma"), cap(5, "puma"), cap(3, "nike"), cap(9, "nike"), cap(0, "nike")));
+
+        assertNull(rejections.get(0));
+        assertInstanceOf(DuplicateIdCapException.class, rejections.get(1));
+        assertTrue(rejections.get(1).getMessage().contains("another cap"));
+        assertNull(rejections.get(2));
+        assertInstanceOf(DuplicateIdCapException.class, rejections.get(3));
+        assertTrue(rejections.get(3).getMessage().contains("repeated"));
+        assertInstanceOf(InvalidParametersCapException.class, rejections.get(4));
+        assertTrue(rejections.get(4).getMessage().contains("invalid"));
+        assertEquals(cap(9, "puma"), repository.findById(9L));
+        assertEquals(List.of(cap(5, "nike"), cap(3, "nike")), repository.findByBrand("nike"));
+    }
+
+    @Test
+    void check_the_ids_in_the_filter_before_the_index() throws IOException {
+        repository = TestRepository.open(directory, CapHeap.Format.TEXT);
+        var caps = new ArrayList<Cap>();
+        for (long id = 1; id <= 1_000; id++) {
+            caps.add(cap(id, "nike"));
+        }
+        repository.saveAll(caps);
+        assertTrue(repository.saveAll(List.of(cap(10, "puma"))).get(0).getMessage().contains("another cap"));
+        assertThrows(DuplicateIdCapException.class, () -> repository.save(cap(20, "puma")));
+
+        var stats = repository.idFilterStats();
+        assertEquals(1_002, stats.checks());
+        assertEquals(2, stats.positives() - stats.falsePositives()); // the repeated ids are confirmed by the index
+        assertEquals(1_000, stats.negatives() + stats.falsePositives());
+        assertEquals(1_000, stats.ids());
+
+        // the filter is rebuilt with the ids of the heap
+        repository.close();
+        repository = TestRepository.open(directory, CapHeap.Format.TEXT);
+        assertTrue(repository.saveAll(List.of(cap(999, "puma"))).get(0).getMessage().contains("another cap"));
+        assertEquals(1_000, repository.idFilterStats().ids());
+    }
+
+    @Test
+    void load_a_big_catalog_sorted_by_id() throws IOException {
+        repository = TestRepository.open(directory, CapHeap.Format.BINARY);
+        int count = 100_000;
+        var caps = new ArrayList<Cap>(count);
+        for (long id = count; id > 0; id--) {
+            caps.add(cap(id, "brand" + id % 10));
+        }
+
+        long start = System.nanoTime();
+        var rejections = repository.saveAll(caps);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(rejections.stream().allMatch(rejection -> rejection == null));
+        assertTrue(millis < 10_000, "the bulk load took " + millis + "ms");
+
+        repository.close();
+        repository = TestRepository.open(directory, CapHeap.Format.BINARY);
+        var stored = repository.findAll();
+        assertEquals(count, stored.size());
+        assertEquals(1, stored.get(0).getId()); // the heap has the batch in id order
+        assertEquals(count, stored.get(count - 1).getId());
+        assertEquals(cap(77_777, "brand7"), repository.findById(77_777L));
+        assertEquals(count / 10, repository.findByBrand("BRAND3").size());
+    }
+
+    // same characteristics with another id
+    private static Cap copy(Cap cap, long id) {
+        return new Cap.CapBuilder(cap.getStyle(), cap.getColor(), cap.getBrand(), cap.getPrice(), cap.getSize(), cap.getStock())
+                .setId(id)
+                .build();
+    }
+
+    @Test
+    void reject_caps_similar_to_the_catalog_or_to_the_batch() throws IOException {
+        repository = TestRepository.open(directory, CapHeap.Format.TEXT);
+        var saved = repository.save(cap(5, "nike"));
+
+        var batch = List.of(cap(6, "nike"), copy(saved, 7), copy(cap(6, "nike"), 8), cap(5, "puma"));
+        var rejections = repository.saveAll(batch);
+
+        assertNull(rejections.get(0));
+        assertInstanceOf(DuplicateCapException.class, rejections.get(1));
+        assertTrue(rejections.get(1).getMessage().contains("similar to the cap with index 5"));
+        assertTrue(rejections.get(2).getMessage().contains("similar to the cap with index 6"));
+        assertTrue(rejections.get(3).getMessage().contains("another cap"));
+
+        var thrown = assertThrows(DuplicateCapException.class, () -> repository.save(copy(saved, 9)));
+        assertTrue(thrown.getMessage().contains("index 5"));
+        var differentStock = copy(saved, 10);
+        differentStock.setStock(saved.getStock() + 1);
+        assertEquals(differentStock, repository.save(differentStock));
+
+        // the index is rebuilt at load
+        repository.close();
+        repository = TestRepository.open(directory, CapHeap.Format.TEXT);
+        assertThrows(DuplicateCapException.class, () -> repository.save(copy(differentStock, 11)));
+        assertNull(repository.saveAll(List.of(cap(12, "nike"))).get(0));
+    }
+
+    @Test
+    void fail_only_the_queued_saves_with_missing_fields() throws IOException {
+        repository = TestRepository.open(directory, CapHeap.Format.TEXT);
+        var noBrand = cap(2, null);
+        var noStyle = new Cap.CapBuilder(null, "Green", "nike", 10.0, CapSize.LARGE, 2).setId(3L).build();
+        var noSize = new Cap.CapBuilder(CapStyle.TRUCKER_CAP, "Green", "nike", 11.0, null, 2).setId(4L).build();
+
+        var futures = List.of(repository.saveAsync(cap(1, "nike")), repository.saveAsync(noBrand),
+                repository.saveAsync(noStyle), repository.saveAsync(noSize), repository.saveAsync(cap(5, "puma")));
+
+        assertEquals(cap(1, "nike"), futures.get(0).join());
+        for (var failed : futures.subList(1, 4)) {
+            var thrown = assertThrows(CompletionException.class, failed::join);
+            assertTrue(thrown.getCause() instanceof InvalidParametersCapException);
+        }
+        assertEquals(cap(5, "puma"), futures.get(4).join());
+        var repeated = assertThrows(CompletionException.class, () -> repository.saveAsync(cap(5, "nike")).join());
+        assertInstanceOf(DuplicateIdCapException.class, repeated.getCause());
+
+        // the log never had the rejected caps
+        repository.close();
+        repository = TestRepository.open(directory, CapHeap.Format.TEXT);
+        assertEquals(List.of(cap(1, "nike"), cap(5, "puma")), repository.findAll());
+    }
+
+    @Test
+    void reject_void_caps_and_missing_fields_without_failing_the_batch() throws IOException {
+        repository = TestRepository.open(directory, CapHeap.Format.BINARY);
+        var noSize = new Cap.CapBuilder(CapStyle.TRUCKER_CAP, "Green", "nike", 11.0, null, 2).setId(4L).build();
+        var batch = new ArrayList<Cap>(List.of(cap(1, "nike"), cap(2, null), noSize, cap(4, "puma")));
+        batch.add(2, null);
+
+        var rejections = repository.saveAll(batch);
+
+        assertNull(rejections.get(0));
+        assertTrue(rejections.get(1).getMessage().contains("brand"));
+        assertTrue(rejections.get(2).getMessage().contains("void"));
+        assertTrue(rejections.get(3).getMessage().contains("size"));
+        assertTrue(rejections.subList(1, 4).stream().allMatch(InvalidParametersCapException.class::isInstance));
+        assertNull(rejections.get(4)); // the id of the rejected cap is free
+        assertEquals(List.of(cap(1, "nike"), cap(4, "puma")), repository.findAll());
+    }
+}
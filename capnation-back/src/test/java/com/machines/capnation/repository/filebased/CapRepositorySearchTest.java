@@ -0,0 +1,142 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSearch;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStats;
+import com.machines.capnation.model.CapStyle;
+import com.machines.capnation.model.Gender;
+import com.machines.capnation.model.Suggestion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CapRepositorySearchTest {
+    @TempDir
+    Path directory;
+
+    private CapRepositoryFileBasedImpl repository;
+    private final List<Cap> caps = new ArrayList<>();
+
+    private static Cap cap(long id) {
+        return TestRepository.cap(id, 7);
+    }
+
+    @BeforeEach
+    void open() throws IOException {
+        repository = TestRepository.open(directory, CapHeap.Format.TEXT);
+        var bulk = new ArrayList<Cap>();
+        for (long id = 1; id <= 20_000; id++) {
+            bulk.add(cap(id));
+        }
+        repository.saveAll(bulk);
+        caps.addAll(bulk);
+        for (long id = 20_001; id <= 20_500; id++) {
+            caps.add(repository.save(cap(id)));
+        }
+    }
+
+    @AfterEach
+    void close() {
+        repository.close();
+    }
+
+    private List<Cap> expected(Predicate<Cap> filter) {
+        return caps.stream().filter(filter).toList();
+    }
+
+    @Test
+    void combine_values_with_or_and_attributes_with_and() {
+        var search = new CapSearch(List.of(CapStyle.SNAPBACK, CapStyle.BEANIE), null, List.of(Gender.MALE),
+                List.of("negro"), null);
+        var expected = expected(cap -> (cap.getStyle() == CapStyle.SNAPBACK || cap.getStyle() == CapStyle.BEANIE)
+                && cap.getGender() == Gender.MALE && cap.getColor().equals("Negro"));
+
+        var result = repository.search(search, 0, 1000);
+        assertEquals(expected.size(), result.total());
+        assertEquals(expected, result.caps());
+
+        var page = repository.search(search, 10, 5);
+        assertEquals(expected.subList(10, 15), page.caps());
+    }
+
+    @Test
+    void search_caps_saved_one_by_one() {
+        var search = new CapSearch(null, List.of(CapSize.LARGE), null, null, List.of("BRAND3"));
+        var expected = expected(cap -> cap.getSize() == CapSize.LARGE && cap.getBrand().equals("brand3"));
+
+        var result = repository.search(search, expected.size() - 3, 1000);
+        assertEquals(expected.size(), result.total());
+        assertEquals(expected.subList(expected.size() - 3, expected.size()), result.caps());
+        assertEquals(0, repository.search(new CapSearch(null, null, null, List.of("verde"), null), 0, 10).total());
+    }
+
+    @Test
+    void find_by_price_in_both_orders() {
+        var ascending = caps.stream().filter(cap -> cap.getPrice() >= 100 && cap.getPrice() <= 20_200)
+                .sorted(Comparator.comparingDouble(Cap::getPrice)).toList();
+        assertEquals(ascending.subList(0, 50), repository.findByPrice(100, 20_200, true, null, 50));
+        var descending = new ArrayList<>(ascending);
+        Collections.reverse(descending);
+        assertEquals(descending.subList(0, 50), repository.findByPrice(100, 20_200, false, null, 50));
+        assertEquals(List.of(), repository.findByPrice(30_000, 40_000, true, null, 50));
+    }
+
+    @Test
+    void find_by_price_of_a_brand() {
+        var rare = new ArrayList<Cap>();
+        for (long id = 30_001; id <= 30_005; id++) {
+            var cap = cap(id);
+            cap.setBrand("rare");
+            rare.add(repository.save(cap));
+        }
+        // a common brand is filtered along the scan of the prices, a rare one is sorted by price
+        var brand3 = caps.stream().filter(cap -> cap.getBrand().equals("brand3") && cap.getPrice() >= 5_000)
+                .sorted(Comparator.comparingDouble(Cap::getPrice).reversed()).toList();
+        assertEquals(brand3.subList(0, 20), repository.findByPrice(5_000, Double.MAX_VALUE, false, "BRAND3", 20));
+        assertEquals(rare.subList(0, 3), repository.findByPrice(0, Double.MAX_VALUE, true, "Rare", 3));
+        assertEquals(List.of(rare.get(2), rare.get(1)), repository.findByPrice(0, 30_013, false, "rare", 2));
+    }
+
+    @Test
+    void suggest_the_brands_of_a_prefix() {
+        repository.save(new Cap.CapBuilder(CapStyle.BEANIE, "Verde", "Brandon", 99.0, CapSize.SMALL, 1).setId(30_001L).build());
+        var expected = caps.stream().collect(Collectors.groupingBy(Cap::getBrand, Collectors.counting()))
+                .entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(3)
+                .map(entry -> new Suggestion(entry.getKey(), entry.getValue().intValue()))
+                .toList();
+        assertEquals(expected, repository.suggest(Suggestion.Field.BRAND, "BRAND", 3));
+        assertEquals(List.of(new Suggestion("Brandon", 1)), repository.suggest(Suggestion.Field.BRAND, "brando", 3));
+        assertEquals(List.of(new Suggestion("Verde", 1)), repository.suggest(Suggestion.Field.COLOR, "v", 3));
+    }
+
+    @Test
+    void aggregate_the_caps_by_size() {
+        var stats = repository.stats(CapStats.GroupBy.SIZE);
+        assertEquals(caps.size(), stats.total().caps());
+        assertEquals(CapSize.values().length, stats.groups().size());
+        var large = stats.groups().stream().filter(group -> group.name().equals("LARGE")).findFirst().orElseThrow();
+        var expected = expected(cap -> cap.getSize() == CapSize.LARGE);
+        assertEquals(expected.size(), large.caps());
+        assertEquals(expected.stream().mapToDouble(Cap::getPrice).max().orElseThrow(), large.maxPrice());
+
+        repository.save(new Cap.CapBuilder(CapStyle.BEANIE, "Verde", "brand1", 99_999.0, CapSize.LARGE, 1).setId(30_001L).build());
+        assertEquals(99_999.0, repository.stats(CapStats.GroupBy.SIZE).groups().stream()
+                .filter(group -> group.name().equals("LARGE")).findFirst().orElseThrow().maxPrice());
+    }
+}
@@ -0,0 +1,139 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.model.Cap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CapRepositorySnapshotTest {
+    @TempDir
+    Path directory;
+
+    private static Cap cap(long id) {
+        return TestRepository.cap(id, 10);
+    }
+
+    private TextCapHeap.Storage storage = TextCapHeap.Storage.OBJECTS;
+
+    private CapRepositoryFileBasedImpl open(CapHeap.Format format) throws IOException {
+        var repository = TestRepository.open(directory, format);
+        ReflectionTestUtils.setField(repository, "snapshotIntervalMillis", 3_600_000L);
+        ReflectionTestUtils.setField(repository, "heapStorage", storage);
+        return repository;
+    }
+
+    private static List<Cap> caps(long from, long to) {
+        return TestRepository.caps(from, to, 10);
+    }
+
+    private static void assertCatalog(CapRepositoryFileBasedImpl repository, int count) {
+        assertEquals(caps(1, count), repository.findAll());
+        assertEquals(count / 10, repository.findByBrand("BRAND7").size());
+        assertEquals(cap(count), repository.findById((long) count));
+        assertEquals(count, repository.idFilterStats().ids());
+    }
+
+    private Path snapshot() {
+        return directory.resolve("capSnapshot.bin");
+    }
+
+    private void restart(CapHeap.Format format) throws IOException {
+        var repository = open(format);
+        repository.saveAll(caps(1, 5_000));
+        repository.writeSnapshot();
+        // the snapshot of the first 5000 caps, the close writes another one with all of them
+        var first = Files.copy(snapshot(), directory.resolve("first.bin"));
+        repository.saveAll(caps(5_001, 6_000));
+        repository.save(cap(6_001));
+        repository.close();
+        assertEquals(6_001, CatalogSnapshotFile.read(snapshot(), format, heap(format)).rowCount());
+
+        repository = open(format);
+        assertCatalog(repository, 6_001);
+        repository.save(cap(6_002));
+        repository.close();
+
+        // the caps appended to the heap after the snapshot are read from the heap
+        Files.copy(first, snapshot(), StandardCopyOption.REPLACE_EXISTING);
+        assertEquals(5_000, CatalogSnapshotFile.read(snapshot(), format, heap(format)).rowCount());
+        repository = open(format);
+        assertCatalog(repository, 6_002);
+        repository.close();
+    }
+
+    private Path heap(CapHeap.Format format) {
+        return directory.resolve(format == CapHeap.Format.TEXT ? "caps.txt" : "caps.bin");
+    }
+
+    @Test
+    void restart_from_a_snapshot_of_a_text_heap() throws IOException {
+        restart(CapHeap.Format.TEXT);
+    }
+
+    @Test
+    void restart_from_a_snapshot_of_a_text_heap_in_columns() throws IOException {
+        storage = TextCapHeap.Storage.COLUMNAR;
+        restart(CapHeap.Format.TEXT);
+    }
+
+    @Test
+    void restart_from_a_snapshot_of_a_lazy_text_heap() throws IOException {
+        storage = TextCapHeap.Storage.LAZY;
+        restart(CapHeap.Format.TEXT);
+    }
+
+    @Test
+    void restart_from_a_snapshot_of_a_binary_heap() throws IOException {
+        restart(CapHeap.Format.BINARY);
+    }
+
+    @Test
+    void ignore_a_corrupt_snapshot() throws IOException {
+        var repository = open(CapHeap.Format.TEXT);
+        repository.saveAll(caps(1, 3_000));
+        repository.close();
+        assertNotNull(CatalogSnapshotFile.read(snapshot(), CapHeap.Format.TEXT, heap(CapHeap.Format.TEXT)));
+
+        try (var channel = FileChannel.open(snapshot(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var bytes = ByteBuffer.allocate(1);
+            channel.read(bytes, 1_000);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (bytes.get(0) ^ 1)}), 1_000);
+        }
+        assertNull(CatalogSnapshotFile.read(snapshot(), CapHeap.Format.TEXT, heap(CapHeap.Format.TEXT)));
+        repository = open(CapHeap.Format.TEXT);
+        assertCatalog(repository, 3_000);
+        repository.close();
+        // the close replaced it with a valid one
+        assertEquals(3_000, CatalogSnapshotFile.read(snapshot(), CapHeap.Format.TEXT, heap(CapHeap.Format.TEXT)).rowCount());
+    }
+
+    @Test
+    void ignore_a_snapshot_of_another_heap() throws IOException {
+        var repository = open(CapHeap.Format.TEXT);
+        repository.saveAll(caps(1, 2_000));
+        repository.close();
+
+        // a heap with other rows, as long as the previous one
+        var other = TestRepository.open(Files.createDirectory(directory.resolve("other")), CapHeap.Format.TEXT);
+        var caps = caps(1, 2_000);
+        caps.forEach(cap -> cap.setColor(new StringBuilder(cap.getColor()).reverse().toString()));
+        other.saveAll(caps);
+        other.close();
+        Files.copy(directory.resolve("other").resolve("caps.txt"), heap(CapHeap.Format.TEXT), StandardCopyOption.REPLACE_EXISTING);
+
+        assertNull(CatalogSnapshotFile.read(snapshot(), CapHeap.Format.TEXT, heap(CapHeap.Format.TEXT)));
+    }
+}
@@ -0,0 +1,52 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.Readiness;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CapRepositoryStartupTest {
+    @TempDir
+    Path directory;
+
+    private static Cap cap(long id) {
+        return TestRepository.cap(id, 10);
+    }
+
+    @Test
+    void requests_wait_for_the_eager_load() throws IOException {
+        var repository = TestRepository.open(directory, CapHeap.Format.TEXT);
+        var caps = new ArrayList<Cap>();
+        for (long id = 1; id <= 10_000; id++) {
+            caps.add(cap(id));
+        }
+        repository.saveAll(caps);
+        repository.close();
+
+        var restarted = TestRepository.open(directory, CapHeap.Format.TEXT);
+        ReflectionTestUtils.setField(restarted, "eagerLoad", true);
+        ReflectionTestUtils.setField(restarted, "readyTimeoutMillis", 60_000L);
+        ReflectionTestUtils.setField(restarted, "warmUpIterations", 5_000);
+        assertEquals(Readiness.State.ON_DEMAND, restarted.readiness().state());
+        restarted.start();
+        try {
+            // findById blocks until the repository is loaded and warmed up
+            assertEquals(cap(1234), restarted.findById(1234L));
+            var readiness = restarted.readiness();
+            assertEquals(Readiness.State.READY, readiness.state());
+            assertEquals(100, readiness.progressPercent());
+            assertEquals(10_000, readiness.loadedRows());
+            assertTrue(readiness.isReady());
+        } finally {
+            restarted.close();
+        }
+    }
+}
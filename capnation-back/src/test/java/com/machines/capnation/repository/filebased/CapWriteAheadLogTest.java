@@ -0,0 +1,91 @@
+package com.machines.capnation.repository.filebased;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CapWriteAheadLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void read_appended_records() {
+        var file = directory.resolve("capWal.log");
+        try (var wal = new CapWriteAheadLog(file, CapWriteAheadLog.Durability.SYNC, 2, 5)) {
+            wal.awaitDurable(wal.append("1,BASEBALL_CAP,Black,addidas,-,300.0,LARGE,-,3,-"));
+            wal.awaitDurable(wal.append("2,BEANIE,Red,nike,-,200.0,SMALL,-,1,-"));
+        }
+        try (var wal = new CapWriteAheadLog(file, CapWriteAheadLog.Durability.SYNC, 2, 5)) {
+            assertEquals(List.of("1,BASEBALL_CAP,Black,addidas,-,300.0,LARGE,-,3,-", "2,BEANIE,Red,nike,-,200.0,SMALL,-,1,-"),
+                    wal.readRecords());
+        }
+    }
+
+    @Test
+    void append_a_batch_with_one_sequence_per_record() {
+        var file = directory.resolve("capWal.log");
+        try (var wal = new CapWriteAheadLog(file, CapWriteAheadLog.Durability.SYNC, 64, 5)) {
+            assertEquals(1, wal.append("1,BASEBALL_CAP,Black,addidas,-,300.0,LARGE,-,3,-"));
+            long last = wal.appendAll(List.of("2,BEANIE,Red,nike,-,200.0,SMALL,-,1,-", "3,BEANIE,Blue,nike,-,210.0,SMALL,-,1,-"));
+            assertEquals(3, last);
+            wal.awaitDurable(last);
+            assertEquals(3, wal.readRecords().size());
+            assertEquals("3,BEANIE,Blue,nike,-,210.0,SMALL,-,1,-", wal.readRecords().get(2));
+        }
+    }
+
+    @Test
+    void ignore_torn_record_at_the_tail() throws IOException {
+        var file = directory.resolve("capWal.log");
+        try (var wal = new CapWriteAheadLog(file, CapWriteAheadLog.Durability.ASYNC, 64, 5)) {
+            wal.append("1,BASEBALL_CAP,Black,addidas,-,300.0,LARGE,-,3,-");
+        }
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        try (var wal = new CapWriteAheadLog(file, CapWriteAheadLog.Durability.SYNC, 64, 5)) {
+            assertEquals(List.of("1,BASEBALL_CAP,Black,addidas,-,300.0,LARGE,-,3,-"), wal.readRecords());
+        }
+    }
+
+    @Test
+    void truncate_discards_the_records() {
+        var file = directory.resolve("capWal.log");
+        try (var wal = new CapWriteAheadLog(file, CapWriteAheadLog.Durability.SYNC, 64, 5)) {
+            wal.append("1,BASEBALL_CAP,Black,addidas,-,300.0,LARGE,-,3,-");
+            wal.truncate();
+            assertEquals(0, wal.size());
+            assertTrue(wal.readRecords().isEmpty());
+        }
+    }
+
+    @Test
+    void concurrent_writers_share_the_group_commit() throws InterruptedException {
+        var file = directory.resolve("capWal.log");
+        try (var wal = new CapWriteAheadLog(file, CapWriteAheadLog.Durability.SYNC, 16, 5)) {
+            var threads = new ArrayList<Thread>();
+            for (int t = 0; t < 8; t++) {
+                int writer = t;
+                var thread = new Thread(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        wal.awaitDurable(wal.append(writer + "-" + i));
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(400, wal.readRecords().size());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.exceptions.CapWriteQueueFullException;
+import com.machines.capnation.model.Cap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CapWriterTest {
+
+    private static Cap cap(long id) {
+        return TestRepository.cap(id, 1);
+    }
+
+    @Test
+    void write_the_queued_saves_in_batches() {
+        List<Integer> batchSizes = new ArrayList<>();
+        var writer = new CapWriter(64, 4, batch -> {
+            batchSizes.add(batch.size());
+            batch.forEach(save -> save.future().complete(save.cap()));
+        });
+        List<CompletableFuture<Cap>> futures = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            futures.add(writer.submit(cap(id)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(cap(i + 1), futures.get(i).join());
+        }
+        writer.close();
+
+        var stats = writer.stats();
+        assertEquals(10, stats.processedSaves());
+        assertEquals(batchSizes.size(), stats.batches());
+        assertTrue(stats.maxBatchSize() <= 4);
+        assertEquals(0, stats.queueDepth());
+    }
+
+    @Test
+    void reject_saves_when_the_queue_is_full() throws InterruptedException {
+        var writing = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var writer = new CapWriter(2, 1, batch -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batch.forEach(save -> save.future().complete(save.cap()));
+        });
+        var first = writer.submit(cap(1));
+        writing.await(); // the writer is blocked with the first save, the next two fill the queue
+        var second = writer.submit(cap(2));
+        var third = writer.submit(cap(3));
+        assertThrows(CapWriteQueueFullException.class, () -> writer.submit(cap(4)));
+        assertEquals(1, writer.stats().rejectedSaves());
+
+        release.countDown();
+        assertEquals(cap(1), first.join());
+        assertEquals(cap(2), second.join());
+        assertEquals(cap(3), third.join());
+        writer.close();
+    }
+}
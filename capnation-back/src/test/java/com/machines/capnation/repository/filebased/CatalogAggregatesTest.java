@@ -0,0 +1,111 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CatalogAggregatesTest {
+    private static final double DELTA = 1e-9;
+
+    // mixed case brands of the same group and prices that repeat
+    private static Cap cap(long id) {
+        var cap = TestRepository.cap(id, 13);
+        cap.setBrand((id % 2 == 0 ? "Brand" : "brand") + id % 13);
+        cap.setPrice(5.0 + id % 101);
+        return cap;
+    }
+
+    private static List<Cap> caps(long from, long to) {
+        var caps = new ArrayList<Cap>();
+        for (long id = from; id <= to; id++) {
+            caps.add(cap(id));
+        }
+        return caps;
+    }
+
+    private static CapStats.Group group(String name, List<Cap> caps) {
+        var prices = caps.stream().mapToDouble(Cap::getPrice).summaryStatistics();
+        return new CapStats.Group(name, caps.size(), caps.stream().mapToLong(Cap::getStock).sum(),
+                prices.getMin(), prices.getAverage(), prices.getMax());
+    }
+
+    private static void assertGroups(List<Cap> caps, Function<Cap, String> key, CapStats stats) {
+        Map<String, List<Cap>> byKey = caps.stream().collect(Collectors.groupingBy(key));
+        var expected = byKey.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> group(entry.getKey(), entry.getValue()))
+                .toList();
+        assertEquals(expected.size(), stats.groups().size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertGroup(expected.get(i), stats.groups().get(i));
+        }
+        assertGroup(group("total", caps), stats.total());
+    }
+
+    // the averages are summed in another order
+    private static void assertGroup(CapStats.Group expected, CapStats.Group actual) {
+        assertEquals(expected.name(), actual.name());
+        assertEquals(expected.caps(), actual.caps());
+        assertEquals(expected.stock(), actual.stock());
+        assertEquals(expected.minPrice(), actual.minPrice());
+        assertEquals(expected.avgPrice(), actual.avgPrice(), DELTA);
+        assertEquals(expected.maxPrice(), actual.maxPrice());
+    }
+
+    private static void assertAllGroups(List<Cap> caps, CatalogAggregates aggregates) {
+        assertGroups(caps, cap -> cap.getBrand().toLowerCase(), aggregates.stats(CapStats.GroupBy.BRAND));
+        assertGroups(caps, cap -> cap.getStyle().name(), aggregates.stats(CapStats.GroupBy.STYLE));
+        assertGroups(caps, cap -> cap.getSize().name(), aggregates.stats(CapStats.GroupBy.SIZE));
+        assertGroups(caps, cap -> cap.getGender() != null ? cap.getGender().name() : CatalogAggregates.UNISEX,
+                aggregates.stats(CapStats.GroupBy.GENDER));
+    }
+
+    @Test
+    void build_the_aggregates_in_chunks() {
+        // more than one chunk
+        var caps = caps(1, 150_000);
+        var aggregates = CatalogAggregates.build(caps::get, caps.size());
+        assertAllGroups(caps, aggregates);
+    }
+
+    @Test
+    void add_the_saved_caps_when_they_are_published() {
+        var caps = caps(1, 1_000);
+        var aggregates = CatalogAggregates.build(caps::get, caps.size());
+        var saved = caps(1_001, 1_200);
+        saved.forEach(aggregates::add);
+        assertAllGroups(caps, aggregates);
+
+        aggregates.publish();
+        var all = new ArrayList<>(caps);
+        all.addAll(saved);
+        assertAllGroups(all, aggregates);
+    }
+
+    @Test
+    void sort_the_groups_once_per_publish() {
+        var caps = caps(1, 100);
+        var aggregates = CatalogAggregates.build(caps::get, caps.size());
+        var stats = aggregates.stats(CapStats.GroupBy.BRAND);
+        assertSame(stats, aggregates.stats(CapStats.GroupBy.BRAND));
+        aggregates.add(cap(101));
+        aggregates.publish();
+        assertEquals(101, aggregates.stats(CapStats.GroupBy.BRAND).total().caps());
+    }
+
+    @Test
+    void empty_catalog() {
+        var stats = CatalogAggregates.build(List.<Cap>of()::get, 0).stats(CapStats.GroupBy.SIZE);
+        assertEquals(List.of(), stats.groups());
+        assertEquals(new CapStats.Group("total", 0, 0, 0, 0, 0), stats.total());
+    }
+}
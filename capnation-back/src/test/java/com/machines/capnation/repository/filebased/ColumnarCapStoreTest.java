@@ -0,0 +1,113 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStyle;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnarCapStoreTest {
+
+    // collaborations and urls with characters of many bytes, that the columns keep apart
+    private static Cap cap(long id) {
+        var cap = TestRepository.cap(id, 50);
+        cap.setCollaboration(id % 3 == 0 ? "Collab" + id % 4 : null);
+        cap.setImageUrl(id % 2 == 0 ? "https://example.com/caps/\u00f1/" + id + ".jpg" : null);
+        return cap;
+    }
+
+    @Test
+    void decode_the_caps_that_were_added() {
+        var store = new ColumnarCapStore();
+        var caps = new ArrayList<Cap>();
+        // more than one block of rows and of urls
+        int count = ColumnarCapStore.BLOCK_ROWS * 2 + 100;
+        for (long id = 1; id <= count; id++) {
+            caps.add(cap(id));
+            assertEquals(id - 1, store.add(caps.get(caps.size() - 1)));
+        }
+        assertEquals(count, store.size());
+        for (int position = 0; position < count; position++) {
+            assertEquals(caps.get(position), store.get(position));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(ColumnarCapStore.BLOCK_ROWS * 3));
+    }
+
+    @Test
+    void keep_every_distinct_string_once() {
+        var store = new ColumnarCapStore();
+        for (long id = 1; id <= 10_000; id++) {
+            store.add(cap(id));
+        }
+        // 50 brands, 3 colors and 4 collaborations
+        assertEquals(57, store.dictionaryValues());
+        var first = store.get(0);
+        var other = store.get(50);
+        assertEquals(first.getBrand(), other.getBrand());
+        assertTrue(first.getBrand() == other.getBrand());
+        assertNull(first.getImageUrl());
+    }
+
+    @Test
+    void store_a_url_longer_than_a_block() {
+        var store = new ColumnarCapStore();
+        var url = "https://example.com/" + "a".repeat(ColumnarCapStore.URL_BLOCK_SIZE);
+        var caps = List.of(cap(2), new Cap.CapBuilder(CapStyle.BASEBALL_CAP, "Azul", "Brand", 3, CapSize.LARGE, 1)
+                .setId(3L).setImageUrl(url).build(), cap(4));
+        caps.forEach(store::add);
+        for (int position = 0; position < caps.size(); position++) {
+            assertEquals(caps.get(position), store.get(position));
+        }
+    }
+
+    @Test
+    void use_less_memory_than_the_objects() {
+        var store = new ColumnarCapStore();
+        for (long id = 1; id <= 100_000; id++) {
+            store.add(cap(id));
+        }
+        // 47 bytes of columns per row and about 36 bytes of url for half of them
+        long perCap = store.usedBytes() / store.size();
+        assertTrue(perCap > 47 && perCap < 75, "bytes per cap " + perCap);
+        assertTrue(store.offHeapBytes() >= store.usedBytes());
+    }
+
+    @Test
+    void read_the_published_rows_while_adding() throws InterruptedException {
+        var store = new ColumnarCapStore();
+        var published = new AtomicInteger();
+        var failure = new AtomicReference<Throwable>();
+        var started = new CountDownLatch(1);
+        var reader = new Thread(() -> {
+            started.countDown();
+            try {
+                while (published.get() < 50_000) {
+                    int count = published.get();
+                    for (int position = Math.max(0, count - 100); position < count; position++) {
+                        assertEquals(cap(position + 1), store.get(position));
+                    }
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+        started.await();
+        for (long id = 1; id <= 50_000; id++) {
+            store.add(cap(id));
+            published.set((int) id);
+        }
+        reader.join();
+        assertNull(failure.get());
+    }
+}
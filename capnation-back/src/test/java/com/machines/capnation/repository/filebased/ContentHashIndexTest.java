@@ -0,0 +1,94 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStyle;
+import com.machines.capnation.model.Gender;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ContentHashIndexTest {
+    // the prices repeat, so the caps are only told apart by the rest of the fields
+    private static Cap cap(long id) {
+        var cap = TestRepository.cap(id, 101);
+        cap.setPrice(10.0 + id % 997);
+        return cap;
+    }
+
+    private static Cap copy(Cap cap, long id) {
+        var copy = new Cap.CapBuilder(cap.getStyle(), cap.getColor(), cap.getBrand(), cap.getPrice(), cap.getSize(), cap.getStock())
+                .setId(id)
+                .setGender(cap.getGender())
+                .build();
+        copy.setCollaboration(cap.getCollaboration());
+        copy.setImageUrl(cap.getImageUrl());
+        return copy;
+    }
+
+    private static Cap changed(Cap cap, Consumer<Cap> change) {
+        var copy = copy(cap, cap.getId());
+        change.accept(copy);
+        return copy;
+    }
+
+    @Test
+    void find_the_similar_caps_of_a_built_index() {
+        var caps = new ArrayList<Cap>();
+        for (long id = 1; id <= 200_000; id++) {
+            caps.add(cap(id));
+        }
+        var index = ContentHashIndex.build(caps::get, caps.size());
+
+        assertEquals(caps.size(), index.size());
+        for (int position = 0; position < caps.size(); position += 997) {
+            // the fields of cap(id) repeat with different periods, so no two caps of the list are similar
+            assertEquals(position, index.findSimilar(copy(caps.get(position), 1_000_000 + position)));
+        }
+        assertEquals(ContentHashIndex.NOT_FOUND, index.findSimilar(changed(caps.get(0), cap -> cap.setPrice(0.5))));
+    }
+
+    @Test
+    void compare_every_field_of_similar() {
+        var base = cap(42);
+        base.setCollaboration("collab");
+        base.setImageUrl("http://caps/42.png");
+        var caps = new ArrayList<>(List.of(base));
+        var index = new ContentHashIndex(caps::get, 1);
+        index.add(base, 0);
+
+        assertEquals(0, index.findSimilar(copy(base, 43)));
+        List<Consumer<Cap>> changes = List.of(
+                cap -> cap.setPrice(cap.getPrice() + 0.01),
+                cap -> cap.setStock(cap.getStock() + 1),
+                cap -> cap.setStyle(CapStyle.values()[(cap.getStyle().ordinal() + 1) % CapStyle.values().length]),
+                cap -> cap.setSize(CapSize.values()[(cap.getSize().ordinal() + 1) % CapSize.values().length]),
+                cap -> cap.setGender(cap.getGender() == null ? Gender.FEMALE : null),
+                cap -> cap.setColor(cap.getColor() + "x"),
+                cap -> cap.setBrand(cap.getBrand() + "x"),
+                cap -> cap.setCollaboration(null),
+                cap -> cap.setImageUrl("http://caps/43.png"));
+        for (var change : changes) {
+            assertEquals(ContentHashIndex.NOT_FOUND, index.findSimilar(changed(base, change)));
+        }
+    }
+
+    @Test
+    void keep_the_similar_caps_already_in_the_heap() {
+        var caps = new ArrayList<Cap>();
+        for (long id = 1; id <= 1_000; id++) {
+            caps.add(cap(1)); // the same content at every position
+        }
+        var index = ContentHashIndex.build(caps::get, caps.size());
+
+        assertEquals(1_000, index.size());
+        assertNotEquals(ContentHashIndex.NOT_FOUND, index.findSimilar(cap(1)));
+        assertEquals(ContentHashIndex.NOT_FOUND, index.findSimilar(cap(2)));
+        assertEquals(2048L * (Long.BYTES + Integer.BYTES), index.memoryBytes());
+    }
+}
@@ -0,0 +1,91 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.formatter.CapFormatter;
+import com.machines.capnation.formatter.LazyCap;
+import com.machines.capnation.model.Cap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class LazyTextCapHeapTest {
+    private static final CapFormatter CAP_FORMATTER = new CapFormatter();
+
+    @TempDir
+    Path directory;
+
+    private static Cap cap(long id) {
+        return TestRepository.cap(id, 50);
+    }
+
+    private static List<Cap> caps(long from, long to) {
+        return TestRepository.caps(from, to, 50);
+    }
+
+    private static List<Cap> read(CapHeap heap) {
+        var caps = new ArrayList<Cap>();
+        for (int position = 0; position < heap.size(); position++) {
+            caps.add(heap.get(position));
+        }
+        return caps;
+    }
+
+    @Test
+    void find_the_same_rows_as_the_text_heap() throws IOException {
+        // blank lines and a file without a new line at the end
+        var text = new StringBuilder("\n");
+        for (Cap cap : caps(1, 5_000)) {
+            CAP_FORMATTER.appendCap(cap, text).append(cap.getId() % 1_000 == 0 ? "\n \n" : "\n");
+        }
+        text.setLength(text.length() - 1);
+        var file = directory.resolve("caps.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+
+        var heap = new LazyTextCapHeap(file);
+        assertEquals(5_000, heap.size());
+        assertEquals(read(new TextCapHeap(file)), read(heap));
+        assertInstanceOf(LazyCap.class, heap.get(0));
+        heap.close();
+    }
+
+    @Test
+    void drop_the_carriage_returns_of_a_crlf_heap() throws IOException {
+        var text = new StringBuilder();
+        for (Cap cap : caps(1, 100)) {
+            CAP_FORMATTER.appendCap(cap, text).append("\r\n");
+        }
+        var file = directory.resolve("caps.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+
+        var heap = new LazyTextCapHeap(file);
+        assertEquals(caps(1, 100), read(heap));
+        heap.close();
+    }
+
+    @Test
+    void read_the_appended_caps_before_and_after_the_flush() throws IOException {
+        var file = Files.createFile(directory.resolve("caps.txt"));
+        var heap = new LazyTextCapHeap(file);
+        var appended = cap(1);
+        assertEquals(0, heap.append(appended));
+        assertSame(appended, heap.get(0));
+        caps(2, 100).forEach(heap::append);
+        heap.flush();
+        assertEquals(caps(1, 100), read(heap));
+        assertInstanceOf(LazyCap.class, heap.get(0));
+        heap.append(cap(101));
+        heap.close();
+
+        assertEquals(caps(1, 101), read(new LazyTextCapHeap(file)));
+        assertEquals(caps(1, 101), read(new TextCapHeap(file)));
+    }
+}
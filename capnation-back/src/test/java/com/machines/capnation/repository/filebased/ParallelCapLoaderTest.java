@@ -0,0 +1,98 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.formatter.CapFormatter;
+import com.machines.capnation.model.Cap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ParallelCapLoaderTest {
+    private static final CapFormatter CAP_FORMATTER = new CapFormatter();
+
+    @TempDir
+    Path directory;
+
+    private static Cap cap(long id) {
+        return TestRepository.cap(id, 50);
+    }
+
+    private Path writeHeap(long rows) throws IOException {
+        var file = directory.resolve("caps.txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (long id = 1; id <= rows; id++) {
+                writer.write(CAP_FORMATTER.capToText(cap(id)));
+                writer.write('\n');
+                if (id % 1000 == 0) {
+                    writer.write('\n'); // blank lines are skipped
+                }
+            }
+        }
+        return file;
+    }
+
+    @Test
+    void keep_the_file_order_across_chunks() throws IOException {
+        var file = writeHeap(20_000);
+        List<Cap> caps;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            caps = ParallelCapLoader.load(file, channel, 0, 4096);
+        }
+        assertEquals(20_000, caps.size());
+        for (int i = 0; i < caps.size(); i++) {
+            assertEquals(cap(i + 1), caps.get(i));
+        }
+        assertEquals(caps, ParallelCapLoader.load(file));
+    }
+
+    @Test
+    void load_the_lines_after_an_offset() throws IOException {
+        var file = writeHeap(5_000);
+        long offset = 0;
+        for (long id = 1; id <= 3_000; id++) {
+            offset += CAP_FORMATTER.capToText(cap(id)).length() + 1 + (id % 1000 == 0 ? 1 : 0);
+        }
+        List<Cap> caps;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            caps = ParallelCapLoader.load(file, channel, offset, 4096);
+        }
+        assertEquals(2_000, caps.size());
+        assertEquals(cap(3_001), caps.get(0));
+        assertEquals(cap(5_000), caps.get(1_999));
+        assertEquals(List.of(), ParallelCapLoader.load(file, Files.size(file)));
+    }
+
+    @Test
+    void drop_the_carriage_returns_of_a_crlf_heap() throws IOException {
+        var text = new StringBuilder();
+        for (long id = 1; id <= 3_000; id++) {
+            CAP_FORMATTER.appendCap(cap(id), text).append("\r\n");
+        }
+        var file = directory.resolve("caps.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+
+        List<Cap> caps;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            caps = ParallelCapLoader.load(file, channel, 0, 4096);
+        }
+        assertEquals(3_000, caps.size());
+        for (int i = 0; i < caps.size(); i++) {
+            assertEquals(cap(i + 1), caps.get(i)); // the image urls without \r, and "-\r" is still empty
+        }
+    }
+
+    @Test
+    void load_an_empty_heap() throws IOException {
+        var file = Files.createFile(directory.resolve("caps.txt"));
+        assertEquals(List.of(), ParallelCapLoader.load(file));
+    }
+}
@@ -0,0 +1,91 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStyle;
+import com.machines.capnation.model.Suggestion;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PrefixIndexTest {
+    private final PrefixIndex index = new PrefixIndex();
+
+    private static Cap cap(String brand, String color, String collaboration) {
+        return new Cap.CapBuilder(CapStyle.SNAPBACK, color, brand, 20.0, CapSize.MEDIUM, 1)
+                .setCollaboration(collaboration)
+                .build();
+    }
+
+    private void add(String brand, int count) {
+        for (int i = 0; i < count; i++) {
+            index.add(cap(brand, "Negro", null));
+        }
+    }
+
+    @Test
+    void rank_the_values_of_the_prefix_by_caps() {
+        add("Nike", 5);
+        add("NIKE", 2);
+        add("New Era", 7);
+        add("Nautica", 1);
+        add("Adidas", 9);
+        index.publish();
+
+        // the first spelling is the one suggested, the count covers all of them
+        assertEquals(List.of(new Suggestion("New Era", 7), new Suggestion("Nike", 7), new Suggestion("Nautica", 1)),
+                index.suggest(Suggestion.Field.BRAND, "n", 10));
+        assertEquals(List.of(new Suggestion("New Era", 7), new Suggestion("Nike", 7)),
+                index.suggest(Suggestion.Field.BRAND, "n", 2));
+        assertEquals(List.of(new Suggestion("Nike", 7)), index.suggest(Suggestion.Field.BRAND, "nik", 10));
+        assertEquals(List.of(), index.suggest(Suggestion.Field.BRAND, "puma", 10));
+        assertEquals(new Suggestion("Adidas", 9), index.suggest(Suggestion.Field.BRAND, "", 1).get(0));
+        assertEquals(List.of(new Suggestion("Negro", 24)), index.suggest(Suggestion.Field.COLOR, "ne", 10));
+        assertEquals(4, index.size(Suggestion.Field.BRAND));
+    }
+
+    @Test
+    void skip_the_caps_without_collaboration() {
+        index.add(cap("Nike", "Rojo", "Supreme"));
+        index.add(cap("Nike", "Rojo", null));
+        index.publish();
+        assertEquals(List.of(new Suggestion("Supreme", 1)), index.suggest(Suggestion.Field.COLLABORATION, "s", 10));
+    }
+
+    @Test
+    void publish_the_values_added_in_batches() {
+        var random = new Random(3);
+        var counts = new HashMap<String, Integer>();
+        for (int batch = 0; batch < 50; batch++) {
+            for (int i = 0; i < 200; i++) {
+                var brand = "brand" + random.nextInt(5_000);
+                index.add(cap(brand, "Negro", null));
+                counts.merge(brand, 1, Integer::sum);
+            }
+            // the values of a batch are only visible after the publish
+            index.publish();
+            assertEquals(counts.size(), index.size(Suggestion.Field.BRAND));
+        }
+        for (String prefix : new String[]{"brand", "brand1", "brand42", "brand4999"}) {
+            assertEquals(expected(counts, prefix, 20), index.suggest(Suggestion.Field.BRAND, prefix, 20));
+        }
+    }
+
+    private static List<Suggestion> expected(Map<String, Integer> counts, String prefix, int limit) {
+        var suggestions = new ArrayList<Suggestion>();
+        counts.forEach((brand, count) -> {
+            if (brand.startsWith(prefix)) {
+                suggestions.add(new Suggestion(brand, count));
+            }
+        });
+        suggestions.sort(Comparator.comparingInt(Suggestion::count).reversed().thenComparing(Suggestion::value));
+        return suggestions.subList(0, Math.min(limit, suggestions.size()));
+    }
+}
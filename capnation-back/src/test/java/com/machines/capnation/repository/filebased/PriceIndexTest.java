@@ -0,0 +1,107 @@
+package com.machines.capnation.repository.filebased;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PriceIndexTest {
+    private final List<Double> prices = new ArrayList<>();
+    private final PriceIndex index = new PriceIndex();
+
+    // few distinct prices, so many positions share a price
+    private void add(Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            double price = random.nextInt(500) / 4.0;
+            prices.add(price);
+            index.add(price);
+        }
+    }
+
+    private List<Integer> expected(double min, double max, boolean ascending, int rowCount) {
+        Comparator<Integer> byPrice = Comparator.<Integer>comparingDouble(prices::get).thenComparingInt(position -> position);
+        return IntStream.range(0, rowCount)
+                .filter(position -> prices.get(position) >= min && prices.get(position) <= max)
+                .boxed()
+                .sorted(ascending ? byPrice : byPrice.reversed())
+                .toList();
+    }
+
+    private List<Integer> scan(double min, double max, boolean ascending, int rowCount, int limit) {
+        var positions = new ArrayList<Integer>();
+        index.scan(min, max, ascending, rowCount, position -> {
+            positions.add(position);
+            return positions.size() < limit;
+        });
+        return positions;
+    }
+
+    private void assertScans(double min, double max, int rowCount) {
+        for (boolean ascending : new boolean[]{true, false}) {
+            var expected = expected(min, max, ascending, rowCount);
+            assertEquals(expected, scan(min, max, ascending, rowCount, Integer.MAX_VALUE));
+            assertEquals(expected.subList(0, Math.min(10, expected.size())), scan(min, max, ascending, rowCount, 10));
+        }
+    }
+
+    @Test
+    void scan_by_price_in_both_orders() {
+        var random = new Random(7);
+        add(random, 20_000);
+        index.publish();
+
+        assertScans(0, Double.MAX_VALUE, prices.size());
+        assertScans(10, 20.5, prices.size());
+        assertScans(20.25, 20.25, prices.size());
+        assertScans(200, 300, prices.size());
+        assertEquals(expected(10, 20.5, true, prices.size()).size(), index.count(10, 20.5));
+    }
+
+    @Test
+    void merge_the_batches_with_the_published_rows() {
+        var random = new Random(11);
+        // small batches stay in the recent run until it grows over MAX_RECENT and becomes part of the base
+        for (int batch = 0; batch < 3 * PriceIndex.MAX_RECENT / 100; batch++) {
+            add(random, 100);
+            index.publish();
+            if (batch % 20 == 0) {
+                assertScans(30, 60, prices.size());
+            }
+        }
+        assertScans(0, Double.MAX_VALUE, prices.size());
+        assertScans(30, 60, prices.size());
+    }
+
+    @Test
+    void merge_the_middle_run_into_a_big_base() {
+        var random = new Random(17);
+        // over 64 * MAX_RECENT rows the middle run holds several recent runs before the base is rebuilt
+        add(random, 400_000);
+        index.publish();
+        for (int batch = 0; batch < 12; batch++) {
+            add(random, 1_000);
+            index.publish();
+            assertScans(30, 31, prices.size());
+            assertScans(0, 0.5, prices.size());
+            assertEquals(expected(30, 31, true, prices.size()).size(), index.count(30, 31));
+        }
+    }
+
+    @Test
+    void skip_the_positions_after_the_row_count() {
+        var random = new Random(13);
+        add(random, 5_000);
+        index.publish();
+        add(random, 50);
+        // the rows of a batch are not visible until it's published
+        assertScans(0, Double.MAX_VALUE, 5_000);
+        index.publish();
+        assertScans(0, Double.MAX_VALUE, 4_000);
+        assertScans(0, Double.MAX_VALUE, prices.size());
+    }
+}
@@ -0,0 +1,41 @@
+package com.machines.capnation.service.impl;
+
+import com.machines.capnation.exceptions.CapException;
+import com.machines.capnation.exceptions.DuplicateCapException;
+import com.machines.capnation.exceptions.DuplicateIdCapException;
+import com.machines.capnation.model.BatchSaveResult;
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStyle;
+import com.machines.capnation.repository.CapRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CapServiceImplementationTest {
+    private final CapRepository repository = mock(CapRepository.class);
+    private final CapServiceImplementation service = new CapServiceImplementation(repository);
+
+    private static Cap cap(long id, double price) {
+        return new Cap.CapBuilder(CapStyle.DAD_CAP, "Blue", "nike", price, CapSize.LARGE, 2).setId(id).build();
+    }
+
+    @Test
+    void answer_every_rejection_of_a_batch_with_the_status_of_a_single_save() {
+        List<CapException> rejections = Arrays.asList(null, new DuplicateIdCapException("there is another cap with index 2"),
+                new DuplicateCapException("similar"));
+        when(repository.saveAll(anyList())).thenReturn(rejections);
+
+        var result = service.saveBatch(Arrays.asList(cap(1, 10.0), cap(2, 10.0), null, cap(4, -1.0), cap(5, 10.0)));
+
+        assertEquals(List.of(200, 409, 400, 400, 409), result.items().stream().map(BatchSaveResult.Item::status).toList());
+        assertEquals(1, result.accepted());
+        assertEquals("there is another cap with index 2", result.items().get(1).error());
+    }
+}
@@ -0,0 +1,90 @@
+package com.machines.capnation.repository.filebased;
+
+import com.machines.capnation.model.Cap;
+import com.machines.capnation.model.CapSize;
+import com.machines.capnation.model.CapStyle;
+import com.machines.capnation.model.Gender;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Builds a CapRepositoryFileBasedImpl over the files of a directory, with the values that Spring injects,
+ * and the caps that the tests save in it. It's shared by the tests and the JMH benchmarks (test fixtures).
+ */
+final class TestRepository {
+    static final String[] COLORS = {"Negro", "Blanco", "Rojo"};
+
+    private TestRepository() {
+    }
+
+    /***
+     * A cap whose fields cycle with the id in different periods: the brand is one of brand0 to brand<brands - 1>,
+     * the price is unique so no two caps are similar, and half of them have an image url
+     */
+    static Cap cap(long id, int brands) {
+        return new Cap.CapBuilder(CapStyle.values()[(int) (id % 9)], COLORS[(int) (id % 3)], "brand" + id % brands,
+                10.0 + id, CapSize.values()[(int) (id % 5)], 1 + (int) (id % 7))
+                .setId(id)
+                .setGender(id % 4 == 0 ? null : Gender.values()[(int) (id % 2)])
+                .setImageUrl(id % 2 == 0 ? "https://example.com/caps/" + id + ".jpg" : null)
+                .build();
+    }
+
+    // the caps of the ids from and to, both included
+    static List<Cap> caps(long from, long to, int brands) {
+        var caps = new ArrayList<Cap>();
+        for (long id = from; id <= to; id++) {
+            caps.add(cap(id, brands));
+        }
+        return caps;
+    }
+
+    static CapRepositoryFileBasedImpl open(Path directory, CapHeap.Format heapFormat) throws IOException {
+        var repository = new CapRepositoryFileBasedImpl();
+        file(repository, "heap", directory.resolve("caps.txt"));
+        file(repository, "binaryHeap", directory.resolve("caps.bin"));
+        file(repository, "index", directory.resolve("capIndex.txt"));
+        file(repository, "indexTree", directory.resolve("capIndex.tree"));
+        file(repository, "brandIndexFile", directory.resolve("brandIndex.txt"));
+        file(repository, "brandIndexBinaryFile", directory.resolve("brandIndex.bin"));
+        file(repository, "walFile", directory.resolve("capWal.log"));
+        file(repository, "snapshotFile", directory.resolve("capSnapshot.bin"));
+        ReflectionTestUtils.setField(repository, "heapFormat", heapFormat);
+        ReflectionTestUtils.setField(repository, "heapStorage", TextCapHeap.Storage.OBJECTS);
+        ReflectionTestUtils.setField(repository, "indexType", PrimaryIndex.Type.HASH);
+        ReflectionTestUtils.setField(repository, "indexTreeCachePages", 64);
+        ReflectionTestUtils.setField(repository, "brandIndexFormat", BrandIndexStore.Format.TEXT);
+        ReflectionTestUtils.setField(repository, "walDurability", CapWriteAheadLog.Durability.ASYNC);
+        ReflectionTestUtils.setField(repository, "walSyncBatchSize", 64);
+        ReflectionTestUtils.setField(repository, "walSyncIntervalMillis", 5L);
+        ReflectionTestUtils.setField(repository, "checkpointIntervalMillis", 20L);
+        ReflectionTestUtils.setField(repository, "writerQueueCapacity", 1024);
+        ReflectionTestUtils.setField(repository, "writerMaxBatchSize", 64);
+        ReflectionTestUtils.setField(repository, "idFilterFalsePositiveRate", 0.01);
+        return repository;
+    }
+
+    // the writer and the checkpoints with the values of application.properties, for the benchmarks
+    static CapRepositoryFileBasedImpl openForBenchmark(Path directory, CapWriteAheadLog.Durability durability) throws IOException {
+        var repository = open(directory, CapHeap.Format.TEXT);
+        ReflectionTestUtils.setField(repository, "indexTreeCachePages", 1024);
+        ReflectionTestUtils.setField(repository, "walDurability", durability);
+        ReflectionTestUtils.setField(repository, "checkpointIntervalMillis", 1000L);
+        ReflectionTestUtils.setField(repository, "writerQueueCapacity", 4096);
+        ReflectionTestUtils.setField(repository, "writerMaxBatchSize", 256);
+        return repository;
+    }
+
+    private static void file(CapRepositoryFileBasedImpl repository, String field, Path path) throws IOException {
+        if (!Files.exists(path)) {
+            Files.createFile(path);
+        }
+        ReflectionTestUtils.setField(repository, field, new FileSystemResource(path));
+    }
+}
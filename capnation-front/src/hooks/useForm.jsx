@@ -4,6 +4,7 @@ import { searchMapper } from "../pages/Home.jsx";
 
 export function useForm() {
   const BASE_URL = "http://localhost:8080/cap";
+  const PAGE_SIZE = 100;
   const [serchType, setSearchType] = useState(searchMapper.id);
   const [caps, setCaps] = useState([]);
   const [isLoading, setIsLoading] = useState(true);
@@ -19,16 +20,34 @@ export function useForm() {
     }
   });
 
+  // loads the catalog page by page, the caps are shown as soon as the first page arrives
+  const fetchPage = (after) => {
+    const params = new URLSearchParams();
+    params.append("limit", PAGE_SIZE);
+    if (after !== undefined) {
+      params.append("after", after);
+    }
+    return fetch(`${BASE_URL}/find-page?${params}`).then((res) => {
+      if (!res.ok) {
+        throw new Error("Network response was not ok");
+      }
+      return res.json();
+    });
+  };
+
   const fetchAllCaps = () => {
-    fetch(`${BASE_URL}/find-all`)
-      .then((res) => {
-        setIsLoading(true);
-        if (!res.ok) {
-          throw new Error("Network response was not ok");
+    setIsLoading(true);
+    setCaps([]);
+    const loadFrom = (after) =>
+      fetchPage(after).then((page) => {
+        setCaps((previous) => (after === undefined ? page.caps : [...previous, ...page.caps]));
+        setIsLoading(false);
+        if (page.nextAfter !== null) {
+          return loadFrom(page.nextAfter);
         }
-        return res.json();
-      })
-      .then((data) => setCaps(data))
+      });
+
+    loadFrom(undefined)
       .catch((error) => {
         console.error("Error fetching data:", error);
         setIsError(true);